@@ -0,0 +1,433 @@
+package com.example.events;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.example.sharp.IDisposable;
+import com.example.sharp.Tracer;
+
+/**
+ * delivers the events of EventDelegates set to async mode on worker threads.
+ * invoke() on such a delegate only stores sender and args into a bounded ring
+ * buffer and returns, so publishers do not wait for slow handlers.
+ *
+ * <pre>
+ * AsyncEventBus bus = new AsyncEventBus(2, 4096, 64, AsyncEventBus.OverflowPolicy.DROP);
+ * dict.ItemUpdated.setAsync(bus);
+ * dict.ItemUpdated.subscribeBatch((senders, args, count) -&gt; {
+ * 	// up to 64 events per call
+ * });
+ * </pre>
+ *
+ * each worker drains its own ring, a delegate always uses the same ring so its
+ * events are delivered in publish order, one at a time. consecutive events of a
+ * delegate are handed to BatchHandlers in one call, other handlers get them
+ * one by one.
+ */
+public class AsyncEventBus implements IDisposable {
+	/**
+	 * what invoke() does when the ring of a delegate is full
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * the event is discarded and counted by getDropped()
+		 */
+		DROP,
+		/**
+		 * the publisher waits for room. a handler publishing into the full ring
+		 * of its own worker performs the event synchronously instead.
+		 */
+		BLOCK,
+		/**
+		 * the event is kept aside and replaced by later events of the same
+		 * delegate until the worker delivers it after the events queued before
+		 * it, replaced ones are counted by getCoalesced()
+		 */
+		COALESCE
+	}
+
+	/**
+	 * async state of one delegate
+	 */
+	static final class Target {
+		final EventDelegate<?> delegate;
+		final Ring ring;
+		/**
+		 * {sender, args} of the newest overflowed event with COALESCE
+		 */
+		final AtomicReference<Object[]> latest = new AtomicReference<Object[]>();
+
+		Target(EventDelegate<?> delegate, Ring ring) {
+			this.delegate = delegate;
+			this.ring = ring;
+		}
+
+		void post(Object sender, INotificationEventArgs args) {
+			ring.post(this, sender, args);
+		}
+	}
+
+	/**
+	 * bounded multi producer single consumer queue with its worker. a slot is
+	 * ready for the consumer when its sequence is position + 1, and free for
+	 * the producer of position + capacity when the consumer sets it to that.
+	 */
+	final class Ring implements Runnable {
+		final int mask;
+		final AtomicLongArray sequences;
+		final Target[] targets;
+		final Object[] senders;
+		final INotificationEventArgs[] args;
+		final AtomicLong tail = new AtomicLong();
+		/**
+		 * next position to consume, written by the worker only
+		 */
+		volatile long head;
+		volatile boolean sleeping;
+		volatile boolean busy;
+		final ConcurrentLinkedQueue<Target> overflowed = new ConcurrentLinkedQueue<Target>();
+		final Thread worker;
+
+		Ring(int capacity, String name) {
+			this.mask = capacity - 1;
+			this.sequences = new AtomicLongArray(capacity);
+			this.targets = new Target[capacity];
+			this.senders = new Object[capacity];
+			this.args = new INotificationEventArgs[capacity];
+			for (int i = 0; i < capacity; ++i) {
+				sequences.set(i, i);
+			}
+			this.worker = new Thread(this, name);
+			this.worker.setDaemon(true);
+		}
+
+		boolean offer(Target target, Object sender, INotificationEventArgs arg) {
+			long pos = tail.get();
+			while (true) {
+				int index = (int) (pos & mask);
+				long dif = sequences.get(index) - pos;
+				if (dif == 0) {
+					if (tail.compareAndSet(pos, pos + 1)) {
+						targets[index] = target;
+						senders[index] = sender;
+						args[index] = arg;
+						sequences.set(index, pos + 1);
+						return true;
+					}
+					pos = tail.get();
+				} else if (dif < 0) {
+					return false;
+				} else {
+					pos = tail.get();
+				}
+			}
+		}
+
+		void wake() {
+			if (sleeping) {
+				LockSupport.unpark(worker);
+			}
+		}
+
+		int getDepth() {
+			return (int) Math.max(0, tail.get() - head);
+		}
+
+		void post(Target target, Object sender, INotificationEventArgs arg) {
+			published.increment();
+			if (disposed) {
+				// no worker left, dispose() is detaching the delegate
+				deliverNow(target, sender, arg);
+				return;
+			}
+			// while an overflowed event waits, newer ones must not pass it
+			boolean coalescing = policy == OverflowPolicy.COALESCE && target.latest.get() != null;
+			if (!coalescing && offer(target, sender, arg)) {
+				wake();
+				return;
+			}
+			switch (policy) {
+			case DROP:
+				dropped.increment();
+				return;
+			case COALESCE:
+				if (target.latest.getAndSet(new Object[] { sender, arg }) == null) {
+					overflowed.offer(target);
+				} else {
+					coalesced.increment();
+				}
+				wake();
+				return;
+			default:
+				for (int spins = 0; !offer(target, sender, arg); ++spins) {
+					if (Thread.currentThread() == worker || disposed) {
+						// waiting for ourselves or a stopped worker would never end
+						deliverNow(target, sender, arg);
+						return;
+					}
+					wake();
+					if (spins < 64) {
+						Thread.yield();
+					} else {
+						LockSupport.parkNanos(this, 50000L);
+					}
+				}
+				wake();
+			}
+		}
+
+		/**
+		 * deliver the ready events, consecutive events of a delegate in
+		 * batches of up to batchSize
+		 *
+		 * @return events delivered
+		 */
+		int drain(Object[] batchSenders, INotificationEventArgs[] batchArgs) {
+			int total = 0;
+			long pos = head;
+			long depth = tail.get() - pos;
+			if (depth > peakDepth) {
+				peakDepth = depth;
+			}
+			Target current = null;
+			int count = 0;
+			while (true) {
+				int index = (int) (pos & mask);
+				boolean ready = sequences.get(index) == pos + 1;
+				if (count > 0 && (!ready || targets[index] != current || count == batchSize)) {
+					deliver(current, batchSenders, batchArgs, count);
+					total += count;
+					count = 0;
+				}
+				if (!ready) {
+					break;
+				}
+				current = targets[index];
+				batchSenders[count] = senders[index];
+				batchArgs[count] = args[index];
+				++count;
+				targets[index] = null;
+				senders[index] = null;
+				args[index] = null;
+				sequences.set(index, pos + mask + 1);
+				head = ++pos;
+			}
+			Target target;
+			while ((target = overflowed.poll()) != null) {
+				Object[] event = target.latest.getAndSet(null);
+				if (event != null) {
+					batchSenders[0] = event[0];
+					batchArgs[0] = (INotificationEventArgs) event[1];
+					deliver(target, batchSenders, batchArgs, 1);
+					++total;
+				}
+			}
+			return total;
+		}
+
+		@Override
+		public void run() {
+			Object[] batchSenders = new Object[batchSize];
+			INotificationEventArgs[] batchArgs = new INotificationEventArgs[batchSize];
+			while (!Thread.currentThread().isInterrupted()) {
+				busy = true;
+				if (drain(batchSenders, batchArgs) > 0) {
+					continue;
+				}
+				busy = false;
+				sleeping = true;
+				if (getDepth() == 0 && overflowed.isEmpty()) {
+					LockSupport.parkNanos(this, 10000000L);
+				}
+				sleeping = false;
+			}
+		}
+	}
+
+	final Ring[] rings;
+	final int batchSize;
+	final OverflowPolicy policy;
+	final LongAdder published = new LongAdder();
+	final LongAdder delivered = new LongAdder();
+	final LongAdder dropped = new LongAdder();
+	final LongAdder coalesced = new LongAdder();
+	volatile long peakDepth;
+	volatile boolean disposed;
+	/**
+	 * targets of the delegates attached to this bus, detached by dispose().
+	 * weak, a delegate nobody references anymore is not kept alive
+	 */
+	final Set<Target> targets = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<Target, Boolean>()));
+
+	/**
+	 * @param workers   worker threads, each with its own ring
+	 * @param capacity  events per ring, rounded up to a power of two
+	 * @param batchSize most events handed to a BatchHandler in one call
+	 * @param policy    what to do when a ring is full
+	 */
+	public AsyncEventBus(int workers, int capacity, int batchSize, OverflowPolicy policy) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.batchSize = Math.max(1, batchSize);
+		this.policy = policy != null ? policy : OverflowPolicy.BLOCK;
+		this.rings = new Ring[Math.max(1, workers)];
+		for (int i = 0; i < rings.length; ++i) {
+			rings[i] = new Ring(size, "AsyncEventBus-" + i);
+			rings[i].worker.start();
+		}
+	}
+
+	private static volatile AsyncEventBus sharedBus;
+
+	/**
+	 * @return process wide bus, a worker per two processors, 65536 events per
+	 *         ring, batches of 64 and BLOCK
+	 */
+	public static AsyncEventBus shared() {
+		AsyncEventBus bus = sharedBus;
+		if (bus == null) {
+			synchronized (AsyncEventBus.class) {
+				if (sharedBus == null) {
+					sharedBus = new AsyncEventBus(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 65536, 64,
+							OverflowPolicy.BLOCK);
+				}
+				bus = sharedBus;
+			}
+		}
+		return bus;
+	}
+
+	/**
+	 * @return async state of delegate, null when this bus is disposed
+	 */
+	Target attach(EventDelegate<?> delegate) {
+		if (disposed) {
+			return null;
+		}
+		Target target = new Target(delegate, rings[(System.identityHashCode(delegate) & 0x7fffffff) % rings.length]);
+		targets.add(target);
+		return target;
+	}
+
+	/**
+	 * perform an event on the calling thread
+	 */
+	void deliverNow(Target target, Object sender, INotificationEventArgs arg) {
+		target.delegate.dispatch(target.delegate.snapshot(), sender, arg);
+		delivered.increment();
+	}
+
+	void deliver(Target target, Object[] senders, INotificationEventArgs[] args, int count) {
+		Object[] snapshot = target.delegate.snapshot();
+		for (Object handler : snapshot) {
+			try {
+				if (handler instanceof EventDelegate.BatchHandler) {
+					((EventDelegate.BatchHandler) handler).performBatch(senders, args, count);
+				} else {
+					for (int i = 0; i < count; ++i) {
+						EventDelegate.perform(handler, senders[i], args[i]);
+					}
+				}
+			} catch (Exception ee) {
+				Tracer.D(ee);
+			}
+		}
+		for (int i = 0; i < count; ++i) {
+			senders[i] = null;
+			args[i] = null;
+		}
+		delivered.add(count);
+	}
+
+	public OverflowPolicy getPolicy() {
+		return policy;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @return events queued and not yet taken by a worker
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (Ring ring : rings) {
+			depth += ring.getDepth();
+		}
+		return depth;
+	}
+
+	/**
+	 * @return deepest single ring seen by its worker
+	 */
+	public long getPeakQueueDepth() {
+		return peakDepth;
+	}
+
+	public long getPublished() {
+		return published.sum();
+	}
+
+	public long getDelivered() {
+		return delivered.sum();
+	}
+
+	public long getDropped() {
+		return dropped.sum();
+	}
+
+	public long getCoalesced() {
+		return coalesced.sum();
+	}
+
+	/**
+	 * wait until the workers delivered every queued event
+	 *
+	 * @return false on timeout
+	 */
+	public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		for (Ring ring : rings) {
+			while (ring.getDepth() > 0 || ring.busy || !ring.overflowed.isEmpty()) {
+				if (System.currentTimeMillis() > deadline) {
+					return false;
+				}
+				ring.wake();
+				Thread.sleep(1);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * stop the workers, events still queued are not delivered. the attached
+	 * delegates go back to performing events on the publisher thread, as do
+	 * events published while they are detached.
+	 */
+	@Override
+	public void dispose() {
+		disposed = true;
+		for (Ring ring : rings) {
+			ring.worker.interrupt();
+		}
+		Target[] attached;
+		synchronized (targets) {
+			attached = targets.toArray(new Target[0]);
+			targets.clear();
+		}
+		for (Target target : attached) {
+			target.delegate.detach(target);
+		}
+	}
+
+	public boolean isDisposed() {
+		return disposed;
+	}
+}
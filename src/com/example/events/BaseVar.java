@@ -41,7 +41,10 @@ public class BaseVar <T> extends WritableValue<T>{
 		public BaseVar[] others;
 	}
 	/**
-	 * chain availability of Vars
+	 * chain availability of Vars. each var keeps its own handler and the chain
+	 * counts the vars having a value, so a change costs O(1) however many
+	 * vars are chained. hasValue is read when a var notifies, setting the
+	 * field without set() is seen at its next notification.
 	 *
 	 * @param action action triggered when chained variables have value.
 	 *               (dependencies satisfied)
@@ -49,30 +52,41 @@ public class BaseVar <T> extends WritableValue<T>{
 	 */
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public static void chain(Var<? extends Object> pthis, ChainAction action, BaseVar... vars) {
-		
-		INotification handler = new INotification() {
-			@Override
-			public void perform(Object from, INotificationEventArgs e) {
-				if (vars.length > 0) {
-					boolean hasValue = true;
-					for (BaseVar other : vars) {
-						if (!other.hasValue) {
-							hasValue = false;
-							break;
+		if (vars.length == 0) {
+			return;
+		}
+		final boolean[] satisfied = new boolean[vars.length];
+		final int[] count = { 0 };
+		for (int i = 0; i < vars.length; ++i) {
+			if (vars[i].hasValue) {
+				satisfied[i] = true;
+				++count[0];
+			}
+		}
+		for (int i = 0; i < vars.length; ++i) {
+			final int index = i;
+			final BaseVar var = vars[i];
+			var.onChanged.addDelegate(new INotification() {
+				@Override
+				public void perform(Object from, INotificationEventArgs e) {
+					boolean hasValue = var.hasValue;
+					synchronized (satisfied) {
+						if (satisfied[index] != hasValue) {
+							satisfied[index] = hasValue;
+							count[0] += hasValue ? 1 : -1;
+						}
+						if (count[0] < vars.length) {
+							return;
 						}
 					}
-					if (hasValue && action != null) {
+					if (action != null) {
 						ChainActionArgs args = new ChainActionArgs();
 						args.sender = pthis;
 						args.others = vars;
 						action.run(args);
 					}
 				}
-			}
-		};
-
-		for (BaseVar var : vars) {
-			var.onChanged.addDelegate(handler);
+			});
 		}
 	}
 	/**
@@ -1,10 +1,10 @@
 package com.example.events;
 
-import java.util.LinkedHashMap;
-import java.util.Vector;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import com.example.sharp.BaseLinkedList;
-import com.example.sharp.BaseLinkedListNode;
 import com.example.sharp.Delegates;
 import com.example.sharp.Tracer;
 
@@ -26,14 +26,155 @@ public class EventDelegate<T extends INotification> {
 	public static interface Handler7<T1,T2,T3,T4,T5,T6,T7> extends INotification<INotificationEventArgs.INotificationEventArg7<T1,T2,T3,T4,T5,T6,T7>>{}
 	public static interface Handler8<T1,T2,T3,T4,T5,T6,T7,T8> extends INotification<INotificationEventArgs.INotificationEventArg8<T1,T2,T3,T4,T5,T6,T7,T8>>{}
 	
-	public static class Event1<T1> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg1<T1>>>{}
-	public static class Event2<T1,T2> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg2<T1,T2>>>{}
-	public static class Event3<T1,T2,T3> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg3<T1,T2,T3>>>{}
-	public static class Event4<T1,T2,T3,T4> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg4<T1,T2,T3,T4>>>{}
-	public static class Event5<T1,T2,T3,T4,T5> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg5<T1,T2,T3,T4,T5>>>{}
-	public static class Event6<T1,T2,T3,T4,T5,T6> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg6<T1,T2,T3,T4,T5,T6>>>{}
-	public static class Event7<T1,T2,T3,T4,T5,T6,T7> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg7<T1,T2,T3,T4,T5,T6,T7>>>{}
-	public static class Event8<T1,T2,T3,T4,T5,T6,T7,T8> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg8<T1,T2,T3,T4,T5,T6,T7,T8>>>{}
+	/**
+	 * handler of typed invoke(sender, arg1, ...) without an args object, see
+	 * CallbackN. performArgs() adapts it to invoke(sender, args).
+	 */
+	public static interface TypedHandler {
+		void performArgs(Object from, Object[] args);
+	}
+	public static interface Callback1<T1> extends TypedHandler {
+		void perform(Object from, T1 arg1);
+		@SuppressWarnings("unchecked")
+		default void performArgs(Object from, Object[] args) {
+			perform(from, (T1) arg(args, 0));
+		}
+	}
+	public static interface Callback2<T1,T2> extends TypedHandler {
+		void perform(Object from, T1 arg1, T2 arg2);
+		@SuppressWarnings("unchecked")
+		default void performArgs(Object from, Object[] args) {
+			perform(from, (T1) arg(args, 0), (T2) arg(args, 1));
+		}
+	}
+	public static interface Callback3<T1,T2,T3> extends TypedHandler {
+		void perform(Object from, T1 arg1, T2 arg2, T3 arg3);
+		@SuppressWarnings("unchecked")
+		default void performArgs(Object from, Object[] args) {
+			perform(from, (T1) arg(args, 0), (T2) arg(args, 1), (T3) arg(args, 2));
+		}
+	}
+	public static interface Callback4<T1,T2,T3,T4> extends TypedHandler {
+		void perform(Object from, T1 arg1, T2 arg2, T3 arg3, T4 arg4);
+		@SuppressWarnings("unchecked")
+		default void performArgs(Object from, Object[] args) {
+			perform(from, (T1) arg(args, 0), (T2) arg(args, 1), (T3) arg(args, 2), (T4) arg(args, 3));
+		}
+	}
+	public static interface Callback5<T1,T2,T3,T4,T5> extends TypedHandler {
+		void perform(Object from, T1 arg1, T2 arg2, T3 arg3, T4 arg4, T5 arg5);
+		@SuppressWarnings("unchecked")
+		default void performArgs(Object from, Object[] args) {
+			perform(from, (T1) arg(args, 0), (T2) arg(args, 1), (T3) arg(args, 2), (T4) arg(args, 3), (T5) arg(args, 4));
+		}
+	}
+	public static interface Callback6<T1,T2,T3,T4,T5,T6> extends TypedHandler {
+		void perform(Object from, T1 arg1, T2 arg2, T3 arg3, T4 arg4, T5 arg5, T6 arg6);
+		@SuppressWarnings("unchecked")
+		default void performArgs(Object from, Object[] args) {
+			perform(from, (T1) arg(args, 0), (T2) arg(args, 1), (T3) arg(args, 2), (T4) arg(args, 3), (T5) arg(args, 4), (T6) arg(args, 5));
+		}
+	}
+	public static interface Callback7<T1,T2,T3,T4,T5,T6,T7> extends TypedHandler {
+		void perform(Object from, T1 arg1, T2 arg2, T3 arg3, T4 arg4, T5 arg5, T6 arg6, T7 arg7);
+		@SuppressWarnings("unchecked")
+		default void performArgs(Object from, Object[] args) {
+			perform(from, (T1) arg(args, 0), (T2) arg(args, 1), (T3) arg(args, 2), (T4) arg(args, 3), (T5) arg(args, 4), (T6) arg(args, 5), (T7) arg(args, 6));
+		}
+	}
+	public static interface Callback8<T1,T2,T3,T4,T5,T6,T7,T8> extends TypedHandler {
+		void perform(Object from, T1 arg1, T2 arg2, T3 arg3, T4 arg4, T5 arg5, T6 arg6, T7 arg7, T8 arg8);
+		@SuppressWarnings("unchecked")
+		default void performArgs(Object from, Object[] args) {
+			perform(from, (T1) arg(args, 0), (T2) arg(args, 1), (T3) arg(args, 2), (T4) arg(args, 3), (T5) arg(args, 4), (T6) arg(args, 5), (T7) arg(args, 6), (T8) arg(args, 7));
+		}
+	}
+	
+	/**
+	 * handler getting consecutive events of an async delegate in one call,
+	 * see AsyncEventBus. the arrays are reused after the call returns, only
+	 * the first count entries are set. a synchronous invoke() hands it one
+	 * event.
+	 */
+	public static interface BatchHandler extends INotification {
+		void performBatch(Object[] senders, INotificationEventArgs[] args, int count);
+		default void perform(Object from, INotificationEventArgs args) {
+			performBatch(new Object[] { from }, new INotificationEventArgs[] { args }, 1);
+		}
+	}
+	
+	public static class Event1<T1> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg1<T1>>>{
+		public Callback1<T1> subscribe(Callback1<T1> callback) {
+			addHandler(callback, false);
+			return callback;
+		}
+		public boolean unsubscribe(Callback1<T1> callback) {
+			return removeHandler(callback);
+		}
+	}
+	public static class Event2<T1,T2> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg2<T1,T2>>>{
+		public Callback2<T1,T2> subscribe(Callback2<T1,T2> callback) {
+			addHandler(callback, false);
+			return callback;
+		}
+		public boolean unsubscribe(Callback2<T1,T2> callback) {
+			return removeHandler(callback);
+		}
+	}
+	public static class Event3<T1,T2,T3> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg3<T1,T2,T3>>>{
+		public Callback3<T1,T2,T3> subscribe(Callback3<T1,T2,T3> callback) {
+			addHandler(callback, false);
+			return callback;
+		}
+		public boolean unsubscribe(Callback3<T1,T2,T3> callback) {
+			return removeHandler(callback);
+		}
+	}
+	public static class Event4<T1,T2,T3,T4> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg4<T1,T2,T3,T4>>>{
+		public Callback4<T1,T2,T3,T4> subscribe(Callback4<T1,T2,T3,T4> callback) {
+			addHandler(callback, false);
+			return callback;
+		}
+		public boolean unsubscribe(Callback4<T1,T2,T3,T4> callback) {
+			return removeHandler(callback);
+		}
+	}
+	public static class Event5<T1,T2,T3,T4,T5> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg5<T1,T2,T3,T4,T5>>>{
+		public Callback5<T1,T2,T3,T4,T5> subscribe(Callback5<T1,T2,T3,T4,T5> callback) {
+			addHandler(callback, false);
+			return callback;
+		}
+		public boolean unsubscribe(Callback5<T1,T2,T3,T4,T5> callback) {
+			return removeHandler(callback);
+		}
+	}
+	public static class Event6<T1,T2,T3,T4,T5,T6> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg6<T1,T2,T3,T4,T5,T6>>>{
+		public Callback6<T1,T2,T3,T4,T5,T6> subscribe(Callback6<T1,T2,T3,T4,T5,T6> callback) {
+			addHandler(callback, false);
+			return callback;
+		}
+		public boolean unsubscribe(Callback6<T1,T2,T3,T4,T5,T6> callback) {
+			return removeHandler(callback);
+		}
+	}
+	public static class Event7<T1,T2,T3,T4,T5,T6,T7> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg7<T1,T2,T3,T4,T5,T6,T7>>>{
+		public Callback7<T1,T2,T3,T4,T5,T6,T7> subscribe(Callback7<T1,T2,T3,T4,T5,T6,T7> callback) {
+			addHandler(callback, false);
+			return callback;
+		}
+		public boolean unsubscribe(Callback7<T1,T2,T3,T4,T5,T6,T7> callback) {
+			return removeHandler(callback);
+		}
+	}
+	public static class Event8<T1,T2,T3,T4,T5,T6,T7,T8> extends EventDelegate<INotification<INotificationEventArgs.INotificationEventArg8<T1,T2,T3,T4,T5,T6,T7,T8>>>{
+		public Callback8<T1,T2,T3,T4,T5,T6,T7,T8> subscribe(Callback8<T1,T2,T3,T4,T5,T6,T7,T8> callback) {
+			addHandler(callback, false);
+			return callback;
+		}
+		public boolean unsubscribe(Callback8<T1,T2,T3,T4,T5,T6,T7,T8> callback) {
+			return removeHandler(callback);
+		}
+	}
 	
 	
 	
@@ -87,34 +228,212 @@ public class EventDelegate<T extends INotification> {
 	public static <T1,T2,T3,T4,T5,T6,T7,T8> INotificationEventArgs.INotificationEventArg8<T1,T2,T3,T4,T5,T6,T7,T8> args(T1 v1, T2 v2,T3 v3,T4 v4,T5 v5,T6 v6,T7 v7,T8 v8){
 		return new INotificationEventArgs.INotificationEventArg8<T1,T2,T3,T4,T5,T6,T7,T8>(v1,v2,v3,v4,v5,v6,v7,v8);
 	}
-    BaseLinkedList<T> invocationList = new BaseLinkedList<>();
-    LinkedHashMap<T, T> removedAfterInvoke = new LinkedHashMap<>();
+    static final Object[] NO_HANDLERS = new Object[0];
+    /**
+     * subscribed handlers in order, or Once wrappers of them. the array is
+     * never modified, addDelegate/removeDelegate/clear publish a copy under
+     * the lock of this delegate so invoke() reads it without lock. null once
+     * disposed.
+     */
+    volatile Object[] handlers = NO_HANDLERS;
+    /**
+     * handlers with the Routes to synchronous delegates replaced by their
+     * handlers, what invoke() performs. null when a change of this delegate
+     * or of one routed from it made it stale, see snapshot().
+     */
+    volatile Object[] flat = NO_HANDLERS;
+    @SuppressWarnings("rawtypes")
+    static final AtomicReferenceFieldUpdater<EventDelegate, Object[]> FLAT = AtomicReferenceFieldUpdater
+            .newUpdater(EventDelegate.class, Object[].class, "flat");
+    /**
+     * changed by every invalidate(), a rebuilt flat is kept only if it did not
+     * change meanwhile. racing increments may collapse, they still change it.
+     */
+    volatile int version;
+    /**
+     * delegate whose route() created this one
+     */
+    volatile EventDelegate<?> routedFrom;
+    /**
+     * set once route() was called, until then flat is handlers itself
+     */
+    volatile boolean routes;
+    /**
+     * set by setAsync(), invoke() queues to its bus instead of performing
+     */
+    volatile AsyncEventBus.Target async;
     EventDelegate me;
     public EventDelegate(){
     	me = this;
     }
-    boolean invoking=false;
+
+    /**
+     * handler added with removeAfterInvoke, performed by the first invoke
+     * reaching it only
+     */
+    static final class Once implements INotification {
+        final EventDelegate<?> owner;
+        final Object handler;
+        final AtomicBoolean fired = new AtomicBoolean();
+
+        Once(EventDelegate<?> owner, Object handler) {
+            this.owner = owner;
+            this.handler = handler;
+        }
+
+        @Override
+        public void perform(Object from, INotificationEventArgs args) {
+            if (fired.compareAndSet(false, true)) {
+                owner.removeHandler(this);
+                EventDelegate.perform(handler, from, args);
+            }
+        }
+    }
+
+    /**
+     * handler added by route(), invoke() performs the handlers of the routed
+     * delegate in place of it unless that one is async
+     */
+    static final class Route implements INotification {
+        final EventDelegate child;
+
+        Route(EventDelegate child) {
+            this.child = child;
+        }
+
+        @Override
+        public void perform(Object from, INotificationEventArgs args) {
+            child.invoke(from, args);
+        }
+    }
+
+    /**
+     * @return handlers performed by invoke(), routed ones included
+     */
+    Object[] snapshot() {
+        Object[] snapshot = flat;
+        return snapshot != null ? snapshot : rebuild();
+    }
+
+    /**
+     * expand handlers without lock and publish the result unless this
+     * delegate or one routed from it changed meanwhile
+     */
+    private Object[] rebuild() {
+        int seen = version;
+        Object[] own = handlers;
+        Object[] ret = own == null ? NO_HANDLERS : expand(own);
+        if(FLAT.compareAndSet(this, null, ret)) {
+            if(version != seen) {
+                // stale already, the next snapshot() rebuilds
+                FLAT.compareAndSet(this, ret, null);
+            }
+            return ret;
+        }
+        Object[] current = flat;
+        return current != null ? current : ret;
+    }
+
+    private static boolean inline(Object handler) {
+        return handler instanceof EventDelegate.Route && ((Route) handler).child.async == null;
+    }
+
+    private static Object[] expand(Object[] own) {
+        Object[][] subs = null;
+        int count = 0;
+        for(int i = 0; i < own.length; ++i) {
+            if(inline(own[i])) {
+                if(subs == null) subs = new Object[own.length][];
+                subs[i] = ((Route) own[i]).child.snapshot();
+                count += subs[i].length;
+            } else {
+                ++count;
+            }
+        }
+        if(subs == null) return own;
+        Object[] ret = new Object[count];
+        int index = 0;
+        for(int i = 0; i < own.length; ++i) {
+            if(subs[i] != null) {
+                System.arraycopy(subs[i], 0, ret, index, subs[i].length);
+                index += subs[i].length;
+            } else {
+                ret[index++] = own[i];
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * drop flat of this delegate and of the ones it is routed from, call
+     * after changing handlers, async or routedFrom
+     */
+    void invalidate() {
+        if(!routes && routedFrom == null) {
+            // no route in or out, invoke() performs the handlers as they are
+            Object[] own;
+            do {
+                own = handlers;
+                ++version;
+                flat = own == null ? NO_HANDLERS : own;
+            } while(handlers != own);
+            return;
+        }
+        for(EventDelegate<?> delegate = this; delegate != null; delegate = delegate.routedFrom) {
+            ++delegate.version;
+            delegate.flat = null;
+        }
+    }
+
+    static Object arg(Object[] args, int index) {
+        return args != null && index < args.length ? args[index] : null;
+    }
+
+    /**
+     * perform handler with an args object, typed handlers get its values
+     */
+    @SuppressWarnings("unchecked")
+    static void perform(Object handler, Object from, INotificationEventArgs args) {
+        if (handler instanceof TypedHandler) {
+            ((TypedHandler) handler).performArgs(from, args.object);
+        } else {
+            ((INotification) handler).perform(from, args);
+        }
+    }
+
+    /**
+     * invocations are not suppressed anymore, re-entrant and concurrent
+     * invoke() calls all reach the handlers. kept for compatibility.
+     */
     public void resetInvoking() {
-    	invoking=false;
     }
 	/**
 	 * test whether no listener
 	 * 
 	 * @return true if listener is empty
 	 */
-    public synchronized boolean isEmpty() {
-        if(this.invocationList == null) return true;
-    	return invocationList.isEmpty();
+    public boolean isEmpty() {
+        return snapshot().length == 0;
     }
     
 	/**
 	 * get all invocation list. DO NOT DIRECTLY USE IT, USE addDelegate and invoke
 	 * instead.
 	 * 
-	 * @return invocation list
+	 * @return copy of invocation list, changing it does not change the handlers
 	 */
-    public synchronized  BaseLinkedList<T> getInvocationList(){
-        return invocationList;
+    @SuppressWarnings("unchecked")
+    public BaseLinkedList<T> getInvocationList(){
+        Object[] snapshot = handlers;
+        if(snapshot == null) return null;
+        BaseLinkedList<T> ret = new BaseLinkedList<>();
+        for(Object handler : snapshot) {
+            Object value = handler instanceof Once ? ((Once) handler).handler : handler;
+            if(!(value instanceof TypedHandler)) {
+                ret.add((T) value);
+            }
+        }
+        return ret;
     }
 
 	/**
@@ -123,7 +442,7 @@ public class EventDelegate<T extends INotification> {
 	 * @param t EventHandler
 	 * @return assigned event handler
 	 */
-    public synchronized T addDelegate(T t){
+    public T addDelegate(T t){
         return addDelegate(t,false);
     }
 	/**
@@ -132,14 +451,58 @@ public class EventDelegate<T extends INotification> {
 	 * @param t EventHandler
 	 * @return assigned event handler
 	 */
-    public synchronized T addDelegate(T t, boolean removeAfterInvoke){
-    	if(invocationList == null) return t;
-    	invocationList.add(t);
-    	if(removeAfterInvoke) {
-            removedAfterInvoke.put(t, t);
-    	}
+    public T addDelegate(T t, boolean removeAfterInvoke){
+    	addHandler(t, removeAfterInvoke);
         return t;
     }
+
+    public BatchHandler subscribeBatch(BatchHandler handler){
+    	addHandler(handler, false);
+    	return handler;
+    }
+
+    public boolean unsubscribeBatch(BatchHandler handler){
+    	return removeHandler(handler);
+    }
+
+    /**
+     * deliver the events of this delegate on the workers of bus, invoke()
+     * only queues them. null or a disposed bus goes back to performing on the
+     * publisher thread.
+     *
+     * @return this
+     */
+    public EventDelegate<T> setAsync(AsyncEventBus bus){
+    	async = bus == null ? null : bus.attach(this);
+    	invalidate();
+    	return this;
+    }
+
+    /**
+     * stop using target of a disposed AsyncEventBus
+     */
+    void detach(AsyncEventBus.Target target){
+    	if(async == target) {
+    		async = null;
+    		invalidate();
+    	}
+    }
+
+    public boolean isAsync(){
+    	return async != null;
+    }
+
+    /**
+     * add an INotification or TypedHandler
+     */
+    synchronized void addHandler(Object handler, boolean removeAfterInvoke){
+    	Object[] snapshot = handlers;
+    	if(snapshot == null) return;
+    	Object[] copy = Arrays.copyOf(snapshot, snapshot.length + 1);
+    	copy[snapshot.length] = removeAfterInvoke ? new Once(this, handler) : handler;
+    	handlers = copy;
+    	invalidate();
+    }
     
 	/**
 	 * remove EventHandler from a event.
@@ -147,54 +510,76 @@ public class EventDelegate<T extends INotification> {
 	 * @param t event handler
 	 * @return true if remove successfully.
 	 */
-    public synchronized boolean removeDelegate(T t){
-    	if(this.invocationList==null) return false;
-        return invocationList.remove(t);
+    public boolean removeDelegate(T t){
+        return removeHandler(t);
+    }
+
+    /**
+     * remove first subscription of handler, or a Once wrapper of it
+     */
+    synchronized boolean removeHandler(Object handler){
+    	Object[] snapshot = handlers;
+    	if(snapshot == null) return false;
+    	for(int i = 0; i < snapshot.length; ++i) {
+    		Object value = snapshot[i];
+    		if(value == handler || (value instanceof Once && ((Once) value).handler == handler)) {
+    			handlers = without(snapshot, i);
+    			invalidate();
+    			return true;
+    		}
+    	}
+        return false;
+    }
+
+    static Object[] without(Object[] snapshot, int index) {
+    	if(snapshot.length == 1) return NO_HANDLERS;
+    	Object[] copy = new Object[snapshot.length - 1];
+    	System.arraycopy(snapshot, 0, copy, 0, index);
+    	System.arraycopy(snapshot, index + 1, copy, index, snapshot.length - index - 1);
+    	return copy;
     }
 
 	/**
 	 * clear all EventHandler
 	 */
     public synchronized void clear(){
-        if(this.invocationList == null) return;
-    	invocationList.clear();
-		invocationList = new BaseLinkedList<>();
+        if(this.handlers == null) return;
+		handlers = NO_HANDLERS;
+		invalidate();
     }
 
 	/**
-	 * broadcast/notify/trigger all registered EventHandler.
+	 * broadcast/notify/trigger all registered EventHandler. handlers are
+	 * those subscribed when the call started, the call neither locks nor
+	 * allocates. handlers of delegates created by route() are performed in
+	 * the same pass. an exception of a handler is logged, the handlers after
+	 * it still run. an async delegate queues the event instead, see
+	 * setAsync().
 	 * 
 	 * @param sender Sender.
 	 * @param args   Argument for event.
 	 */
-	@SuppressWarnings("unchecked")
 	public void invoke(Object sender, INotificationEventArgs args) {
-		if(invoking) {
-			// prevent recursive
+		Object[] snapshot = snapshot();
+		if(snapshot.length == 0) {
 			return;
 		}
-		invoking=true;
-		BaseLinkedList<T> clone = getInvocationList();
-		if(clone != null) {
-        	try {
-        		Vector<BaseLinkedListNode<T>> del = new Vector<>();
-        		
-        		for(BaseLinkedListNode<T> i=clone.First.get(); i!=null; i=i.Next) {
-        		    T t = i.Value;
-                    t.perform(sender,args);
-                    if(removedAfterInvoke.size()>0 && removedAfterInvoke.containsKey(t)) {
-                        del.add(i);
-                    }    
-        		}
-    	        
-    	        for(BaseLinkedListNode<T> tNode:del) {
-    	        	tNode.Remove();
-    	        }
-        	}catch(Exception ee) {
-        		Tracer.D(ee);
-        	}
+		AsyncEventBus.Target target = async;
+		if(target != null) {
+			target.post(sender, args);
+			return;
+		}
+		dispatch(snapshot, sender, args);
+	}
+
+	void dispatch(Object[] snapshot, Object sender, INotificationEventArgs args) {
+		for(Object handler : snapshot) {
+			try {
+				perform(handler, sender, args);
+			}catch(Exception ee) {
+				Tracer.D(ee);
+			}
 		}
-    	invoking=false;
     }
 	/**
 	 * broadcast/notify/trigger all registered EventHandler.
@@ -203,34 +588,199 @@ public class EventDelegate<T extends INotification> {
 	 * @param args   Arguments for event.
 	 */
     public void invoke(Object sender,Object... args){
-        if(this.invocationList == null) return;
+        if(snapshot().length == 0) return;
         INotificationEventArgs arglist = new INotificationEventArgs();
         arglist.object = args;
         this.invoke(sender,arglist);
     }
-    public <T1> void invoke(Object sender, T1 arg1 ) {
-        this.invoke(sender, args(arg1));
+	/**
+	 * typed invoke, Callback1 handlers get the values directly. the args
+	 * object is only created when other handlers are subscribed, or to queue
+	 * the event of an async delegate.
+	 */
+    @SuppressWarnings("unchecked")
+    public <T1> void invoke(Object sender, T1 arg1) {
+        Object[] snapshot = snapshot();
+        if(snapshot.length == 0) return;
+        AsyncEventBus.Target target = async;
+        if(target != null) {
+            target.post(sender, args(arg1));
+            return;
+        }
+        INotificationEventArgs args = null;
+        for(Object handler : snapshot) {
+            try {
+                if(handler instanceof Callback1) {
+                    ((Callback1<T1>) handler).perform(sender, arg1);
+                } else {
+                    if(args == null) args = args(arg1);
+                    perform(handler, sender, args);
+                }
+            }catch(Exception ee) {
+                Tracer.D(ee);
+            }
+        }
     }
-    public <T1,T2> void invoke(Object sender, T1 arg1, T2 arg2 ) {
-        this.invoke(sender, args(arg1,arg2));
+    @SuppressWarnings("unchecked")
+    public <T1,T2> void invoke(Object sender, T1 arg1, T2 arg2) {
+        Object[] snapshot = snapshot();
+        if(snapshot.length == 0) return;
+        AsyncEventBus.Target target = async;
+        if(target != null) {
+            target.post(sender, args(arg1,arg2));
+            return;
+        }
+        INotificationEventArgs args = null;
+        for(Object handler : snapshot) {
+            try {
+                if(handler instanceof Callback2) {
+                    ((Callback2<T1,T2>) handler).perform(sender, arg1, arg2);
+                } else {
+                    if(args == null) args = args(arg1,arg2);
+                    perform(handler, sender, args);
+                }
+            }catch(Exception ee) {
+                Tracer.D(ee);
+            }
+        }
     }
-    public <T1,T2,T3> void invoke(Object sender, T1 arg1, T2 arg2, T3 arg3 ) {
-        this.invoke(sender, args(arg1,arg2,arg3));
+    @SuppressWarnings("unchecked")
+    public <T1,T2,T3> void invoke(Object sender, T1 arg1, T2 arg2, T3 arg3) {
+        Object[] snapshot = snapshot();
+        if(snapshot.length == 0) return;
+        AsyncEventBus.Target target = async;
+        if(target != null) {
+            target.post(sender, args(arg1,arg2,arg3));
+            return;
+        }
+        INotificationEventArgs args = null;
+        for(Object handler : snapshot) {
+            try {
+                if(handler instanceof Callback3) {
+                    ((Callback3<T1,T2,T3>) handler).perform(sender, arg1, arg2, arg3);
+                } else {
+                    if(args == null) args = args(arg1,arg2,arg3);
+                    perform(handler, sender, args);
+                }
+            }catch(Exception ee) {
+                Tracer.D(ee);
+            }
+        }
     }
-    public <T1,T2,T3,T4> void invoke(Object sender, T1 arg1, T2 arg2, T3 arg3, T4 arg4 ) {
-        this.invoke(sender, args(arg1,arg2,arg3,arg4));
+    @SuppressWarnings("unchecked")
+    public <T1,T2,T3,T4> void invoke(Object sender, T1 arg1, T2 arg2, T3 arg3, T4 arg4) {
+        Object[] snapshot = snapshot();
+        if(snapshot.length == 0) return;
+        AsyncEventBus.Target target = async;
+        if(target != null) {
+            target.post(sender, args(arg1,arg2,arg3,arg4));
+            return;
+        }
+        INotificationEventArgs args = null;
+        for(Object handler : snapshot) {
+            try {
+                if(handler instanceof Callback4) {
+                    ((Callback4<T1,T2,T3,T4>) handler).perform(sender, arg1, arg2, arg3, arg4);
+                } else {
+                    if(args == null) args = args(arg1,arg2,arg3,arg4);
+                    perform(handler, sender, args);
+                }
+            }catch(Exception ee) {
+                Tracer.D(ee);
+            }
+        }
     }
-    public <T1,T2,T3,T4,T5> void invoke(Object sender, T1 arg1, T2 arg2, T3 arg3, T4 arg4, T5 arg5 ) {
-        this.invoke(sender, args(arg1,arg2,arg3,arg4,arg5));
+    @SuppressWarnings("unchecked")
+    public <T1,T2,T3,T4,T5> void invoke(Object sender, T1 arg1, T2 arg2, T3 arg3, T4 arg4, T5 arg5) {
+        Object[] snapshot = snapshot();
+        if(snapshot.length == 0) return;
+        AsyncEventBus.Target target = async;
+        if(target != null) {
+            target.post(sender, args(arg1,arg2,arg3,arg4,arg5));
+            return;
+        }
+        INotificationEventArgs args = null;
+        for(Object handler : snapshot) {
+            try {
+                if(handler instanceof Callback5) {
+                    ((Callback5<T1,T2,T3,T4,T5>) handler).perform(sender, arg1, arg2, arg3, arg4, arg5);
+                } else {
+                    if(args == null) args = args(arg1,arg2,arg3,arg4,arg5);
+                    perform(handler, sender, args);
+                }
+            }catch(Exception ee) {
+                Tracer.D(ee);
+            }
+        }
     }
-    public <T1,T2,T3,T4,T5,T6> void invoke(Object sender, T1 arg1, T2 arg2, T3 arg3, T4 arg4, T5 arg5 , T6 arg6) {
-        this.invoke(sender, args(arg1,arg2,arg3,arg4,arg5,arg6));
+    @SuppressWarnings("unchecked")
+    public <T1,T2,T3,T4,T5,T6> void invoke(Object sender, T1 arg1, T2 arg2, T3 arg3, T4 arg4, T5 arg5, T6 arg6) {
+        Object[] snapshot = snapshot();
+        if(snapshot.length == 0) return;
+        AsyncEventBus.Target target = async;
+        if(target != null) {
+            target.post(sender, args(arg1,arg2,arg3,arg4,arg5,arg6));
+            return;
+        }
+        INotificationEventArgs args = null;
+        for(Object handler : snapshot) {
+            try {
+                if(handler instanceof Callback6) {
+                    ((Callback6<T1,T2,T3,T4,T5,T6>) handler).perform(sender, arg1, arg2, arg3, arg4, arg5, arg6);
+                } else {
+                    if(args == null) args = args(arg1,arg2,arg3,arg4,arg5,arg6);
+                    perform(handler, sender, args);
+                }
+            }catch(Exception ee) {
+                Tracer.D(ee);
+            }
+        }
     }
-    public <T1,T2,T3,T4,T5,T6,T7> void invoke(Object sender, T1 arg1, T2 arg2, T3 arg3, T4 arg4, T5 arg5 , T6 arg6, T7 arg7) {
-        this.invoke(sender, args(arg1,arg2,arg3,arg4,arg5,arg6,arg7));
+    @SuppressWarnings("unchecked")
+    public <T1,T2,T3,T4,T5,T6,T7> void invoke(Object sender, T1 arg1, T2 arg2, T3 arg3, T4 arg4, T5 arg5, T6 arg6, T7 arg7) {
+        Object[] snapshot = snapshot();
+        if(snapshot.length == 0) return;
+        AsyncEventBus.Target target = async;
+        if(target != null) {
+            target.post(sender, args(arg1,arg2,arg3,arg4,arg5,arg6,arg7));
+            return;
+        }
+        INotificationEventArgs args = null;
+        for(Object handler : snapshot) {
+            try {
+                if(handler instanceof Callback7) {
+                    ((Callback7<T1,T2,T3,T4,T5,T6,T7>) handler).perform(sender, arg1, arg2, arg3, arg4, arg5, arg6, arg7);
+                } else {
+                    if(args == null) args = args(arg1,arg2,arg3,arg4,arg5,arg6,arg7);
+                    perform(handler, sender, args);
+                }
+            }catch(Exception ee) {
+                Tracer.D(ee);
+            }
+        }
     }
-    public <T1,T2,T3,T4,T5,T6,T7,T8> void invoke(Object sender, T1 arg1, T2 arg2, T3 arg3, T4 arg4, T5 arg5 , T6 arg6, T7 arg7, T8 arg8) {
-        this.invoke(sender, args(arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8));
+    @SuppressWarnings("unchecked")
+    public <T1,T2,T3,T4,T5,T6,T7,T8> void invoke(Object sender, T1 arg1, T2 arg2, T3 arg3, T4 arg4, T5 arg5, T6 arg6, T7 arg7, T8 arg8) {
+        Object[] snapshot = snapshot();
+        if(snapshot.length == 0) return;
+        AsyncEventBus.Target target = async;
+        if(target != null) {
+            target.post(sender, args(arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8));
+            return;
+        }
+        INotificationEventArgs args = null;
+        for(Object handler : snapshot) {
+            try {
+                if(handler instanceof Callback8) {
+                    ((Callback8<T1,T2,T3,T4,T5,T6,T7,T8>) handler).perform(sender, arg1, arg2, arg3, arg4, arg5, arg6, arg7, arg8);
+                } else {
+                    if(args == null) args = args(arg1,arg2,arg3,arg4,arg5,arg6,arg7,arg8);
+                    perform(handler, sender, args);
+                }
+            }catch(Exception ee) {
+                Tracer.D(ee);
+            }
+        }
     }
     
     Delegates.Action onDisposed=null;
@@ -239,7 +789,9 @@ public class EventDelegate<T extends INotification> {
     	if(onDisposed!=null) {
     		try {
     		   this.clear();
-    		   invocationList = null;
+    		   handlers = null;
+    		   async = null;
+    		   invalidate();
     		   onDisposed.Invoke();
     		   onDisposed=null;
     		}catch(Exception ee) {
@@ -249,222 +801,54 @@ public class EventDelegate<T extends INotification> {
     }
    
     /**
-     * Hook/route event handler
-     * @return
+     * link child as routed from this delegate, dispose() of child detaches it
      */
-	@SuppressWarnings("unchecked")
-	public EventDelegate<T> route(){
-		
-		final EventDelegate<T> ret = new EventDelegate<T>();
-		
-		final T notification = (T) new INotification() {
+    @SuppressWarnings("unchecked")
+    private <E extends EventDelegate> E routeTo(E child) {
+    	final Route route = new Route(child);
+    	child.routedFrom = this;
+    	routes = true;
+    	child.onDisposed = () -> {
+    		me.removeHandler(route);
+    		child.routedFrom = null;
+    	};
+    	addHandler(route, false);
+    	return child;
+    }
 
-			@Override
-			public void perform(Object from, INotificationEventArgs args) {
-				ret.invoke(from, args);
-			}
-			
-		};
-		ret.onDisposed=new Delegates.Action() {
-			
-			@Override
-			public void Invoke() {
-				me.removeDelegate(notification);
-			}
-		};
-		this.addDelegate(notification);
-		return ret;
+    /**
+     * Hook/route event handler. invoke() of this delegate performs the
+     * handlers of the returned one in the same pass, without forwarding
+     * through its invoke() or creating args objects per hop.
+     * @return routed delegate, dispose() it to detach
+     */
+	public EventDelegate<T> route(){
+		return routeTo(new EventDelegate<T>());
 	}
 	
-	/////////////////////////////////////////////////
-	//
-	//  following code is for simplify parameterized route
-	//  use codegen to maintain them, no need to directly modify
-	//
-	@SuppressWarnings("unchecked")
 	public <T1> Event1<T1> route1(){
-
-		final Event1<T1> ret = new Event1<T1>();
-		
-		final Handler1<T1> notification= new Handler1<T1>() {
-
-			@Override
-			public void perform(Object from, INotificationEventArgs.INotificationEventArg1<T1> args) {
-				ret.invoke(from, args.get_1());
-			}
-			
-		};
-		ret.onDisposed=new Delegates.Action() {
-			
-			@Override
-			public void Invoke() {
-				me.removeDelegate(notification);
-			}
-		};
-		this.addDelegate((T) notification);
-		return ret;
+		return routeTo(new Event1<T1>());
 	}
-	@SuppressWarnings("unchecked")
 	public <T1,T2> Event2<T1,T2> route2(){
-
-		final Event2<T1,T2> ret = new Event2<T1,T2>();
-		
-		final Handler2<T1,T2> notification= new Handler2<T1,T2>() {
-
-			@Override
-			public void perform(Object from, INotificationEventArgs.INotificationEventArg2<T1,T2> args) {
-				ret.invoke(from, args.get_1(),args.get_2());
-			}
-			
-		};
-		ret.onDisposed=new Delegates.Action() {
-			
-			@Override
-			public void Invoke() {
-				me.removeDelegate(notification);
-			}
-		};
-		this.addDelegate((T) notification);
-		return ret;
+		return routeTo(new Event2<T1,T2>());
 	}
-	@SuppressWarnings("unchecked")
 	public <T1,T2,T3> Event3<T1,T2,T3> route3(){
-
-		final Event3<T1,T2,T3> ret = new Event3<T1,T2,T3>();
-		
-		final Handler3<T1,T2,T3> notification= new Handler3<T1,T2,T3>() {
-
-			@Override
-			public void perform(Object from, INotificationEventArgs.INotificationEventArg3<T1,T2,T3> args) {
-				ret.invoke(from, args.get_1(),args.get_2(),args.get_3());
-			}
-			
-		};
-		ret.onDisposed=new Delegates.Action() {
-			
-			@Override
-			public void Invoke() {
-				me.removeDelegate(notification);
-			}
-		};
-		this.addDelegate((T) notification);
-		return ret;
+		return routeTo(new Event3<T1,T2,T3>());
 	}
-	
-	@SuppressWarnings("unchecked")
 	public <T1,T2,T3,T4> Event4<T1,T2,T3,T4> route4(){
-
-		final Event4<T1,T2,T3,T4> ret = new Event4<T1,T2,T3,T4>();
-		
-		final Handler4<T1,T2,T3,T4> notification= new Handler4<T1,T2,T3,T4>() {
-
-			@Override
-			public void perform(Object from, INotificationEventArgs.INotificationEventArg4<T1,T2,T3,T4> args) {
-				ret.invoke(from, args.get_1(),args.get_2(),args.get_3(),args.get_4());
-			}
-			
-		};
-		ret.onDisposed=new Delegates.Action() {
-			
-			@Override
-			public void Invoke() {
-				me.removeDelegate(notification);
-			}
-		};
-		this.addDelegate((T) notification);
-		return ret;
+		return routeTo(new Event4<T1,T2,T3,T4>());
 	}
-	@SuppressWarnings("unchecked")
 	public <T1,T2,T3,T4,T5> Event5<T1,T2,T3,T4,T5> route5(){
-
-		final Event5<T1,T2,T3,T4,T5> ret = new Event5<T1,T2,T3,T4,T5>();
-		
-		final Handler5<T1,T2,T3,T4,T5> notification= new Handler5<T1,T2,T3,T4,T5>() {
-
-			@Override
-			public void perform(Object from, INotificationEventArgs.INotificationEventArg5<T1,T2,T3,T4,T5> args) {
-				ret.invoke(from, args.get_1(),args.get_2(),args.get_3(),args.get_4(),args.get_5());
-			}
-			
-		};
-		ret.onDisposed=new Delegates.Action() {
-			
-			@Override
-			public void Invoke() {
-				me.removeDelegate(notification);
-			}
-		};
-		this.addDelegate((T) notification);
-		return ret;
+		return routeTo(new Event5<T1,T2,T3,T4,T5>());
 	}
-	@SuppressWarnings("unchecked")
 	public <T1,T2,T3,T4,T5,T6> Event6<T1,T2,T3,T4,T5,T6> route6(){
-
-		final Event6<T1,T2,T3,T4,T5,T6> ret = new Event6<T1,T2,T3,T4,T5,T6>();
-		
-		final Handler6<T1,T2,T3,T4,T5,T6> notification= new Handler6<T1,T2,T3,T4,T5,T6>() {
-
-			@Override
-			public void perform(Object from, INotificationEventArgs.INotificationEventArg6<T1,T2,T3,T4,T5,T6> args) {
-				ret.invoke(from, args.get_1(),args.get_2(),args.get_3(),args.get_4(),args.get_5(),args.get_6());
-			}
-			
-		};
-		ret.onDisposed=new Delegates.Action() {
-			
-			@Override
-			public void Invoke() {
-				me.removeDelegate(notification);
-			}
-		};
-		this.addDelegate((T) notification);
-		return ret;
+		return routeTo(new Event6<T1,T2,T3,T4,T5,T6>());
 	}
-	@SuppressWarnings("unchecked")
 	public <T1,T2,T3,T4,T5,T6,T7> Event7<T1,T2,T3,T4,T5,T6,T7> route7(){
-
-		final Event7<T1,T2,T3,T4,T5,T6,T7> ret = new Event7<T1,T2,T3,T4,T5,T6,T7>();
-		
-		final Handler7<T1,T2,T3,T4,T5,T6,T7> notification= new Handler7<T1,T2,T3,T4,T5,T6,T7>() {
-
-			@Override
-			public void perform(Object from, INotificationEventArgs.INotificationEventArg7<T1,T2,T3,T4,T5,T6,T7> args) {
-				ret.invoke(from, args.get_1(),args.get_2(),args.get_3(),args.get_4(),args.get_5(),args.get_6(),args.get_7());
-			}
-			
-		};
-		ret.onDisposed=new Delegates.Action() {
-			
-			@Override
-			public void Invoke() {
-				me.removeDelegate(notification);
-			}
-		};
-		this.addDelegate((T) notification);
-		return ret;
+		return routeTo(new Event7<T1,T2,T3,T4,T5,T6,T7>());
 	}
-	@SuppressWarnings("unchecked")
 	public <T1,T2,T3,T4,T5,T6,T7,T8> Event8<T1,T2,T3,T4,T5,T6,T7,T8> route8(){
-
-		final Event8<T1,T2,T3,T4,T5,T6,T7,T8> ret = new Event8<T1,T2,T3,T4,T5,T6,T7,T8>();
-		
-		final Handler8<T1,T2,T3,T4,T5,T6,T7,T8> notification= new Handler8<T1,T2,T3,T4,T5,T6,T7,T8>() {
-
-			@Override
-			public void perform(Object from, INotificationEventArgs.INotificationEventArg8<T1,T2,T3,T4,T5,T6,T7,T8> args) {
-				ret.invoke(from, args.get_1(),args.get_2(),args.get_3(),args.get_4(),args.get_5(),args.get_6(),args.get_7(),args.get_8());
-			}
-			
-		};
-		ret.onDisposed=new Delegates.Action() {
-			
-			@Override
-			public void Invoke() {
-				me.removeDelegate(notification);
-			}
-		};
-		this.addDelegate((T) notification);
-		return ret;
+		return routeTo(new Event8<T1,T2,T3,T4,T5,T6,T7,T8>());
 	}
 	@Override
 	protected void finalize() throws Throwable {
@@ -57,5 +57,12 @@ public class NamedEventHandler<NamedType> {
 	public void invoke(Object sender,NamedType name,GenericDataSet args) {
 		this.OnNamedEventTriggered.invoke(sender, name,args);
 	}
+	/**
+	 * deliver OnNamedEventTriggered on the workers of bus, null for the
+	 * thread calling invoke()
+	 */
+	public void setAsync(AsyncEventBus bus) {
+		this.OnNamedEventTriggered.setAsync(bus);
+	}
 
 }
@@ -1,11 +1,121 @@
 package com.example.events;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.example.sharp.TimerWheel;
+import com.example.sharp.coroutine.AsyncTaskExecutor;
+import com.example.sharp.coroutine.Parallelx;
+
 /**
  * a variable class which provides onValueChange event.
  *
+ * with setCoalescing() a var changed many times a second notifies less
+ * often: set() only stores the value, and onValueChanged/onChanged run later
+ * on FlushExecutor with the latest value and the value of the last
+ * notification as originValue. the TimerWheel.shared() thread only finds the
+ * notification due, so slow handlers do not delay other timers. the
+ * notifications of one var never overlap.
+ *
  * @param <T> variable type.
  */
 public class Var<T extends Object> extends BaseVar<T> {
+	/**
+	 * runs coalesced notifications, null for a pool of Parallelx.Concurrency
+	 * threads created on first use
+	 */
+	public static volatile AsyncTaskExecutor FlushExecutor = null;
+	private static AsyncTaskExecutor flushPool;
+
+	static AsyncTaskExecutor getFlushExecutor() {
+		AsyncTaskExecutor executor = FlushExecutor;
+		if (executor != null) {
+			return executor;
+		}
+		synchronized (Var.class) {
+			if (flushPool == null) {
+				flushPool = AsyncTaskExecutor.newPool(Math.max(2, Parallelx.Concurrency), Integer.MAX_VALUE);
+			}
+			return flushPool;
+		}
+	}
+
+	/**
+	 * when onValueChanged of a set() is fired
+	 */
+	public enum Coalescing {
+		/**
+		 * in set(), on the calling thread
+		 */
+		NONE,
+		/**
+		 * once per window: the first set() starts it, the latest value is
+		 * notified when it ends
+		 */
+		WINDOW,
+		/**
+		 * at most once per period: a set() after a quiet period notifies at
+		 * once, later ones wait for the end of the period
+		 */
+		THROTTLE,
+		/**
+		 * on the next tick of a clock shared by the vars of the same period,
+		 * one timer flushes all of them
+		 */
+		TICK
+	}
+
+	/**
+	 * flushes the dirty vars of one TICK period
+	 */
+	static final class Ticker {
+		static final ConcurrentHashMap<Long, Ticker> tickers = new ConcurrentHashMap<Long, Ticker>();
+		final long period;
+		final ConcurrentLinkedQueue<Var<?>> dirty = new ConcurrentLinkedQueue<Var<?>>();
+		final AtomicBoolean armed = new AtomicBoolean();
+		/**
+		 * multiple of period the last tick was scheduled for
+		 */
+		volatile long lastTick;
+		/**
+		 * ticks run so far, vars added while a tick runs wait for the next
+		 */
+		volatile long ticks;
+
+		Ticker(long period) {
+			this.period = period;
+		}
+
+		void add(Var<?> var) {
+			var.tickAdded = ticks;
+			dirty.offer(var);
+			if (armed.compareAndSet(false, true)) {
+				// ticks are multiples of period, vars of the period flush together.
+				// a tick run a little early must not be followed by another at once
+				long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+				long next = (now / period + 1) * period;
+				if (next <= lastTick) {
+					next = lastTick + period;
+				}
+				lastTick = next;
+				TimerWheel.shared().schedule(next - now, this::tick);
+			}
+		}
+
+		void tick() {
+			armed.set(false);
+			long current = ++ticks;
+			Var<?> var;
+			while ((var = dirty.peek()) != null && var.tickAdded < current) {
+				dirty.poll();
+				var.due();
+			}
+		}
+	}
+
 	public static <T> Var<T> create(T val){
 		return new Var<T>(val);
 	}
@@ -20,6 +130,8 @@ public class Var<T extends Object> extends BaseVar<T> {
 		boolean m_unsetOnNull;
 		T m_defaultValue;
 		boolean m_notifyOnOnlyChange=false;
+		Coalescing m_coalescing=Coalescing.NONE;
+		long m_coalescingMillis;
 		INotification<ValueChangedEventArgs<T>> m_valueChangedHandler;
 		INotification<INotificationEventArgs.INotificationEventArg1<T>> m_valueChangeRejectHandler;
 		public Builder<T> unsetOnNull(boolean enabled) {
@@ -34,6 +146,11 @@ public class Var<T extends Object> extends BaseVar<T> {
 			this.m_notifyOnOnlyChange=bEnable;
 			return this;
 		}
+		public Builder<T> coalescing(Coalescing mode, long millis){
+			this.m_coalescing=mode;
+			this.m_coalescingMillis=millis;
+			return this;
+		}
 		public Builder<T> changed(INotification<ValueChangedEventArgs<T>> valueChangedHandler) {
 			this.m_valueChangedHandler=valueChangedHandler;
 			return this;
@@ -45,17 +162,10 @@ public class Var<T extends Object> extends BaseVar<T> {
 		}
 		public Var<T> build(){
 			
-			Var<T> ret = new Var<T>(m_defaultValue){
-				public void set(T value) {
-					super.set(value);
-					if(m_unsetOnNull) {
-						if(value == null) {
-							this.hasValue=false;
-						}
-					}
-				}
-			};
+			Var<T> ret = new Var<T>(m_defaultValue);
+			ret.unsetOnNull=m_unsetOnNull;
 			ret.notifyOnlyOnChanged=m_notifyOnOnlyChange;
+			ret.setCoalescing(m_coalescing, m_coalescingMillis);
 			if(m_unsetOnNull && m_defaultValue == null) {
 				ret.hasValue=false;
 			}
@@ -85,6 +195,14 @@ public class Var<T extends Object> extends BaseVar<T> {
 	}
 	public void dispose() {
 		if(isDisposed()) return;
+		synchronized(this) {
+			pending = false;
+			pendingOrigin = null;
+			if(flushTimeout != null) {
+				flushTimeout.cancel();
+				flushTimeout = null;
+			}
+		}
 		if(this.onValueChanged != null)
 			this.onValueChanged.dispose();
 		this.onValueChanged = null;
@@ -118,7 +236,127 @@ public class Var<T extends Object> extends BaseVar<T> {
 	}
 
 	/**
-	 * set value, trigger ValueChanged event.
+	 * clear hasValue when set to null, notifications see it cleared
+	 */
+	boolean unsetOnNull;
+	Coalescing coalescing = Coalescing.NONE;
+	long coalescingMillis;
+	/**
+	 * a coalesced notification is due, pendingOrigin is the value it reports
+	 * as changed from
+	 */
+	boolean pending;
+	T pendingOrigin;
+	long lastFlushNanos;
+	/**
+	 * Ticker.ticks when this var was queued for a TICK
+	 */
+	long tickAdded;
+	TimerWheel.Timeout flushTimeout;
+	/**
+	 * due() calls not yet followed by a flush() on FlushExecutor
+	 */
+	final AtomicInteger dues = new AtomicInteger();
+
+	/**
+	 * choose when set() notifies, see Coalescing. a pending notification is
+	 * flushed first.
+	 *
+	 * @param millis window, period or tick length, at least 1
+	 * @return this
+	 */
+	public Var<T> setCoalescing(Coalescing mode, long millis) {
+		flush();
+		synchronized(this) {
+			this.coalescing = mode != null ? mode : Coalescing.NONE;
+			this.coalescingMillis = Math.max(1, millis);
+		}
+		return this;
+	}
+
+	public Coalescing getCoalescing() {
+		return coalescing;
+	}
+
+	/**
+	 * @return true while a coalesced notification waits
+	 */
+	public synchronized boolean isPending() {
+		return pending;
+	}
+
+	/**
+	 * remember a coalesced change, schedule its notification if none waits
+	 */
+	private void schedule(T origValue) {
+		boolean now = false;
+		synchronized(this) {
+			if(pending || isdisposed) return;
+			pending = true;
+			pendingOrigin = origValue;
+			switch(coalescing) {
+			case WINDOW:
+				flushTimeout = TimerWheel.shared().schedule(coalescingMillis, this::due);
+				break;
+			case THROTTLE:
+				long wait = lastFlushNanos + TimeUnit.MILLISECONDS.toNanos(coalescingMillis) - System.nanoTime();
+				if(lastFlushNanos == 0 || wait <= 0) {
+					now = true;
+				} else {
+					flushTimeout = TimerWheel.shared().schedule(TimeUnit.NANOSECONDS.toMillis(wait) + 1, this::due);
+				}
+				break;
+			default:
+				Ticker.tickers.computeIfAbsent(coalescingMillis, Ticker::new).add(this);
+			}
+		}
+		if(now) {
+			flush();
+		}
+	}
+
+	/**
+	 * wheel thread: the pending notification is due, flush() it on
+	 * FlushExecutor. while a flush of this var runs, the next one waits for it.
+	 */
+	void due() {
+		if (dues.getAndIncrement() == 0) {
+			getFlushExecutor().execute("Var", () -> {
+				do {
+					flush();
+				} while (dues.decrementAndGet() > 0);
+			});
+		}
+	}
+
+	/**
+	 * fire the pending coalesced notification now, if any. with
+	 * notifyOnlyOnChanged it is skipped when the value went back to the one
+	 * last notified.
+	 */
+	public void flush() {
+		T origValue;
+		synchronized(this) {
+			if(!pending) return;
+			pending = false;
+			origValue = pendingOrigin;
+			pendingOrigin = null;
+			if(flushTimeout != null) {
+				flushTimeout.cancel();
+				flushTimeout = null;
+			}
+			lastFlushNanos = System.nanoTime();
+		}
+		T newValue = this.value;
+		if(notifyOnlyOnChanged && newValue != null && newValue.equals(origValue)) {
+			return;
+		}
+		notifyValueChanged(newValue, origValue);
+	}
+
+	/**
+	 * set value, trigger ValueChanged event, right away or later as chosen
+	 * by setCoalescing().
 	 * @param value given value
 	 * @return
 	 */
@@ -134,14 +372,18 @@ public class Var<T extends Object> extends BaseVar<T> {
 			changed=true;
 		}
 		this.value = value;
-		hasValue=true;
+		hasValue=!(unsetOnNull && value == null);
 		if(skipInitialValueNotification) {
 			if(!hadValue) {
 				changed=false;
 			}
 		}
 		if (changed) {
-			notifyValueChanged(this.value,origValue);
+			if(coalescing != Coalescing.NONE) {
+				schedule(origValue);
+			} else {
+				notifyValueChanged(this.value,origValue);
+			}
 		}
 	}
 
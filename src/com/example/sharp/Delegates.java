@@ -4,6 +4,7 @@ import java.lang.reflect.Array;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Iterator;
@@ -11,6 +12,7 @@ import java.util.StringTokenizer;
 import java.util.Vector;
 
 import com.example.sharp.coroutine.Coroutine;
+import com.example.sharp.coroutine.ParallelIterable;
 
 public class Delegates {
     public static interface Func<T> {
@@ -205,6 +207,14 @@ public class Delegates {
     	public default LinkedList<T> toList(){
     		return Delegates.tolist(this);
     	}
+    	/**
+    	 * run following translate/filter stages on Parallelx workers,
+    	 * terminal operations merge worker results in source order
+    	 * @return parallel stage
+    	 */
+    	public default ParallelIterable<T> parallel(){
+    		return ParallelIterable.of(this);
+    	}
     }
     public static interface IteratorEx<T> extends Iterator<T>{
     	public default <T2> IteratorEx<T2> translate(Func1<T, T2> translator){
@@ -255,6 +265,32 @@ public class Delegates {
     	public default LinkedList<T> toList(){
     		return Delegates.tolist(this);
     	}
+    	/**
+    	 * move next values into buf
+    	 * @param buf buffer to fill from index 0
+    	 * @return count of values, less than buf.length only when exhausted
+    	 */
+    	public default int nextBatch(T[] buf){
+    		int count = 0;
+    		while(count < buf.length && hasNext()) {
+    			buf[count++] = next();
+    		}
+    		return count;
+    	}
+    	/**
+    	 * move next values into a collection
+    	 * @param target collection to add to
+    	 * @param max maximal count of values to move
+    	 * @return count of values added
+    	 */
+    	public default int drainTo(Collection<? super T> target, int max){
+    		int count = 0;
+    		while(count < max && hasNext()) {
+    			target.add(next());
+    			++count;
+    		}
+    		return count;
+    	}
     }
     static class IterableExImpl<T> implements IterableEx<T>{
     	Iterable<T> instance;
@@ -271,6 +307,10 @@ public class Delegates {
     	}
     	public <V> Dictionary<T,V> map(Delegates.Func1<T, V> transform, Delegates.Func1<T, Boolean> accept){
     		return Delegates.map(instance, transform, accept);
+    	}
+    	public ParallelIterable<T> parallel(){
+    		// wrapped lists and arrays are partitioned by index
+    		return ParallelIterable.of(instance);
     	}
 		@Override
 		public Iterator<T> iterator() {
@@ -303,8 +343,22 @@ public class Delegates {
 		public T next() {
 			return instance.next();
 		}
-    	
-		
+
+		@Override
+		public int nextBatch(T[] buf) {
+			if (instance instanceof IteratorEx) {
+				return ((IteratorEx<T>) instance).nextBatch(buf);
+			}
+			return IteratorEx.super.nextBatch(buf);
+		}
+
+		@Override
+		public int drainTo(Collection<? super T> target, int max) {
+			if (instance instanceof IteratorEx) {
+				return ((IteratorEx<T>) instance).drainTo(target, max);
+			}
+			return IteratorEx.super.drainTo(target, max);
+		}
     }
     /**
      * up cast
@@ -449,14 +503,8 @@ public class Delegates {
     	if(array == null || array.length == 0) {
     		ret = Delegates.NullIterable();
     	} else {
-	    	 ret = new Iterable<T>() {
-	
-	            @Override
-	            public Iterator<T> iterator() {
-	                return Delegates.iterator((T[]) array);
-	            }
-	
-	        };
+    		// random access view, so parallel() can split by index
+    		ret = Arrays.asList(array);
     	}
     	return new IterableExImpl<T>(ret); 
     }
@@ -638,8 +686,14 @@ public class Delegates {
      */
     public static <T> ArrayList<T> toArrayList(Iterable<T> iterable){
     	ArrayList<T> ret = new ArrayList<T>();
-        for(T value:iterable) {
-            ret.add(value);
+    	Iterator<T> iterator = iterable.iterator();
+    	if(iterator instanceof IteratorEx) {
+    		// batch capable iterators (e.g. coroutines) drain without per element calls
+    		((IteratorEx<T>) iterator).drainTo(ret, Integer.MAX_VALUE);
+    		return ret;
+    	}
+        while(iterator.hasNext()) {
+            ret.add(iterator.next());
         }
         return ret;
     }
@@ -667,8 +721,13 @@ public class Delegates {
      */
     public static <T> Vector<T> toVector(Iterable<T> iterable){
         Vector<T> ret = new Vector<T>();
-        for(T value:iterable) {
-            ret.add(value);
+    	Iterator<T> iterator = iterable.iterator();
+    	if(iterator instanceof IteratorEx) {
+    		((IteratorEx<T>) iterator).drainTo(ret, Integer.MAX_VALUE);
+    		return ret;
+    	}
+        while(iterator.hasNext()) {
+            ret.add(iterator.next());
         }
         return ret;
     }
@@ -5,10 +5,10 @@ import com.example.events.INotification;
 import com.example.events.INotificationEventArgs;
 
 public class Dictionary<K, V> extends BaseDictionary<K, V>{
-	public final EventDelegate<INotification<INotificationEventArgs.INotificationEventArg1<K>>> ItemAdded = new EventDelegate<>();
-	public final EventDelegate<INotification<INotificationEventArgs.INotificationEventArg1<K>>> ItemRemoved = new EventDelegate<>();
-	public final EventDelegate<INotification<INotificationEventArgs.INotificationEventArg1<K>>> ItemUpdated = new EventDelegate<>();
-	public final EventDelegate<INotification<INotificationEventArgs.INotificationEventArg1<Object>>> Cleared = new EventDelegate<>();
+	public final EventDelegate.Event1<K> ItemAdded = new EventDelegate.Event1<>();
+	public final EventDelegate.Event1<K> ItemRemoved = new EventDelegate.Event1<>();
+	public final EventDelegate.Event1<K> ItemUpdated = new EventDelegate.Event1<>();
+	public final EventDelegate.Event1<Object> Cleared = new EventDelegate.Event1<>();
 	public static class DebugCallbacks<K>{
 		public final INotification<INotificationEventArgs.INotificationEventArg1<K>> OnItemAdded = (s,e)->{
 			Tracer.D("DEBUG");
@@ -23,11 +23,11 @@ public class LRUDictionary<K,V> {
 	int capacity;
 	Dictionary<K, KeyValuePair<BaseLinkedListNode<K>, V>> dict = new Dictionary<>();
 	BaseLinkedList<K> list = new BaseLinkedList<>();
-	public final EventDelegate<INotification<INotificationEventArgs.INotificationEventArg1<K>>> ItemAdded = dict.ItemAdded.route();
+	public final EventDelegate.Event1<K> ItemAdded = dict.ItemAdded.route1();
 	public final EventDelegate<INotification<INotificationEventArgs.INotificationEventArg2<K,V>>> BeforeRemoveItem = new EventDelegate<>();
-	public final EventDelegate<INotification<INotificationEventArgs.INotificationEventArg1<K>>> ItemRemoved = dict.ItemRemoved.route();
-	public final EventDelegate<INotification<INotificationEventArgs.INotificationEventArg1<K>>> ItemUpdated = dict.ItemUpdated.route();
-	public final EventDelegate<INotification<INotificationEventArgs.INotificationEventArg1<Object>>> Cleared = dict.Cleared.route();
+	public final EventDelegate.Event1<K> ItemRemoved = dict.ItemRemoved.route1();
+	public final EventDelegate.Event1<K> ItemUpdated = dict.ItemUpdated.route1();
+	public final EventDelegate.Event1<Object> Cleared = dict.Cleared.route1();
 	/**
 	 * get all values
 	 */
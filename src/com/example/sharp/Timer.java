@@ -3,8 +3,10 @@ package com.example.sharp;
 import com.example.android.IUiThreadRunner;
 import com.example.events.EventDelegate;
 import com.example.events.INotificationEventArgs;
+import com.example.sharp.coroutine.AsyncTaskExecutor;
+import com.example.sharp.coroutine.Parallelx;
 
-import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * TimerWrapper as System.Windows.Forms.Timer in C# usage:
@@ -16,9 +18,26 @@ import java.util.TimerTask;
  * });
  * timer.start();
  * </pre>
+ *
+ * timers share one TimerWheel thread, Tick handlers run on the ui thread of
+ * the parent or on the bounded TickExecutor pool. a tick is skipped while the
+ * handlers of the previous tick are still running.
  */
 public class Timer {
-    private java.util.Timer mTimer;
+    /**
+     * wheel of timers created without one, null for TimerWheel.shared()
+     */
+    public static volatile TimerWheel DefaultWheel = null;
+    /**
+     * runs Tick handlers of timers without ui thread, null for a pool of
+     * Parallelx.Concurrency threads created on first use
+     */
+    public static volatile AsyncTaskExecutor TickExecutor = null;
+    private static AsyncTaskExecutor tickPool;
+
+    private final TimerWheel mWheel;
+    private TimerWheel.Timeout mTimeout;
+    private final AtomicBoolean mTicking = new AtomicBoolean();
     private IUiThreadRunner mParent;
     @SuppressWarnings("rawtypes")
     EventDelegate ValueChanged = new EventDelegate();
@@ -35,31 +54,74 @@ public class Timer {
 
     protected void onValueChanged() {
         boolean origEnabled = bEnabled;
-        mTimer.cancel();
+        cancel();
         if (origEnabled) {
             start();
         }
         ValueChanged.invoke(this, new INotificationEventArgs());
     }
 
-    public synchronized void start() {
-        mTimer = new java.util.Timer();
-        mTimer.schedule(new TimerTask() {
-            @SuppressWarnings("unchecked")
-            @Override
-            public void run() {
-                if (mParent != null) {
-                    mParent.runOnUiThread(() -> Tick.invoke(this, this));
-                } else {
-                    Tick.invoke(this);
-                }
+    static AsyncTaskExecutor getTickExecutor() {
+        AsyncTaskExecutor executor = TickExecutor;
+        if (executor != null) {
+            return executor;
+        }
+        synchronized (Timer.class) {
+            if (tickPool == null) {
+                tickPool = AsyncTaskExecutor.newPool(Math.max(2, Parallelx.Concurrency), Integer.MAX_VALUE);
+            }
+            return tickPool;
+        }
+    }
+
+    /**
+     * wheel thread: hand the tick to the ui thread or the pool unless the
+     * previous one is still running
+     */
+    @SuppressWarnings("unchecked")
+    private void onTimeout() {
+        if (!mTicking.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (mParent != null) {
+                mParent.runOnUiThread(() -> {
+                    try {
+                        Tick.invoke(this, this);
+                    } finally {
+                        mTicking.set(false);
+                    }
+                });
+            } else {
+                getTickExecutor().execute("Timer", () -> {
+                    try {
+                        Tick.invoke(this);
+                    } finally {
+                        mTicking.set(false);
+                    }
+                });
             }
-        }, 0L, Interval);
+        } catch (RuntimeException ee) {
+            mTicking.set(false);
+            throw ee;
+        }
+    }
+
+    private void cancel() {
+        if (mTimeout != null) {
+            mTimeout.cancel();
+            mTimeout = null;
+        }
+    }
+
+    public synchronized void start() {
+        cancel();
+        mTimeout = mWheel.schedule(0L, Interval, this::onTimeout);
         this.bEnabled = true;
     }
 
     public synchronized void stop() {
-        mTimer.cancel();
+        cancel();
         bEnabled = false;
     }
 
@@ -84,8 +146,16 @@ public class Timer {
     }
 
     public Timer(IUiThreadRunner activity) {
+        this(activity, null);
+    }
+
+    /**
+     * @param wheel wheel of this timer, null for DefaultWheel
+     */
+    public Timer(IUiThreadRunner activity, TimerWheel wheel) {
         this.mParent = activity;
-        this.mTimer = new java.util.Timer();
+        TimerWheel defaultWheel = DefaultWheel;
+        this.mWheel = wheel != null ? wheel : defaultWheel != null ? defaultWheel : TimerWheel.shared();
     }
 
     @SuppressWarnings("rawtypes")
@@ -0,0 +1,316 @@
+package com.example.sharp;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * hierarchical timing wheel, runs delayed and periodic actions on one daemon
+ * thread. schedule and cancel are O(1): a timeout is linked into a bucket of
+ * the level whose span covers its delay, and moves down a level each time
+ * the wheel below completes a revolution.
+ *
+ * <pre>
+ * TimerWheel.Timeout timeout = TimerWheel.shared().schedule(500, () -&gt; {
+ *     // runs about 500ms later on the wheel thread
+ * });
+ * timeout.cancel();
+ * </pre>
+ *
+ * actions run on the wheel thread and should be short. the thread sleeps while
+ * nothing is scheduled, and up to the next revolution while the lowest level
+ * is empty.
+ */
+public class TimerWheel {
+    /**
+     * scheduled action, dispose() is the same as cancel()
+     */
+    public class Timeout implements IDisposable {
+        final Delegates.Action action;
+        /**
+         * expiry tick
+         */
+        long deadline;
+        /**
+         * ticks between runs, 0 for a single run
+         */
+        final long period;
+        int level;
+        int bucket = -1;
+        Timeout prev;
+        Timeout next;
+        volatile boolean cancelled;
+        volatile boolean expired;
+
+        Timeout(Delegates.Action action, long period) {
+            this.action = action;
+            this.period = period;
+        }
+
+        /**
+         * @return true when the action will not run anymore because of this call
+         */
+        public boolean cancel() {
+            synchronized (TimerWheel.this) {
+                if (cancelled || expired) {
+                    return false;
+                }
+                cancelled = true;
+                unlink(this);
+                --pending;
+                return true;
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * @return true when a single run action ran, periodic actions never
+         *         expire
+         */
+        public boolean isExpired() {
+            return expired;
+        }
+
+        public boolean isPeriodic() {
+            return period > 0;
+        }
+
+        @Override
+        public void dispose() {
+            cancel();
+        }
+    }
+
+    final long tickNanos;
+    /**
+     * wheels[level][bucket], a bucket of level spans 2^(bits * level) ticks
+     */
+    final Timeout[][] wheels;
+    final int bits;
+    final int mask;
+    /**
+     * last processed tick
+     */
+    long tick;
+    /**
+     * tick the wheel thread sleeps until
+     */
+    long wakeTick = Long.MAX_VALUE;
+    long startNanos;
+    int pending;
+    /**
+     * timeouts in level 0
+     */
+    int nearCount;
+    Thread worker;
+
+    /**
+     * @param tickMillis resolution, timeouts expire up to one tick late
+     * @param wheelSize  buckets per level, rounded up to a power of two
+     */
+    public TimerWheel(long tickMillis, int wheelSize) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.bits = Integer.numberOfTrailingZeros(size);
+        this.mask = size - 1;
+        // enough levels for any long delay
+        this.wheels = new Timeout[(63 + bits - 1) / bits][size];
+    }
+
+    private static volatile TimerWheel sharedWheel;
+
+    /**
+     * @return process wide wheel with 1ms ticks and 256 buckets per level
+     */
+    public static TimerWheel shared() {
+        TimerWheel wheel = sharedWheel;
+        if (wheel == null) {
+            synchronized (TimerWheel.class) {
+                if (sharedWheel == null) {
+                    sharedWheel = new TimerWheel(1, 256);
+                }
+                wheel = sharedWheel;
+            }
+        }
+        return wheel;
+    }
+
+    public long getTickMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    /**
+     * run action once after delayMillis
+     *
+     * @return handle to cancel the action
+     */
+    public Timeout schedule(long delayMillis, Delegates.Action action) {
+        return schedule(delayMillis, 0, action);
+    }
+
+    /**
+     * run action after delayMillis, then every periodMillis at a fixed rate
+     * until cancelled. runs the wheel thread missed while it was behind are
+     * made up at once.
+     *
+     * @param periodMillis 0 for a single run
+     * @return handle to cancel the action
+     */
+    public Timeout schedule(long delayMillis, long periodMillis, Delegates.Action action) {
+        long period = periodMillis > 0 ? Math.max(1, (TimeUnit.MILLISECONDS.toNanos(periodMillis) + tickNanos - 1) / tickNanos) : 0;
+        Timeout timeout = new Timeout(action, period);
+        synchronized (this) {
+            if (worker == null) {
+                startNanos = System.nanoTime();
+                worker = new Thread(this::run, "TimerWheel");
+                worker.setDaemon(true);
+                worker.start();
+            }
+            long elapsed = System.nanoTime() - startNanos;
+            if (pending == 0) {
+                // the wheel was idle and may be behind, its buckets are empty
+                tick = Math.max(tick, elapsed / tickNanos);
+                notifyAll();
+            }
+            long deadline = (elapsed + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)) + tickNanos - 1) / tickNanos;
+            timeout.deadline = Math.max(tick + 1, deadline);
+            link(timeout);
+            ++pending;
+            if (timeout.deadline < wakeTick) {
+                LockSupport.unpark(worker);
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * @return scheduled actions not yet expired or cancelled
+     */
+    public synchronized int getPendingCount() {
+        return pending;
+    }
+
+    /**
+     * link timeout into the lowest level whose span covers its remaining ticks
+     */
+    private void link(Timeout timeout) {
+        long delta = timeout.deadline - tick;
+        int level = 0;
+        while (level < wheels.length - 1 && (delta >>> (bits * (level + 1))) != 0) {
+            ++level;
+        }
+        int bucket = (int) ((timeout.deadline >>> (bits * level)) & mask);
+        Timeout[] wheel = wheels[level];
+        timeout.level = level;
+        timeout.bucket = bucket;
+        timeout.prev = null;
+        timeout.next = wheel[bucket];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        wheel[bucket] = timeout;
+        if (level == 0) {
+            ++nearCount;
+        }
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            wheels[timeout.level][timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        if (timeout.level == 0) {
+            --nearCount;
+        }
+    }
+
+    /**
+     * process ticks up to target, re-link the timeouts of buckets reached by
+     * the upper levels and take the expired ones
+     */
+    private synchronized ArrayList<Timeout> advance(long target, ArrayList<Timeout> expired) {
+        while (tick < target && pending > 0) {
+            ++tick;
+            for (int level = 1; level < wheels.length; ++level) {
+                if ((tick & ((1L << (bits * level)) - 1)) != 0) {
+                    break;
+                }
+                int bucket = (int) ((tick >>> (bits * level)) & mask);
+                Timeout timeout = wheels[level][bucket];
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    unlink(timeout);
+                    link(timeout);
+                    timeout = next;
+                }
+            }
+            if (nearCount == 0) {
+                continue;
+            }
+            Timeout timeout = wheels[0][(int) (tick & mask)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                unlink(timeout);
+                if (timeout.period > 0) {
+                    timeout.deadline += timeout.period;
+                    link(timeout);
+                } else {
+                    timeout.expired = true;
+                    --pending;
+                }
+                expired.add(timeout);
+                timeout = next;
+            }
+        }
+        if (pending == 0) {
+            // idle, schedule() moves the wheel forward
+            tick = Math.max(tick, target);
+        }
+        return expired;
+    }
+
+    private void run() {
+        ArrayList<Timeout> expired = new ArrayList<Timeout>();
+        while (true) {
+            long wait;
+            synchronized (this) {
+                while (pending == 0) {
+                    wakeTick = Long.MAX_VALUE;
+                    try {
+                        wait();
+                    } catch (InterruptedException ee) {
+                        return;
+                    }
+                }
+                // nothing expires before the next revolution while level 0 is empty
+                wakeTick = nearCount == 0 ? (tick | mask) + 1 : tick + 1;
+                wait = startNanos + wakeTick * tickNanos - System.nanoTime();
+            }
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            advance((System.nanoTime() - startNanos) / tickNanos, expired);
+            for (Timeout timeout : expired) {
+                if (timeout.cancelled) {
+                    continue;
+                }
+                try {
+                    timeout.action.Invoke();
+                } catch (Exception ee) {
+                    ee.printStackTrace();
+                }
+            }
+            expired.clear();
+        }
+    }
+}
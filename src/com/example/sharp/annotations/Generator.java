@@ -13,7 +13,10 @@ import java.lang.annotation.Target;
  * The method should return a Coroutine or implement a generator body
  * that can be converted to an Iterator/Iterable.
  * 
- * Note: This annotation is primarily for documentation purposes.
+ * Note: At run time this annotation is for documentation purposes only.
+ * Compiled with {@link GeneratorProcessor}, static generators written as
+ * {@code return YieldHelper.generate((yield) -> { ... })} are also emitted as
+ * state machines in {@code <Enclosing>Generators}.
  * For generic methods, the returnType parameter may be omitted.
  */
 @Retention(RetentionPolicy.RUNTIME)
@@ -0,0 +1,764 @@
+package com.example.sharp.annotations;
+
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.BreakTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ContinueTree;
+import com.sun.source.tree.DoWhileLoopTree;
+import com.sun.source.tree.EnhancedForLoopTree;
+import com.sun.source.tree.ExpressionStatementTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.ForLoopTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.IfTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.LabeledStatementTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.NewArrayTree;
+import com.sun.source.tree.ReturnTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.tree.WhileLoopTree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
+import com.sun.source.util.Trees;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compile time translation of {@link Generator} methods into state machines.
+ *
+ * A static @Generator method whose body is a single
+ * {@code return YieldHelper.generate((yield) -> { ... })} written in plain
+ * Java (locals, if/else, for, foreach, while, do, break, continue, return and
+ * {@code yield.accept(value)}) is translated to a class
+ * {@code <Enclosing>Generators} in the same package. It has a static method of
+ * the same name and parameters, which returns an iterable whose iterators run
+ * the body as a switch over resume points: locals become fields and every
+ * yield returns from advance(), so no instruction list is built or
+ * interpreted.
+ *
+ * <pre>
+ * javac -processorpath classes -processor com.example.sharp.annotations.GeneratorProcessor ...
+ * </pre>
+ *
+ * Methods in any other form are left alone with a compile warning and keep
+ * running through YieldHelper. Not translated are:
+ * <ul>
+ * <li>bodies built with the Coroutine API, or anything but a single
+ * {@code return YieldHelper.generate(...)}</li>
+ * <li>instance methods, and return types which are not an Iterable</li>
+ * <li>yield around labeled break or continue, switch, try or synchronized,
+ * and yield inside a lambda or a class body</li>
+ * <li>{@code yield} used other than by {@code yield.accept(value)}, locals
+ * without a declared type and names hiding fields of GeneratedIterator</li>
+ * </ul>
+ * There is no yield-from: a recursive generator written as
+ * {@code for (T x : self(...)) yield.accept(x);} is translated as a plain
+ * foreach, so every level of the recursion keeps its own iterator and an
+ * element passes through each of them.
+ * Helpers called by a translated body must not be private, since the
+ * generated class is a different class of the same package.
+ */
+@SupportedAnnotationTypes("com.example.sharp.annotations.Generator")
+public class GeneratorProcessor extends AbstractProcessor {
+    static final String SUFFIX = "Generators";
+    static final Set<String> RESERVED = new HashSet<>(Arrays.asList("state", "current"));
+
+    private Trees trees;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment env) {
+        super.init(env);
+        try {
+            trees = Trees.instance(env);
+        } catch (IllegalArgumentException | NoClassDefFoundError e) {
+            // not javac, source trees are not available
+            trees = null;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        if (trees == null) {
+            return false;
+        }
+        Map<TypeElement, List<ExecutableElement>> methods = new LinkedHashMap<>();
+        for (Element element : round.getElementsAnnotatedWith(Generator.class)) {
+            if (element.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            methods.computeIfAbsent((TypeElement) element.getEnclosingElement(), (k) -> new ArrayList<>())
+                    .add((ExecutableElement) element);
+        }
+        for (Map.Entry<TypeElement, List<ExecutableElement>> entry : methods.entrySet()) {
+            writeClass(entry.getKey(), entry.getValue());
+        }
+        return false;
+    }
+
+    private void warn(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+    }
+
+    private void writeClass(TypeElement type, List<ExecutableElement> methods) {
+        StringBuilder body = new StringBuilder();
+        Set<String> classNames = new HashSet<>();
+        List<Element> origins = new ArrayList<>();
+        CompilationUnitTree unit = null;
+        for (ExecutableElement method : methods) {
+            TreePath path = trees.getPath(method);
+            if (path == null) {
+                continue;
+            }
+            String className = Character.toUpperCase(method.getSimpleName().charAt(0))
+                    + method.getSimpleName().toString().substring(1) + "StateMachine";
+            for (int i = 2; !classNames.add(className); ++i) {
+                className = className.replaceAll("\\d*$", "") + i;
+            }
+            try {
+                String code = new Translator(path.getCompilationUnit(), method, className).translate();
+                body.append(code);
+                origins.add(method);
+                unit = path.getCompilationUnit();
+            } catch (Unsupported e) {
+                warn(method, "@Generator " + method.getSimpleName() + " is not compiled to a state machine: " + e.getMessage());
+            }
+        }
+        if (unit == null) {
+            return;
+        }
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+        String generated = type.getSimpleName() + SUFFIX;
+        String qualified = pkg.isUnnamed() ? generated : pkg.getQualifiedName() + "." + generated;
+        StringBuilder out = new StringBuilder();
+        if (!pkg.isUnnamed()) {
+            out.append("package ").append(pkg.getQualifiedName()).append(";\n\n");
+        }
+        for (ImportTree imp : unit.getImports()) {
+            out.append(imp.toString().trim()).append('\n');
+        }
+        out.append("import static ").append(type.getQualifiedName()).append(".*;\n");
+        out.append("import ").append(type.getQualifiedName()).append(".*;\n\n");
+        out.append("/**\n * state machines of the @Generator methods of ").append(type.getSimpleName())
+                .append(", written by GeneratorProcessor\n */\n");
+        out.append("public final class ").append(generated).append(" {\n");
+        out.append("    private ").append(generated).append("() {\n    }\n");
+        out.append(body);
+        out.append("}\n");
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualified, origins.toArray(new Element[0])).openWriter()) {
+            writer.write(out.toString());
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "cannot write " + qualified + ": " + e, type);
+        }
+    }
+
+    /**
+     * thrown when a method cannot be translated
+     */
+    static class Unsupported extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        Unsupported(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * translates the body of one method
+     */
+    class Translator {
+        final CompilationUnitTree unit;
+        final ExecutableElement method;
+        final String className;
+        final SourcePositions positions;
+        final CharSequence source;
+        final LinkedHashMap<String, String> fields = new LinkedHashMap<>();
+        final List<StringBuilder> states = new ArrayList<>();
+        /**
+         * {break state, continue state} of enclosing loops
+         */
+        final ArrayDeque<int[]> loops = new ArrayDeque<>();
+        String yieldName;
+        String elementType;
+        StringBuilder current;
+        boolean terminated;
+        int iterators;
+
+        Translator(CompilationUnitTree unit, ExecutableElement method, String className) throws Unsupported {
+            this.unit = unit;
+            this.method = method;
+            this.className = className;
+            this.positions = trees.getSourcePositions();
+            try {
+                this.source = unit.getSourceFile().getCharContent(true);
+            } catch (IOException e) {
+                throw new Unsupported("source is not readable");
+            }
+        }
+
+        String translate() throws Unsupported {
+            if (!method.getModifiers().contains(Modifier.STATIC)) {
+                throw new Unsupported("method is not static");
+            }
+            for (VariableElement param : method.getParameters()) {
+                if (RESERVED.contains(param.getSimpleName().toString())) {
+                    throw new Unsupported("parameter " + param.getSimpleName() + " hides a field of GeneratedIterator");
+                }
+            }
+            TypeMirror returnType = method.getReturnType();
+            if (returnType.getKind() != TypeKind.DECLARED || ((DeclaredType) returnType).getTypeArguments().size() != 1) {
+                throw new Unsupported("return type is not an Iterable of elements");
+            }
+            elementType = ((DeclaredType) returnType).getTypeArguments().get(0).toString();
+            MethodTree tree = trees.getTree(method);
+            BlockTree block = tree.getBody();
+            if (block == null || block.getStatements().size() != 1 || block.getStatements().get(0).getKind() != Tree.Kind.RETURN) {
+                throw new Unsupported("body is not a single return YieldHelper.generate(...)");
+            }
+            ExpressionTree expr = ((ReturnTree) block.getStatements().get(0)).getExpression();
+            if (expr == null || expr.getKind() != Tree.Kind.METHOD_INVOCATION) {
+                throw new Unsupported("body is not a single return YieldHelper.generate(...)");
+            }
+            MethodInvocationTree call = (MethodInvocationTree) expr;
+            String callee = text(call.getMethodSelect());
+            if (!callee.matches("(([\\w.]+\\.)?YieldHelper\\.)?generate(Lazy)?") || call.getArguments().size() != 1
+                    || call.getArguments().get(0).getKind() != Tree.Kind.LAMBDA_EXPRESSION) {
+                throw new Unsupported("body is not a single return YieldHelper.generate(...)");
+            }
+            LambdaExpressionTree lambda = (LambdaExpressionTree) call.getArguments().get(0);
+            yieldName = lambda.getParameters().get(0).getName().toString();
+            checkYieldUses(lambda.getBody());
+
+            begin(newState());
+            if (lambda.getBody() instanceof BlockTree) {
+                statement((StatementTree) lambda.getBody());
+            } else {
+                throw new Unsupported("generator body is not a block");
+            }
+            if (!terminated) {
+                emit("state = -1;");
+                emit("return false;");
+                terminated = true;
+            }
+            return write();
+        }
+
+        String text(Tree tree) throws Unsupported {
+            long start = positions.getStartPosition(unit, tree);
+            long end = positions.getEndPosition(unit, tree);
+            if (start < 0 || end < 0) {
+                throw new Unsupported("source positions are not available");
+            }
+            return source.subSequence((int) start, (int) end).toString();
+        }
+
+        /**
+         * the collector may only be used as receiver of yield statements
+         */
+        void checkYieldUses(Tree body) throws Unsupported {
+            Set<Tree> receivers = new HashSet<>();
+            int[] uses = new int[1];
+            new TreeScanner<Void, Void>() {
+                int nested;
+
+                @Override
+                public Void visitExpressionStatement(ExpressionStatementTree node, Void p) {
+                    if (nested == 0 && yielded(node) != null) {
+                        receivers.add(((MemberSelectTree) ((MethodInvocationTree) node.getExpression()).getMethodSelect()).getExpression());
+                    }
+                    return super.visitExpressionStatement(node, p);
+                }
+
+                @Override
+                public Void visitIdentifier(IdentifierTree node, Void p) {
+                    if (node.getName().contentEquals(yieldName)) {
+                        ++uses[0];
+                    }
+                    return null;
+                }
+
+                @Override
+                public Void visitLambdaExpression(LambdaExpressionTree node, Void p) {
+                    ++nested;
+                    super.visitLambdaExpression(node, p);
+                    --nested;
+                    return null;
+                }
+
+                @Override
+                public Void visitClass(ClassTree node, Void p) {
+                    ++nested;
+                    super.visitClass(node, p);
+                    --nested;
+                    return null;
+                }
+            }.scan(body, null);
+            if (uses[0] != receivers.size()) {
+                throw new Unsupported(yieldName + " is used other than by " + yieldName + ".accept(value)");
+            }
+        }
+
+        /**
+         * value of a yield statement, or null if it is no yield
+         */
+        ExpressionTree yielded(StatementTree stmt) {
+            if (stmt.getKind() != Tree.Kind.EXPRESSION_STATEMENT) {
+                return null;
+            }
+            ExpressionTree expr = ((ExpressionStatementTree) stmt).getExpression();
+            if (expr.getKind() != Tree.Kind.METHOD_INVOCATION) {
+                return null;
+            }
+            MethodInvocationTree call = (MethodInvocationTree) expr;
+            if (call.getMethodSelect().getKind() != Tree.Kind.MEMBER_SELECT || call.getArguments().size() != 1) {
+                return null;
+            }
+            MemberSelectTree select = (MemberSelectTree) call.getMethodSelect();
+            if (select.getExpression().getKind() != Tree.Kind.IDENTIFIER
+                    || !((IdentifierTree) select.getExpression()).getName().contentEquals(yieldName)) {
+                return null;
+            }
+            if (!select.getIdentifier().contentEquals("accept") && !select.getIdentifier().contentEquals("yieldReturn")) {
+                return null;
+            }
+            return call.getArguments().get(0);
+        }
+
+        /**
+         * test if a statement must be split into states: it yields, returns
+         * from the generator, or breaks/continues a loop outside of it
+         */
+        boolean suspends(StatementTree stmt) {
+            boolean[] found = new boolean[1];
+            new TreeScanner<Void, Void>() {
+                int loops;
+                int switches;
+                Set<String> labels = new HashSet<>();
+
+                @Override
+                public Void visitExpressionStatement(ExpressionStatementTree node, Void p) {
+                    if (yielded(node) != null) {
+                        found[0] = true;
+                    }
+                    return super.visitExpressionStatement(node, p);
+                }
+
+                @Override
+                public Void visitReturn(ReturnTree node, Void p) {
+                    found[0] = true;
+                    return null;
+                }
+
+                @Override
+                public Void visitBreak(BreakTree node, Void p) {
+                    if (node.getLabel() != null ? !labels.contains(node.getLabel().toString()) : loops + switches == 0) {
+                        found[0] = true;
+                    }
+                    return null;
+                }
+
+                @Override
+                public Void visitContinue(ContinueTree node, Void p) {
+                    if (node.getLabel() != null ? !labels.contains(node.getLabel().toString()) : loops == 0) {
+                        found[0] = true;
+                    }
+                    return null;
+                }
+
+                @Override
+                public Void visitLabeledStatement(LabeledStatementTree node, Void p) {
+                    labels.add(node.getLabel().toString());
+                    return super.visitLabeledStatement(node, p);
+                }
+
+                @Override
+                public Void visitSwitch(com.sun.source.tree.SwitchTree node, Void p) {
+                    ++switches;
+                    super.visitSwitch(node, p);
+                    --switches;
+                    return null;
+                }
+
+                @Override
+                public Void visitForLoop(ForLoopTree node, Void p) {
+                    ++loops;
+                    super.visitForLoop(node, p);
+                    --loops;
+                    return null;
+                }
+
+                @Override
+                public Void visitEnhancedForLoop(EnhancedForLoopTree node, Void p) {
+                    ++loops;
+                    super.visitEnhancedForLoop(node, p);
+                    --loops;
+                    return null;
+                }
+
+                @Override
+                public Void visitWhileLoop(WhileLoopTree node, Void p) {
+                    ++loops;
+                    super.visitWhileLoop(node, p);
+                    --loops;
+                    return null;
+                }
+
+                @Override
+                public Void visitDoWhileLoop(DoWhileLoopTree node, Void p) {
+                    ++loops;
+                    super.visitDoWhileLoop(node, p);
+                    --loops;
+                    return null;
+                }
+
+                @Override
+                public Void visitLambdaExpression(LambdaExpressionTree node, Void p) {
+                    return null;
+                }
+
+                @Override
+                public Void visitClass(ClassTree node, Void p) {
+                    return null;
+                }
+            }.scan(stmt, null);
+            return found[0];
+        }
+
+        int newState() {
+            states.add(new StringBuilder());
+            return states.size() - 1;
+        }
+
+        void begin(int state) {
+            current = states.get(state);
+            terminated = false;
+        }
+
+        void emit(String code) {
+            current.append("                    ").append(code).append('\n');
+        }
+
+        /**
+         * continue at state, unless the current state already left
+         */
+        void jump(int state) {
+            if (!terminated) {
+                emit("state = " + state + ";");
+                emit("continue;");
+                terminated = true;
+            }
+        }
+
+        /**
+         * continue at state and begin it, the common fall through
+         */
+        void enter(int state) {
+            jump(state);
+            begin(state);
+        }
+
+        String condition(ExpressionTree cond) throws Unsupported {
+            String text = text(cond);
+            return cond.getKind() == Tree.Kind.PARENTHESIZED ? text : "(" + text + ")";
+        }
+
+        /**
+         * make a local of the body a field of the state machine
+         */
+        String hoist(VariableTree var) throws Unsupported {
+            if (var.getType() == null) {
+                throw new Unsupported("local " + var.getName() + " has no declared type");
+            }
+            String name = var.getName().toString();
+            if (RESERVED.contains(name)) {
+                throw new Unsupported("local " + name + " hides a field of GeneratedIterator");
+            }
+            String type = text(var.getType());
+            String known = fields.get(name);
+            if (known != null && !known.equals(type)) {
+                throw new Unsupported("local " + name + " is declared as " + known + " and " + type);
+            }
+            fields.put(name, type);
+            return type;
+        }
+
+        void declare(VariableTree var) throws Unsupported {
+            String name = var.getName().toString();
+            String type = hoist(var);
+            if (var.getInitializer() != null) {
+                String init = text(var.getInitializer());
+                if (var.getInitializer().getKind() == Tree.Kind.NEW_ARRAY && ((NewArrayTree) var.getInitializer()).getType() == null) {
+                    init = "new " + type + " " + init;
+                }
+                emit(name + " = " + init + ";");
+            }
+        }
+
+        void statement(StatementTree stmt) throws Unsupported {
+            if (terminated) {
+                throw new Unsupported("unreachable statement");
+            }
+            switch (stmt.getKind()) {
+                case BLOCK:
+                    for (StatementTree child : ((BlockTree) stmt).getStatements()) {
+                        statement(child);
+                    }
+                    return;
+                case VARIABLE:
+                    declare((VariableTree) stmt);
+                    return;
+                case EMPTY_STATEMENT:
+                    return;
+                default:
+                    break;
+            }
+            ExpressionTree value = yielded(stmt);
+            if (value != null) {
+                int next = newState();
+                emit("current = " + text(value) + ";");
+                emit("state = " + next + ";");
+                emit("return true;");
+                begin(next);
+                return;
+            }
+            if (!suspends(stmt)) {
+                String text = text(stmt);
+                if (!text.endsWith(";") && !text.endsWith("}")) {
+                    text += ";";
+                }
+                emit(text);
+                return;
+            }
+            switch (stmt.getKind()) {
+                case IF:
+                    ifStatement((IfTree) stmt);
+                    return;
+                case WHILE_LOOP:
+                    whileLoop((WhileLoopTree) stmt);
+                    return;
+                case DO_WHILE_LOOP:
+                    doWhileLoop((DoWhileLoopTree) stmt);
+                    return;
+                case FOR_LOOP:
+                    forLoop((ForLoopTree) stmt);
+                    return;
+                case ENHANCED_FOR_LOOP:
+                    enhancedForLoop((EnhancedForLoopTree) stmt);
+                    return;
+                case RETURN:
+                    emit("state = -1;");
+                    emit("return false;");
+                    terminated = true;
+                    return;
+                case BREAK:
+                case CONTINUE:
+                    boolean isBreak = stmt.getKind() == Tree.Kind.BREAK;
+                    Object label = isBreak ? ((BreakTree) stmt).getLabel() : ((ContinueTree) stmt).getLabel();
+                    if (label != null || loops.isEmpty()) {
+                        throw new Unsupported("labeled break or continue around yield");
+                    }
+                    jump(isBreak ? loops.peek()[0] : loops.peek()[1]);
+                    return;
+                default:
+                    throw new Unsupported(stmt.getKind() + " statement around yield");
+            }
+        }
+
+        void ifStatement(IfTree stmt) throws Unsupported {
+            int end = newState();
+            int otherwise = stmt.getElseStatement() != null ? newState() : end;
+            emit("if (!" + condition(stmt.getCondition()) + ") { state = " + otherwise + "; continue; }");
+            statement(stmt.getThenStatement());
+            jump(end);
+            if (stmt.getElseStatement() != null) {
+                begin(otherwise);
+                statement(stmt.getElseStatement());
+                jump(end);
+            }
+            begin(end);
+        }
+
+        void whileLoop(WhileLoopTree stmt) throws Unsupported {
+            int cond = newState();
+            int exit = newState();
+            enter(cond);
+            emit("if (!" + condition(stmt.getCondition()) + ") { state = " + exit + "; continue; }");
+            loop(stmt.getStatement(), exit, cond);
+            jump(cond);
+            begin(exit);
+        }
+
+        void doWhileLoop(DoWhileLoopTree stmt) throws Unsupported {
+            int body = newState();
+            int cond = newState();
+            int exit = newState();
+            enter(body);
+            loop(stmt.getStatement(), exit, cond);
+            enter(cond);
+            emit("if " + condition(stmt.getCondition()) + " { state = " + body + "; continue; }");
+            enter(exit);
+        }
+
+        void forLoop(ForLoopTree stmt) throws Unsupported {
+            for (StatementTree init : stmt.getInitializer()) {
+                if (init.getKind() == Tree.Kind.VARIABLE) {
+                    declare((VariableTree) init);
+                } else {
+                    emit(text(((ExpressionStatementTree) init).getExpression()) + ";");
+                }
+            }
+            int cond = newState();
+            int step = newState();
+            int exit = newState();
+            enter(cond);
+            if (stmt.getCondition() != null) {
+                emit("if (!" + condition(stmt.getCondition()) + ") { state = " + exit + "; continue; }");
+            }
+            loop(stmt.getStatement(), exit, step);
+            enter(step);
+            for (ExpressionStatementTree update : stmt.getUpdate()) {
+                emit(text(update.getExpression()) + ";");
+            }
+            jump(cond);
+            begin(exit);
+        }
+
+        void enhancedForLoop(EnhancedForLoopTree stmt) throws Unsupported {
+            String iterator = "$iterator" + iterators++;
+            fields.put(iterator, "java.util.Iterator<?>");
+            emit(iterator + " = com.example.sharp.coroutine.GeneratedIterator.iterate(" + text(stmt.getExpression()) + ");");
+            VariableTree var = stmt.getVariable();
+            String type = hoist(var);
+            int cond = newState();
+            int exit = newState();
+            enter(cond);
+            emit("if (!" + iterator + ".hasNext()) { state = " + exit + "; continue; }");
+            emit(var.getName() + " = (" + type + ") " + iterator + ".next();");
+            loop(stmt.getStatement(), exit, cond);
+            jump(cond);
+            begin(exit);
+        }
+
+        void loop(StatementTree body, int exit, int next) throws Unsupported {
+            loops.push(new int[]{exit, next});
+            statement(body);
+            loops.pop();
+        }
+
+        String write() {
+            String typeParams = "";
+            String typeArgs = "";
+            if (!method.getTypeParameters().isEmpty()) {
+                StringBuilder params = new StringBuilder("<");
+                StringBuilder args = new StringBuilder("<");
+                for (TypeParameterElement param : method.getTypeParameters()) {
+                    if (params.length() > 1) {
+                        params.append(", ");
+                        args.append(", ");
+                    }
+                    params.append(param.getSimpleName());
+                    args.append(param.getSimpleName());
+                    String bounds = "";
+                    for (TypeMirror bound : param.getBounds()) {
+                        if (!bound.toString().equals("java.lang.Object")) {
+                            bounds += (bounds.isEmpty() ? " extends " : " & ") + bound;
+                        }
+                    }
+                    params.append(bounds);
+                }
+                typeParams = params.append(">").toString();
+                typeArgs = args.append(">").toString();
+            }
+            List<? extends VariableElement> params = method.getParameters();
+            StringBuilder declared = new StringBuilder();
+            StringBuilder passed = new StringBuilder();
+            for (int i = 0; i < params.size(); ++i) {
+                String type = params.get(i).asType().toString();
+                if (method.isVarArgs() && i == params.size() - 1) {
+                    type = type.substring(0, type.length() - 2) + "...";
+                }
+                declared.append(i > 0 ? ", " : "").append(type).append(' ').append(params.get(i).getSimpleName());
+                passed.append(i > 0 ? ", " : "").append(params.get(i).getSimpleName());
+            }
+
+            StringBuilder out = new StringBuilder();
+            out.append("\n    /**\n     * compiled form of ").append(method.getEnclosingElement().getSimpleName()).append('.')
+                    .append(method.getSimpleName()).append("()\n     */\n");
+            out.append("    public static ").append(typeParams.isEmpty() ? "" : typeParams + " ")
+                    .append("com.example.sharp.Delegates.IterableEx<").append(elementType).append("> ")
+                    .append(method.getSimpleName()).append('(').append(declared).append(") {\n");
+            out.append("        java.lang.Iterable<").append(elementType).append("> iterable = () -> new ")
+                    .append(className).append(typeArgs.isEmpty() ? "" : "<>").append('(').append(passed).append(");\n");
+            out.append("        return com.example.sharp.Delegates.forall(iterable);\n    }\n\n");
+
+            out.append("    static final class ").append(className).append(typeParams)
+                    .append(" extends com.example.sharp.coroutine.GeneratedIterator<").append(elementType).append("> {\n");
+            for (VariableElement param : params) {
+                out.append("        ").append(param.asType()).append(' ').append(param.getSimpleName()).append(";\n");
+            }
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                out.append("        ").append(field.getValue()).append(' ').append(field.getKey()).append(";\n");
+            }
+            out.append("\n        ").append(className).append('(').append(declared.toString().replace("...", "[]")).append(") {\n");
+            for (VariableElement param : params) {
+                out.append("            this.").append(param.getSimpleName()).append(" = ").append(param.getSimpleName()).append(";\n");
+            }
+            out.append("        }\n\n");
+            out.append("        @Override\n");
+            out.append("        @SuppressWarnings(\"unchecked\")\n");
+            out.append("        protected boolean advance() {\n");
+            out.append("            for (;;) {\n");
+            out.append("                switch (state) {\n");
+            for (int i = 0; i < states.size(); ++i) {
+                out.append("                case ").append(i).append(": {\n");
+                out.append(states.get(i));
+                out.append("                }\n");
+            }
+            out.append("                default:\n");
+            out.append("                    return false;\n");
+            out.append("                }\n");
+            out.append("            }\n");
+            out.append("        }\n");
+            out.append("    }\n");
+            return out.toString();
+        }
+    }
+}
@@ -1,17 +1,21 @@
 package com.example.sharp.coroutine;
 
 import com.example.android.IUiThreadRunner;
-import com.example.events.WritableValue;
-import com.example.sharp.BaseLinkedList;
 import com.example.sharp.CString;
 import com.example.sharp.Delegates;
 
+import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class AsyncTask {
 	public static interface ThisAction extends Delegates.Action1<AsyncTask>, Delegates.Action {
@@ -20,150 +24,467 @@ public class AsyncTask {
 	public static <T>  ThreadingFuture<T> runAsync(Delegates.Func<T> runnable) {
 		return runAsync("",runnable);
 	}
+	/**
+	 * runAsync() cancelled when cancellationSource is cancelled, see ThreadingFuture.cancelOn()
+	 */
+	public static <T> ThreadingFuture<T> runAsync(Delegates.Func<T> runnable, CancellationTokenSource cancellationSource) {
+		return runAsync("",runnable).cancelOn(cancellationSource);
+	}
+	/**
+	 * completion based future. the job runs on an AsyncTaskExecutor once the
+	 * future is started, continuations are registered as callbacks and run on
+	 * the executor when the future completes, so no thread waits for a
+	 * pending future unless get() is called.
+	 *
+	 * <pre>
+	 * AsyncTask.runAsync(() -&gt; load())
+	 * 	.thenApply((data) -&gt; parse(data))
+	 * 	.thenCompose((doc) -&gt; AsyncTask.runAsync(() -&gt; store(doc)))
+	 * 	.get();
+	 * </pre>
+	 */
 	public static class ThreadingFuture<T> implements Future<T> {
+		static final int PENDING = 0;
+		static final int DONE = 1;
+		static final int FAILED = 2;
+		static final int CANCELLED = 3;
+
 		protected String name;
-		WritableValue<Object> value = new WritableValue<>();
 		/**
 		 * locker
 		 */
 		Object locker = new Object();
+		volatile int state = PENDING;
+		Object value = null;
+		Throwable failure = null;
+		/**
+		 * callbacks to run once on completion, null when none
+		 */
+		ArrayList<Runnable> callbacks = null;
 		/**
-		 * queue to hold planed tasks (added by thenRun)
+		 * job to run on start(), null for futures completed by others
 		 */
-		BaseLinkedList<Runnable> runnableQueues = new BaseLinkedList<Runnable>();
+		Delegates.Func<T> job = null;
 		/**
-		 * job thread
+		 * job thread, null when no job is running. set and cleared under
+		 * locker by the job, so cancel() never interrupts a later job of the
+		 * thread
 		 */
-		Thread thread = null;
+		volatile Thread thread = null;
+		/**
+		 * cancel() interrupted thread, guarded by locker
+		 */
+		boolean interrupted = false;
 		volatile boolean started=false;
-		private void initThread() {
-			thread = new Thread(() -> {
-				try {
-					while(true) {
-						Runnable job = getJob();
-						if(job == null) break;
-						job.run();
+		AsyncTaskExecutor executor = null;
+
+		/**
+		 * pending future completed by complete(), fail() or cancel()
+		 */
+		public ThreadingFuture() {
+			this.name = "";
+			this.started = true;
+		}
+		public ThreadingFuture(Delegates.Func<T> runnable) {
+			this(runnable,"");
+		}
+		public ThreadingFuture(Delegates.Func<T> runnable, String name) {
+			this.name = name;
+			this.job = runnable;
+		}
+
+		/**
+		 * @param executor executor of the job and continuations, null for AsyncTask.DefaultExecutor
+		 */
+		public ThreadingFuture<T> setExecutor(AsyncTaskExecutor executor) {
+			this.executor = executor;
+			return this;
+		}
+
+		AsyncTaskExecutor getExecutor() {
+			return executor != null ? executor : DefaultExecutor;
+		}
+
+		String threadName() {
+			return CString.IsNullOrEmpty(name) ? "runAsync<T>" : name; //$NON-NLS-1$
+		}
+
+		/**
+		 * run the job on the executor, once
+		 */
+		public void start() {
+			Delegates.Func<T> target;
+			synchronized(locker) {
+				if(started) return;
+				started=true;
+				target = job;
+			}
+			if(target != null) {
+				getExecutor().execute(threadName(), () -> run(target));
+			}
+		}
+
+		private void run(Delegates.Func<T> target) {
+			synchronized(locker) {
+				if(state != PENDING) return; // cancelled before it ran
+				thread = Thread.currentThread();
+			}
+			try {
+				complete(target.Invoke());
+			} catch (Throwable throwable) {
+				fail(throwable);
+			} finally {
+				synchronized(locker) {
+					thread = null;
+					if(interrupted) {
+						// the interrupt was meant for this job only
+						interrupted = false;
+						Thread.interrupted();
 					}
-				} catch (Throwable throwable) {
+				}
+			}
+		}
 
+		private boolean transition(int newState, Object result, Throwable cause) {
+			ArrayList<Runnable> pending;
+			synchronized(locker) {
+				if(state != PENDING) return false;
+				value = result;
+				failure = cause;
+				state = newState;
+				pending = callbacks;
+				callbacks = null;
+				locker.notifyAll();
+			}
+			if(pending != null) {
+				for(Runnable callback : pending) {
+					callback.run();
 				}
-			});
+			}
+			return true;
+		}
+
+		/**
+		 * complete with value unless completed already
+		 * @return true when this call completed the future
+		 */
+		public boolean complete(T result) {
+			return transition(DONE, result, null);
+		}
+
+		/**
+		 * complete with failure unless completed already
+		 * @return true when this call completed the future
+		 */
+		public boolean fail(Throwable cause) {
+			return transition(FAILED, null, cause);
 		}
 
 		/**
-		 * cancel job, this will clear all queued task
-		 * @param mayInterruptIfRunning interrupt when thread is running
+		 * cancel a pending future, continuations fail with CancellationException
+		 * @param mayInterruptIfRunning interrupt when job is running
 		 */
 		@Override
 		public boolean cancel(boolean mayInterruptIfRunning) {
-			clearJobs();
-			if (mayInterruptIfRunning) {
-				if (thread != null && thread.isAlive() && !thread.isInterrupted()) {
-					thread.interrupt();
+			if(!transition(CANCELLED, null, null)) return false;
+			if(mayInterruptIfRunning) {
+				synchronized(locker) {
+					Thread current = thread;
+					if(current != null) {
+						interrupted = true;
+						current.interrupt();
+					}
 				}
 			}
-			value = new WritableValue<>();
+			return true;
+		}
 
-			return !thread.isAlive() || thread.isInterrupted();
+		/**
+		 * cancel(true) this future when cancellation of cancellationSource is
+		 * requested, the callback is unregistered once the future completes
+		 */
+		public ThreadingFuture<T> cancelOn(CancellationTokenSource cancellationSource) {
+			if(cancellationSource == null) return this;
+			CancellationTokenSource.Registration registration = cancellationSource.Register(() -> cancel(true));
+			onComplete(registration::dispose);
+			return this;
 		}
 
 		@Override
 		public boolean isCancelled() {
-			return false;
+			return state == CANCELLED;
 		}
 
 		@Override
 		public boolean isDone() {
-			return false;
+			return state != PENDING;
 		}
 
 		/**
-		 * get a job from queue
-		 * @return queued job or null
+		 * @return true when completed with a failure or cancelled
 		 */
-		private Runnable getJob() {
-			Runnable ret=null;
+		public boolean isCompletedExceptionally() {
+			return state == FAILED || state == CANCELLED;
+		}
+
+		/**
+		 * run callback on completion, on the calling thread when completed already
+		 */
+		void onComplete(Runnable callback) {
 			synchronized(locker) {
-				if(runnableQueues.IsEmpty.get()) {
-					return null;
+				if(state == PENDING) {
+					if(callbacks == null) callbacks = new ArrayList<Runnable>();
+					callbacks.add(callback);
+					return;
 				}
-				ret = runnableQueues.RemoveFirst().Value;
 			}
-			return ret;
+			callback.run();
 		}
+
+		Throwable cause() {
+			return state == CANCELLED ? new CancellationException() : failure;
+		}
+
 		/**
-		 * clear all job
+		 * complete other the same way this future completed
 		 */
-		private void clearJobs() {
-			synchronized(locker) {
-				runnableQueues.Clear();
-				runnableQueues = new BaseLinkedList<Runnable>();
+		@SuppressWarnings("unchecked")
+		void forward(ThreadingFuture<T> other) {
+			if(state == DONE) {
+				other.complete((T) value);
+			} else {
+				other.fail(cause());
 			}
 		}
 
+		<T2> ThreadingFuture<T2> dependent() {
+			ThreadingFuture<T2> ret = new ThreadingFuture<T2>();
+			ret.name = name;
+			ret.executor = executor;
+			return ret;
+		}
+
+		/**
+		 * run action with the value on the executor when this future succeeded,
+		 * a failure is passed on without calling action
+		 */
+		@SuppressWarnings("unchecked")
+		public <T2> ThreadingFuture<T2> thenApply(Delegates.Func1<T,T2> action) {
+			ThreadingFuture<T2> ret = dependent();
+			onComplete(() -> {
+				if(state != DONE) {
+					ret.fail(cause());
+					return;
+				}
+				ret.job = () -> action.Invoke((T) value);
+				getExecutor().execute(threadName(), () -> ret.run(ret.job));
+			});
+			start();
+			return ret;
+		}
+
+		/**
+		 * same as thenApply
+		 */
 		public <T2> ThreadingFuture<T2> thenRun(Delegates.Func1<T,T2> action) {
+			return thenApply(action);
+		}
+		public ThreadingFuture<Void> thenRun(Runnable action) {
+			return thenApply((value) -> {
+				action.run();
+				return null;
+			});
+		}
 
-			synchronized (locker) {
-				runnableQueues.AddLast(()->value.set(action.Invoke((T)value.get())));
+		/**
+		 * chain a future created from the value, the result completes with it
+		 */
+		@SuppressWarnings("unchecked")
+		public <T2> ThreadingFuture<T2> thenCompose(Delegates.Func1<T, ThreadingFuture<T2>> action) {
+			ThreadingFuture<T2> ret = dependent();
+			onComplete(() -> {
+				if(state != DONE) {
+					ret.fail(cause());
+					return;
+				}
+				getExecutor().execute(threadName(), () -> {
+					ThreadingFuture<T2> next;
+					try {
+						next = action.Invoke((T) value);
+					} catch (Throwable throwable) {
+						ret.fail(throwable);
+						return;
+					}
+					if(next == null) {
+						ret.complete(null);
+						return;
+					}
+					next.onComplete(() -> next.forward(ret));
+					next.start();
+				});
+			});
+			start();
+			return ret;
+		}
+
+		/**
+		 * @return future of all values in order, fails with the first failure
+		 */
+		@SuppressWarnings("unchecked")
+		public static <T> ThreadingFuture<ArrayList<T>> whenAll(List<? extends ThreadingFuture<? extends T>> futures) {
+			ThreadingFuture<ArrayList<T>> ret = new ThreadingFuture<ArrayList<T>>();
+			int count = futures.size();
+			if(count == 0) {
+				ret.complete(new ArrayList<T>());
+				return ret;
 			}
-			if(!thread.isAlive() || !started) {
-				initThread();
-				start();
+			Object[] values = new Object[count];
+			AtomicInteger remaining = new AtomicInteger(count);
+			for(int i = 0; i < count; ++i) {
+				final int index = i;
+				ThreadingFuture<? extends T> future = futures.get(i);
+				future.onComplete(() -> {
+					if(future.state != DONE) {
+						ret.fail(future.cause());
+						return;
+					}
+					values[index] = future.value;
+					if(remaining.decrementAndGet() == 0) {
+						ArrayList<T> list = new ArrayList<T>(count);
+						for(Object value : values) {
+							list.add((T) value);
+						}
+						ret.complete(list);
+					}
+				});
+				future.start();
 			}
-			return (ThreadingFuture<T2>) this;
+			return ret;
 		}
-		public ThreadingFuture<Void> thenRun(Runnable action) {
-			synchronized (locker) {
-				runnableQueues.AddLast(action);
-			}
-			if(!thread.isAlive() || !started) {
-				initThread();
-				start();
+		@SafeVarargs
+		public static <T> ThreadingFuture<ArrayList<T>> whenAll(ThreadingFuture<? extends T>... futures) {
+			ArrayList<ThreadingFuture<? extends T>> list = new ArrayList<ThreadingFuture<? extends T>>(futures.length);
+			for(ThreadingFuture<? extends T> future : futures) {
+				list.add(future);
 			}
-			return (ThreadingFuture<Void>) this;
+			return whenAll(list);
 		}
 
-		@Override
-		public T get() throws InterruptedException, ExecutionException {
-			if(!thread.isAlive() && !started) {
-				initThread();
-				start();
-				thread.join();
-			} else if(started){
-				thread.join();
+		/**
+		 * @return future completed like the first of futures to complete
+		 */
+		@SuppressWarnings("unchecked")
+		public static <T> ThreadingFuture<T> whenAny(List<? extends ThreadingFuture<? extends T>> futures) {
+			ThreadingFuture<T> ret = new ThreadingFuture<T>();
+			for(ThreadingFuture<? extends T> future : futures) {
+				future.onComplete(() -> ((ThreadingFuture<T>) future).forward(ret));
+				future.start();
 			}
-			return (T)value.get();
+			return ret;
 		}
-
-		@Override
-		public T get(long l, TimeUnit timeUnit) throws ExecutionException, InterruptedException, TimeoutException {
-			if(!thread.isAlive() && !started) {
-				initThread();
-				start();
-				thread.join(timeUnit.toMillis(l));
-			} else if(started){
-				thread.join(timeUnit.toMillis(l));
+		@SafeVarargs
+		public static <T> ThreadingFuture<T> whenAny(ThreadingFuture<? extends T>... futures) {
+			ArrayList<ThreadingFuture<? extends T>> list = new ArrayList<ThreadingFuture<? extends T>>(futures.length);
+			for(ThreadingFuture<? extends T> future : futures) {
+				list.add(future);
 			}
-			return (T)value.get();
+			return whenAny(list);
 		}
 
-		public ThreadingFuture(Delegates.Func<T> runnable) {
-			this(runnable,"");
+		public static <T> ThreadingFuture<T> completed(T value) {
+			ThreadingFuture<T> ret = new ThreadingFuture<T>();
+			ret.complete(value);
+			return ret;
 		}
-		public ThreadingFuture(Delegates.Func<T> runnable, String name) {
-			this.name = name;
-			runnableQueues.AddLast(()->value.set(runnable.Invoke()));
-			initThread();
+
+		/**
+		 * @return CompletableFuture completed like this future
+		 */
+		@SuppressWarnings("unchecked")
+		public CompletableFuture<T> toCompletableFuture() {
+			CompletableFuture<T> ret = new CompletableFuture<T>();
+			onComplete(() -> {
+				if(state == DONE) {
+					ret.complete((T) value);
+				} else if(state == CANCELLED) {
+					ret.cancel(false);
+				} else {
+					ret.completeExceptionally(failure);
+				}
+			});
+			start();
+			return ret;
 		}
 
-		public void start() {
-			if(CString.IsNullOrEmpty(name)) {
-				thread.setName("runAsync<T>"); //$NON-NLS-1$
-			} else {
-				thread.setName(name);
+		/**
+		 * @return future completed like source, cancelling it cancels source
+		 */
+		public static <T> ThreadingFuture<T> fromCompletableFuture(CompletableFuture<T> source) {
+			ThreadingFuture<T> ret = new ThreadingFuture<T>();
+			source.whenComplete((result, cause) -> {
+				if(cause == null) {
+					ret.complete(result);
+				} else if(cause instanceof CancellationException) {
+					ret.cancel(false);
+				} else {
+					ret.fail(cause instanceof CompletionException && cause.getCause() != null ? cause.getCause() : cause);
+				}
+			});
+			ret.onComplete(() -> {
+				if(ret.isCancelled()) source.cancel(false);
+			});
+			return ret;
+		}
+
+		@SuppressWarnings("unchecked")
+		private T report() throws ExecutionException {
+			if(state == CANCELLED) throw new CancellationException();
+			if(state == FAILED) throw new ExecutionException(failure);
+			return (T) value;
+		}
+
+		/**
+		 * start the job if needed and wait for it
+		 */
+		@Override
+		public T get() throws InterruptedException, ExecutionException {
+			start();
+			AsyncTaskExecutor executor = getExecutor();
+			boolean helping = executor.isCurrent();
+			while(state == PENDING) {
+				// a job of the executor waits, our job may be queued behind it
+				if(helping && executor.runQueued()) continue;
+				synchronized(locker) {
+					if(state != PENDING) break;
+					if(helping) {
+						locker.wait(HELP_POLL_MILLIS);
+					} else {
+						locker.wait();
+					}
+				}
+			}
+			return report();
+		}
+
+		@Override
+		public T get(long l, TimeUnit timeUnit) throws ExecutionException, InterruptedException, TimeoutException {
+			start();
+			long deadline = System.nanoTime() + timeUnit.toNanos(l);
+			AsyncTaskExecutor executor = getExecutor();
+			boolean helping = executor.isCurrent();
+			while(state == PENDING) {
+				if(helping && executor.runQueued()) continue;
+				synchronized(locker) {
+					if(state != PENDING) break;
+					long remaining = deadline - System.nanoTime();
+					if(remaining <= 0) throw new TimeoutException();
+					if(helping) {
+						remaining = Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(HELP_POLL_MILLIS));
+					}
+					TimeUnit.NANOSECONDS.timedWait(locker, remaining);
+				}
 			}
-			thread.start();
-			started=true;
+			return report();
 		}
 	}
 	public static <T> ThreadingFuture<T> runAsync(String name, Delegates.Func<T> runnable) {
@@ -193,16 +514,62 @@ public class AsyncTask {
 	private boolean fromJobConstructor = false;
 	public volatile boolean IsFault = false;
 
-	public boolean IsAlive() {
-		if (bgthread == null) {
-			return false;
-		}
-		try {
-			return bgthread.isAlive();
-		} catch (Exception ee) {
-			ee.printStackTrace();
-			return false;
+	/**
+	 * how often a waiting job of a pool looks for queued jobs to run
+	 */
+	static final long HELP_POLL_MILLIS = 1;
+
+	/**
+	 * executor of all tasks without an own one, threadPerTask() unless set
+	 */
+	public static volatile AsyncTaskExecutor DefaultExecutor = AsyncTaskExecutor.threadPerTask();
+	private volatile AsyncTaskExecutor executor = null;
+	/**
+	 * cancelled by StopAsync(), created on first use
+	 */
+	private volatile CancellationTokenSource cancellation = null;
+
+	/**
+	 * @param executor
+	 *            executor of this task, null for DefaultExecutor
+	 */
+	public void SetExecutor(AsyncTaskExecutor executor) {
+		this.executor = executor;
+	}
+
+	public AsyncTaskExecutor GetExecutor() {
+		AsyncTaskExecutor ret = executor;
+		return ret != null ? ret : DefaultExecutor;
+	}
+
+	/**
+	 * @return source cancelled by StopAsync(), jobs check it to stop early. a
+	 *         new one is created when a stopped task is started again.
+	 */
+	public CancellationTokenSource GetCancellation() {
+		CancellationTokenSource ret = cancellation;
+		if (ret == null) {
+			synchronized (AfterFinishJobLocker) {
+				if (cancellation == null) {
+					cancellation = new CancellationTokenSource();
+				}
+				ret = cancellation;
+			}
 		}
+		return ret;
+	}
+
+	/**
+	 * @param cancellationSource
+	 *            source cancelled by StopAsync(), e.g. shared by the tasks of
+	 *            one loop
+	 */
+	public void SetCancellation(CancellationTokenSource cancellationSource) {
+		cancellation = cancellationSource;
+	}
+
+	public boolean IsAlive() {
+		return running;
 	}
 
 	private boolean IUiThreadRunnerInvoker(IUiThreadRunner ctrl, Object job) {
@@ -278,93 +645,111 @@ public class AsyncTask {
 			;
 	}
 
-	private boolean AsyncFlushJob() {
+	/**
+	 * run job on the executor unless this task is running already
+	 */
+	private boolean ExecuteAsync(Runnable job) {
 		synchronized (AfterFinishJobLocker) {
-			if (bgthread != null && bgthread.isAlive())
+			if (running)
 				return false; // do not rerun
-			bgthread = new Thread(new Runnable() {
-				@Override
-				public void run() {
-					jobFlusher();
+			running = true;
+		}
+		// outside the lock, a rejected job runs on this thread
+		GetExecutor().execute(mName, () -> {
+			synchronized (AfterFinishJobLocker) {
+				bgthread = Thread.currentThread();
+			}
+			try {
+				job.run();
+			} finally {
+				synchronized (AfterFinishJobLocker) {
 					bgthread = null;
+					running = false;
+					if (stopped) {
+						// the interrupt was meant for this job only
+						stopped = false;
+						Thread.interrupted();
+					}
+					AfterFinishJobLocker.notifyAll();
 				}
-			});
-			if (!CString.IsNullOrEmpty(mName)) {
-				bgthread.setName(mName);
-			} else {
-				bgthread.setName("AsyncThread");
 			}
+		});
+		return true;
+	}
 
-			bgthread.setPriority(Thread.MIN_PRIORITY);
-			bgthread.start();
-			return true;
-		}
+	private boolean AsyncFlushJob() {
+		return ExecuteAsync(this::jobFlusher);
 	}
 
-	public boolean TimedWait(int millis) {
-		if (bgthread != null && bgthread.isAlive()) {
-			try {
-				bgthread.join(millis);
-				return !bgthread.isAlive();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+	/**
+	 * wait until the job ran, the executor thread may go on with other jobs
+	 *
+	 * @param millis
+	 *            timeout, 0 for none
+	 * @return true when the job is not running
+	 */
+	private boolean AwaitFinish(long millis) {
+		long deadline = System.currentTimeMillis() + millis;
+		AsyncTaskExecutor executor = GetExecutor();
+		// a job of the executor waits, our job may be queued behind it
+		boolean helping = executor.isCurrent();
+		try {
+			while (running) {
+				if (helping && executor.runQueued()) {
+					continue;
+				}
+				synchronized (AfterFinishJobLocker) {
+					if (!running) {
+						break;
+					}
+					long wait = helping ? HELP_POLL_MILLIS : 0;
+					if (millis > 0) {
+						long remaining = deadline - System.currentTimeMillis();
+						if (remaining <= 0) {
+							break;
+						}
+						wait = wait > 0 ? Math.min(wait, remaining) : remaining;
+					}
+					AfterFinishJobLocker.wait(wait);
+				}
 			}
+		} catch (InterruptedException e) {
+			e.printStackTrace();
 		}
-		return true;
+		return !running;
+	}
+
+	public boolean TimedWait(int millis) {
+		return AwaitFinish(millis);
 	}
 
 	public void Wait() {
-		if (bgthread != null && bgthread.isAlive()) {
-			try {
-				bgthread.join();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
+		AwaitFinish(0);
 	}
 
+	/**
+	 * @param timeMills
+	 *            timeout, 0 for none
+	 * @return false when the job is still running after the timeout
+	 */
 	public boolean Join(int timeMills) {
-		if (bgthread == null || !bgthread.isAlive())
-			return true;
-		if (timeMills > 0) {
-			try {
-				bgthread.join(timeMills);
-				return true;
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		} else {
-			try {
-				bgthread.join();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-			return true;
-		}
-		return !bgthread.isAlive();
+		return AwaitFinish(timeMills);
 	}
 
+	private volatile boolean running = false;
+	/**
+	 * thread running the job, null when not running. set and cleared under
+	 * AfterFinishJobLocker, so StopAsync() never interrupts a later job of the
+	 * thread
+	 */
 	private volatile Thread bgthread;
+	/**
+	 * StopAsync() interrupted bgthread, guarded by AfterFinishJobLocker
+	 */
+	private boolean stopped;
 
 	private boolean StartAsync() {
-		synchronized (AfterFinishJobLocker) {
-			if (bgthread != null && bgthread.isAlive())
-				return false; // do not rerun
-			bgthread = new Thread(new Runnable() {
-				@Override
-				public void run() {
-					runner();
-				}
-			});
-			if (!CString.IsNullOrEmpty(mName)) {
-				bgthread.setName(mName);
-			} else {
-				bgthread.setName("AsyncThread");
-			}
-			bgthread.setPriority(Thread.MIN_PRIORITY);
-			bgthread.start();
-			return true;
-		}
+		return ExecuteAsync(this::runner);
 	}
 
 	// =============================================================
@@ -396,6 +781,10 @@ public class AsyncTask {
 	/// <param name="bsynchronizeding">when bsynchronizeding instanceof true, caller
 	/// would bsynchronized until job finished</param>
 	public void Start(boolean bsynchronizeding) {
+		CancellationTokenSource previous = cancellation;
+		if (previous != null && previous.IsCancellationRequested && !running) {
+			cancellation = null;
+		}
 		if (bsynchronizeding) {
 			runner();
 		} else {
@@ -427,12 +816,20 @@ public class AsyncTask {
 	}
 
 	/// <summary>
-	/// it async thread was running, terminate it.
+	/// request cancellation of GetCancellation() and interrupt the thread of a
+	/// running job. the job stops at its next cancellation check or blocking call.
 	/// </summary>
 	public void StopAsync() {
-		if (bgthread != null && bgthread.isAlive()) {
-			bgthread.stop();
-			bgthread = null;
+		CancellationTokenSource source = cancellation;
+		if (source != null) {
+			source.Cancel();
+		}
+		synchronized (AfterFinishJobLocker) {
+			Thread thread = bgthread;
+			if (thread != null) {
+				stopped = true;
+				GetExecutor().stop(thread);
+			}
 		}
 	}
 
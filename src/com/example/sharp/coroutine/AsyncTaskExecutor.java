@@ -0,0 +1,345 @@
+package com.example.sharp.coroutine;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.sharp.CString;
+
+/**
+ * runs the jobs of AsyncTask and ThreadingFuture. chosen globally by
+ * AsyncTask.DefaultExecutor or per task by AsyncTask.SetExecutor(), usage:
+ *
+ * <pre>
+ * AsyncTask.DefaultExecutor = AsyncTaskExecutor.shared();
+ * ...
+ * Tracer.D("%s", AsyncTask.DefaultExecutor);
+ * </pre>
+ *
+ * every executor counts submitted, running and completed jobs, so saturation
+ * of a pool can be watched at runtime.
+ */
+public abstract class AsyncTaskExecutor {
+	final AtomicLong submitted = new AtomicLong();
+	final AtomicLong completed = new AtomicLong();
+	final AtomicLong overflowed = new AtomicLong();
+	final AtomicInteger active = new AtomicInteger();
+	final AtomicInteger peakActive = new AtomicInteger();
+	/**
+	 * executor whose job the current thread runs
+	 */
+	static final ThreadLocal<AsyncTaskExecutor> current = new ThreadLocal<AsyncTaskExecutor>();
+
+	/**
+	 * run job asynchronously
+	 *
+	 * @param name
+	 *            thread name for executors creating a thread per job, may be
+	 *            empty
+	 */
+	public final void execute(String name, Runnable job) {
+		submitted.incrementAndGet();
+		dispatch(name, () -> {
+			int running = active.incrementAndGet();
+			int peak;
+			while (running > (peak = peakActive.get()) && !peakActive.compareAndSet(peak, running)) {
+			}
+			AsyncTaskExecutor previous = current.get();
+			current.set(this);
+			try {
+				job.run();
+			} finally {
+				current.set(previous);
+				active.decrementAndGet();
+				completed.incrementAndGet();
+			}
+		});
+	}
+
+	protected abstract void dispatch(String name, Runnable job);
+
+	/**
+	 * @return true when the calling thread runs a job of this executor
+	 */
+	boolean isCurrent() {
+		return current.get() == this;
+	}
+
+	/**
+	 * run one queued job on the calling thread. a job waiting for another job
+	 * calls it while it waits, so the jobs it waits for do not need a thread of
+	 * their own.
+	 *
+	 * @return false when nothing is queued
+	 */
+	boolean runQueued() {
+		return false;
+	}
+
+	/**
+	 * stop a job running on thread, used by AsyncTask.StopAsync() after it
+	 * cancelled the task
+	 */
+	protected void stop(Thread thread) {
+		thread.interrupt();
+	}
+
+	/**
+	 * stop accepting jobs, running jobs finish
+	 */
+	public void shutdown() {
+	}
+
+	public long getSubmittedCount() {
+		return submitted.get();
+	}
+
+	public long getCompletedCount() {
+		return completed.get();
+	}
+
+	/**
+	 * @return jobs running now
+	 */
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	public int getPeakActiveCount() {
+		return peakActive.get();
+	}
+
+	/**
+	 * @return jobs waiting for a pool thread
+	 */
+	public int getQueuedCount() {
+		return 0;
+	}
+
+	/**
+	 * @return jobs the executor could not take, they ran on the submitting
+	 *         thread or, for a Service, on a thread of their own
+	 */
+	public long getOverflowCount() {
+		return overflowed.get();
+	}
+
+	/**
+	 * @return thread limit, -1 for unbounded executors
+	 */
+	public int getMaxThreads() {
+		return -1;
+	}
+
+	/**
+	 * @return active / max threads, 0 for unbounded executors
+	 */
+	public double getSaturation() {
+		int max = getMaxThreads();
+		return max <= 0 ? 0 : (double) getActiveCount() / max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %d active (peak %d), %d queued, %d/%d completed, %d overflowed, saturation %.2f",
+				getClass().getSimpleName(), getActiveCount(), getPeakActiveCount(), getQueuedCount(),
+				getCompletedCount(), getSubmittedCount(), getOverflowCount(), getSaturation());
+	}
+
+	/**
+	 * thread of a job, AsyncTask threads always ran at MIN_PRIORITY
+	 */
+	static Thread newThread(String name, Runnable job) {
+		Thread thread = new Thread(job);
+		thread.setName(CString.IsNullOrEmpty(name) ? "AsyncThread" : name);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	}
+
+	/**
+	 * a new thread per job
+	 */
+	public static class ThreadPerTask extends AsyncTaskExecutor {
+		@Override
+		protected void dispatch(String name, Runnable job) {
+			newThread(name, job).start();
+		}
+	}
+
+	/**
+	 * jobs on a caller supplied ExecutorService, jobs it rejects run on a
+	 * thread of their own
+	 */
+	public static class Service extends AsyncTaskExecutor {
+		final ExecutorService service;
+
+		public Service(ExecutorService service) {
+			this.service = service;
+		}
+
+		public ExecutorService getService() {
+			return service;
+		}
+
+		@Override
+		protected void dispatch(String name, Runnable job) {
+			try {
+				service.execute(job);
+			} catch (RejectedExecutionException ee) {
+				overflowed.incrementAndGet();
+				newThread(name, job).start();
+			}
+		}
+
+		@Override
+		public void shutdown() {
+			service.shutdown();
+		}
+	}
+
+	/**
+	 * bounded pool of reused daemon threads. a job the pool cannot take runs
+	 * on the submitting thread and is counted by getOverflowCount(), a job of
+	 * the pool waiting for another one runs queued jobs meanwhile.
+	 */
+	public static class Pool extends Service {
+		final ThreadPoolExecutor pool;
+
+		Pool(ThreadPoolExecutor pool) {
+			super(pool);
+			this.pool = pool;
+		}
+
+		@Override
+		protected void dispatch(String name, Runnable job) {
+			try {
+				pool.execute(job);
+			} catch (RejectedExecutionException ee) {
+				overflowed.incrementAndGet();
+				job.run();
+			}
+		}
+
+		@Override
+		boolean runQueued() {
+			Runnable job = pool.getQueue().poll();
+			if (job == null) {
+				return false;
+			}
+			job.run();
+			return true;
+		}
+
+		@Override
+		public int getQueuedCount() {
+			return pool.getQueue().size();
+		}
+
+		@Override
+		public int getMaxThreads() {
+			return pool.getMaximumPoolSize();
+		}
+
+		public int getPoolSize() {
+			return pool.getPoolSize();
+		}
+
+		public int getLargestPoolSize() {
+			return pool.getLargestPoolSize();
+		}
+	}
+
+	/**
+	 * queue capacity of shared()
+	 */
+	public static final int SHARED_QUEUE_CAPACITY = 65536;
+
+	private static final ThreadPerTask threadPerTask = new ThreadPerTask();
+	private static volatile Pool sharedPool;
+
+	/**
+	 * @return executor starting a new thread per job, the behavior of
+	 *         AsyncTask before executors
+	 */
+	public static AsyncTaskExecutor threadPerTask() {
+		return threadPerTask;
+	}
+
+	/**
+	 * pool of at most threads threads, idle threads end after a minute.
+	 *
+	 * jobs wait for a free thread in a queue of queueCapacity jobs, a job
+	 * submitted while every thread is busy and the queue is full runs on the
+	 * submitting thread (counted by getOverflowCount()), so submitting never
+	 * blocks. with queueCapacity 0 every such job runs on its submitter. a job
+	 * of the pool waiting for another AsyncTask or ThreadingFuture runs queued
+	 * jobs while it waits, so nested Parallelx loops do not starve.
+	 */
+	public static Pool newPool(int threads, int queueCapacity) {
+		AtomicInteger ids = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				queueCapacity > 0 ? new LinkedBlockingQueue<Runnable>(queueCapacity) : new SynchronousQueue<Runnable>(),
+				(job) -> {
+					Thread thread = new Thread(job);
+					thread.setName("AsyncPool-" + ids.incrementAndGet());
+					thread.setPriority(Thread.MIN_PRIORITY);
+					thread.setDaemon(true);
+					return thread;
+				});
+		pool.allowCoreThreadTimeOut(true);
+		return new Pool(pool);
+	}
+
+	/**
+	 * @return process wide pool of 4 * Parallelx.Concurrency threads queueing
+	 *         up to SHARED_QUEUE_CAPACITY jobs, see newPool()
+	 */
+	public static Pool shared() {
+		Pool pool = sharedPool;
+		if (pool == null) {
+			synchronized (AsyncTaskExecutor.class) {
+				if (sharedPool == null) {
+					sharedPool = newPool(Math.max(4, Parallelx.Concurrency * 4), SHARED_QUEUE_CAPACITY);
+				}
+				pool = sharedPool;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * @return executor for a caller supplied service
+	 */
+	public static Service of(ExecutorService service) {
+		return new Service(service);
+	}
+
+	public static boolean isVirtualThreadSupported() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException ee) {
+			return false;
+		}
+	}
+
+	/**
+	 * a virtual thread per job, needs a runtime with virtual threads
+	 *
+	 * @throws UnsupportedOperationException
+	 *             when the runtime has none
+	 */
+	public static Service virtualThreads() {
+		try {
+			return new Service((ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null));
+		} catch (ReflectiveOperationException ee) {
+			throw new UnsupportedOperationException("virtual threads are not available in this runtime", ee);
+		}
+	}
+}
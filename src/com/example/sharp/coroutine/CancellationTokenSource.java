@@ -1,5 +1,178 @@
 package com.example.sharp.coroutine;
 
-public class CancellationTokenSource {
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CancellationException;
+
+import com.example.sharp.Delegates;
+import com.example.sharp.IDisposable;
+import com.example.sharp.TimerWheel;
+
+/**
+ * cancellation signal shared by a caller and the jobs it started, usage:
+ *
+ * <pre>
+ * CancellationTokenSource cts = new CancellationTokenSource();
+ * cts.CancelAfter(1000);
+ * Parallelx.For(0, n, body, cts, true, scheduler);
+ * </pre>
+ *
+ * jobs either poll IsCancellationRequested or Register() a callback which
+ * runs once on Cancel(). setting IsCancellationRequested directly is still
+ * seen by polling jobs but runs no callbacks.
+ */
+public class CancellationTokenSource implements IDisposable {
     public volatile boolean IsCancellationRequested;
+    /**
+     * callbacks to run on Cancel(), null once cancelled
+     */
+    private LinkedHashSet<Registration> registrations = null;
+    private TimerWheel.Timeout timeout = null;
+    /**
+     * registrations on the sources this one is linked to
+     */
+    private ArrayList<Registration> links = null;
+    private boolean cancelled = false;
+
+    /**
+     * callback registered by Register(), dispose() removes it
+     */
+    public class Registration implements IDisposable {
+        final Delegates.Action callback;
+
+        Registration(Delegates.Action callback) {
+            this.callback = callback;
+        }
+
+        @Override
+        public void dispose() {
+            synchronized (CancellationTokenSource.this) {
+                if (registrations != null) {
+                    registrations.remove(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * request cancellation and run the registered callbacks on this thread,
+     * once. failing callbacks do not stop the others.
+     */
+    public void Cancel() {
+        LinkedHashSet<Registration> callbacks;
+        synchronized (this) {
+            IsCancellationRequested = true;
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            callbacks = registrations;
+            registrations = null;
+            if (timeout != null) {
+                timeout.cancel();
+                timeout = null;
+            }
+        }
+        if (callbacks == null) {
+            return;
+        }
+        for (Registration registration : callbacks) {
+            try {
+                registration.callback.Invoke();
+            } catch (Exception ee) {
+                ee.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Cancel() after millis on the shared TimerWheel, replaces an earlier
+     * CancelAfter()
+     */
+    public void CancelAfter(long millis) {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            timeout = TimerWheel.shared().schedule(millis, this::Cancel);
+        }
+    }
+
+    /**
+     * run callback on Cancel(), at once when cancelled already
+     *
+     * @return registration to remove the callback
+     */
+    public Registration Register(Delegates.Action callback) {
+        Registration registration = new Registration(callback);
+        synchronized (this) {
+            if (!cancelled) {
+                if (registrations == null) {
+                    registrations = new LinkedHashSet<Registration>();
+                }
+                registrations.add(registration);
+                return registration;
+            }
+        }
+        callback.Invoke();
+        return registration;
+    }
+
+    /**
+     * @throws CancellationException when cancellation was requested
+     */
+    public void ThrowIfCancellationRequested() {
+        if (IsCancellationRequested) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * @return source cancelled when any of sources is cancelled, or by its own
+     *         Cancel(). Dispose() it to unlink it from sources.
+     */
+    public static CancellationTokenSource CreateLinkedTokenSource(CancellationTokenSource... sources) {
+        CancellationTokenSource ret = new CancellationTokenSource();
+        ret.links = new ArrayList<Registration>();
+        for (CancellationTokenSource source : sources) {
+            if (source == null) {
+                continue;
+            }
+            Registration link = source.Register(ret::Cancel);
+            synchronized (ret) {
+                ret.links.add(link);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * unlink from linked sources and drop timer and callbacks without
+     * cancelling
+     */
+    public void Dispose() {
+        ArrayList<Registration> unlink;
+        synchronized (this) {
+            unlink = links;
+            links = null;
+            registrations = null;
+            if (timeout != null) {
+                timeout.cancel();
+                timeout = null;
+            }
+        }
+        if (unlink != null) {
+            for (Registration link : unlink) {
+                link.dispose();
+            }
+        }
+    }
+
+    @Override
+    public void dispose() {
+        Dispose();
+    }
 }
@@ -1,15 +1,18 @@
 package com.example.sharp.coroutine;
 
 
-import com.example.events.Var;
 import com.example.sharp.BaseLinkedList;
 import com.example.sharp.CString;
 import com.example.sharp.Delegates;
 import com.example.sharp.Tracer;
 
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.StringTokenizer;
 import java.util.Vector;
 
@@ -38,9 +41,39 @@ public class Coroutine {
 		}
 	}
 	public static class ForeachBody<T> extends CompositeBlock{
+		int valueSlot;
+		/**
+		 * slot of current element in loop frame, also reachable by getValue("Value")
+		 * @return slot index
+		 */
+		public int getValueSlot() {
+			return valueSlot;
+		}
 		public CompositeBlock run(Delegates.Action2<Coroutine,T> ins) {
 			this.body=(x)->{
-				ins.Invoke(x,x.getValue("Value"));
+				ins.Invoke(x,x.getSlotValue(valueSlot));
+			};
+			return this;
+		}
+	}
+	/**
+	 * loop body receiving an int counter without boxing
+	 */
+	public static interface IntBody {
+		public void Invoke(Coroutine cor, int value);
+	}
+	public static class ForRangeBody extends CompositeBlock{
+		int counterSlot;
+		/**
+		 * int slot of loop counter in loop frame
+		 * @return slot index
+		 */
+		public int getCounterSlot() {
+			return counterSlot;
+		}
+		public CompositeBlock run(IntBody ins) {
+			this.body=(x)->{
+				ins.Invoke(x,x.intSlots[counterSlot]);
 			};
 			return this;
 		}
@@ -77,37 +110,117 @@ public class Coroutine {
 	 * @return
 	 */
 	public <T> Delegates.IteratorEx<T> iterator(){
-		
-		return Delegates.iterator(new Iterator<T>() {
-			boolean tested = false;
-			@Override
-			public boolean hasNext() {
-				if(!tested) {
-					if (!isYield()) {
-						while (exec()) { }
-					}
-					tested = true;
-				}
-				return !isStopped();			
-			}
+		return new YieldIterator<T>();
+	}
 
-			@Override
-			public T next() {
+	/**
+	 * iterator of yielded values. nextBatch() and drainTo() run the instruction
+	 * loop once for a whole batch instead of once per next().
+	 */
+	class YieldIterator<T> implements Delegates.IteratorEx<T> {
+		boolean tested = false;
+
+		@Override
+		public boolean hasNext() {
+			if (!tested) {
 				if (!isYield()) {
-					while (exec()) { }
+					execUntilSuspend();
 				}
-				T ret = getYieldValue();
-				while (exec()) {
+				tested = true;
+			}
+			return !isStopped();
+		}
+
+		@Override
+		public T next() {
+			if (!isYield()) {
+				execUntilSuspend();
+			}
+			T ret = getYieldValue();
+			execUntilSuspend();
+			return ret;
+		}
 
+		@Override
+		public int nextBatch(T[] buf) {
+			tested = true;
+			return drainYields(buf, 0, buf.length);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public int drainTo(Collection<? super T> target, int max) {
+			if (max <= 0) {
+				return 0;
+			}
+			tested = true;
+			Object[] chunk = new Object[Math.min(max, BATCH_SIZE)];
+			int total = 0;
+			while (total < max) {
+				int wanted = Math.min(chunk.length, max - total);
+				int count = drainYields(chunk, 0, wanted);
+				if (count == chunk.length) {
+					target.addAll((List<T>) Arrays.asList(chunk));
+				} else {
+					target.addAll((List<T>) Arrays.asList(chunk).subList(0, count));
+				}
+				total += count;
+				if (count < wanted) {
+					break;
 				}
-				return ret;
 			}
-		});
+			return total;
+		}
+	}
+
+	/**
+	 * chunk size of drainTo()
+	 */
+	static final int BATCH_SIZE = 256;
+
+	/**
+	 * run until max values are yielded or stopped, the values are moved to buf.
+	 * like next(), it leaves the coroutine suspended at the yield after the
+	 * last moved value.
+	 *
+	 * @return count of moved values
+	 */
+	int drainYields(Object[] buf, int offset, int max) {
+		if (max <= 0) {
+			// running ahead would drop a pending yield
+			return 0;
+		}
+		int count = 0;
+		Coroutine frame = activeFrame();
+		while (count < max) {
+			if (frame.state == State.Suspend) {
+				// the suspended frame stays active, resume it without searching
+				buf[offset + count++] = frame.yieldValue;
+				frame.yieldValue = null;
+				frame.state = State.Run;
+				continue;
+			}
+			if (profiler != null ? frame.execProfiled(profiler) : frame.compiled ? frame.dispatch() : frame.execCurrent()) {
+				frame = activeFrame();
+			} else if (frame.state != State.Suspend) {
+				return count;
+			}
+		}
+		if (!isStopped()) {
+			execUntilSuspend();
+		}
+		return count;
 	}
 
 	public Vector<Delegates.Action1<Coroutine>> instructions = new Vector<Delegates.Action1<Coroutine>>();
 	public Hashtable<String, Object> globals = new Hashtable<String, Object>();
 	public Hashtable<String, Integer> labels = new Hashtable<String, Integer>();
+	/**
+	 * compiled form of instructions, valid while compiled is true. see compile()
+	 */
+	Delegates.Action1<Coroutine>[] code;
+	int codeLength;
+	boolean compiled;
 	static long seriesId = Long.MIN_VALUE;
 	long Id = seriesId++;
 	String name;
@@ -121,9 +234,35 @@ public class Coroutine {
 	}
 
 	Object yieldValue;
+	/**
+	 * set by setProfiler(), checked once per frame switch by the run loops
+	 */
+	CoroutineProfiler profiler;
+	/**
+	 * counters of this frame in last used profiler
+	 */
+	CoroutineProfiler.Node profileNode;
+	/**
+	 * value of yieldInt/yieldLong, or raw bits of yieldDouble
+	 */
+	long yieldPrimitive;
 	int ip;
 	State state = State.None;
 
+	static final Object[] NO_SLOTS = new Object[0];
+	static final int[] NO_INT_SLOTS = new int[0];
+	static final long[] NO_LONG_SLOTS = new long[0];
+	static final double[] NO_DOUBLE_SLOTS = new double[0];
+	/**
+	 * local slots, names are resolved to index by declareSlot() while building
+	 */
+	HashMap<String, Integer> slotNames;
+	int slotCount;
+	Object[] slots = NO_SLOTS;
+	int[] intSlots = NO_INT_SLOTS;
+	long[] longSlots = NO_LONG_SLOTS;
+	double[] doubleSlots = NO_DOUBLE_SLOTS;
+
 	public Coroutine() {
 
 	}
@@ -137,9 +276,20 @@ public class Coroutine {
 		r.Invoke(this);
 	}
 
+	/**
+	 * instantiate a frame of a template program, see CoroutineTemplate
+	 *
+	 * @param source template frame
+	 */
+	Coroutine(CoroutineTemplate.Frame source) {
+		this.source = source;
+		restore();
+	}
+
 	public Coroutine push(Delegates.Action1<Coroutine> r) {
-		next = new Coroutine(r);
-		next.parent = this;
+		Coroutine frame = obtainFrame();
+		r.Invoke(frame);
+		attach(frame);
 		return next;
 	}
 
@@ -156,28 +306,259 @@ public class Coroutine {
 	}
 
 	public Coroutine push() {
-		next = new Coroutine();
-		next.parent = this;
+		attach(obtainFrame());
 		return next;
 	}
 
+	/**
+	 * new frame for push(), instances of a template reuse frames dropped from
+	 * their frame stack
+	 */
+	private Coroutine obtainFrame() {
+		Coroutine r = root;
+		Coroutine frame = r.spare;
+		if (frame == null) {
+			return new Coroutine();
+		}
+		r.spare = frame.nextSpare;
+		frame.nextSpare = null;
+		frame.recycle();
+		return frame;
+	}
+
+	/**
+	 * reset a dropped frame to the state of new Coroutine(), keeping its
+	 * containers
+	 */
+	private void recycle() {
+		clear();
+		ip = 0;
+		state = State.None;
+		yieldValue = null;
+		name = null;
+		next = null;
+		parent = null;
+		root = this;
+		depth = 0;
+		profileNode = null;
+	}
+
 	private void pop() {
 		if (parent != null) {
 			parent.next = null;
 		}
 		next = null;
+		Coroutine frame = parent != null ? parent : this;
+		if (frame.onStack()) {
+			root.truncate(frame.depth);
+		}
+	}
+
+	/**
+	 * drop next chain, e.g. frames a restored checkpoint had already left
+	 */
+	void detachNext() {
+		if (next == null) {
+			return;
+		}
+		next = null;
+		if (onStack()) {
+			root.truncate(depth);
+		}
 	}
 
 	Coroutine next;
 	Coroutine parent;
+	/**
+	 * outermost frame, which owns the frame stack
+	 */
+	Coroutine root = this;
+	/**
+	 * index of this frame in root.frames
+	 */
+	int depth;
+	/**
+	 * frame stack mirroring the next chain, frames[top] is the innermost frame.
+	 * only allocated in root once a frame is pushed.
+	 */
+	Coroutine[] frames;
+	int top;
+	/**
+	 * set on root by setCancellation(), checked by the run loops before each
+	 * instruction
+	 */
+	CancellationTokenSource cancellation;
+	/**
+	 * set on root of an instance checked out from CoroutineTemplate
+	 */
+	CoroutineTemplate template;
+	/**
+	 * frames instantiated from template, chain[0] is root
+	 */
+	Coroutine[] chain;
+	/**
+	 * template frame this frame is instantiated from, or null
+	 */
+	CoroutineTemplate.Frame source;
+	/**
+	 * true while instructions, labels, code and slot names are those of source
+	 */
+	boolean shared;
+	/**
+	 * set by loops keeping their state in captured objects (Foreach(Iterator),
+	 * While(Func), For(init, Func, step)), a template rejects such frames
+	 */
+	boolean capturesState;
+	/**
+	 * frames dropped from stack of template instance, linked by nextSpare
+	 */
+	Coroutine spare;
+	Coroutine nextSpare;
+
+	/**
+	 * link child as next frame, replacing current next chain, and put it with
+	 * its own next chain (if any, when pushed by a constructor action) on the
+	 * frame stack.
+	 */
+	private void attach(Coroutine child) {
+		next = child;
+		child.parent = this;
+		Coroutine r = root;
+		if (!onStack()) {
+			return;
+		}
+		r.truncate(depth);
+		for (Coroutine frame = child; frame != null; frame = frame.next) {
+			if (r.top + 1 == r.frames.length) {
+				r.frames = Arrays.copyOf(r.frames, r.frames.length * 2);
+			}
+			r.frames[++r.top] = frame;
+			frame.root = r;
+			frame.depth = r.top;
+			frame.frames = null;
+			frame.top = 0;
+		}
+	}
+
+	/**
+	 * drop frames above given depth, invoked on root
+	 */
+	private void truncate(int depth) {
+		if (frames == null) {
+			frames = new Coroutine[8];
+			frames[0] = this;
+		}
+		while (top > depth) {
+			Coroutine dropped = frames[top];
+			frames[top--] = null;
+			if (template != null && dropped.source == null) {
+				dropped.nextSpare = spare;
+				spare = dropped;
+			}
+		}
+	}
+
+	/**
+	 * test if this frame is reachable from its root through the next chain, a
+	 * frame replaced by push() or removed by pop() is not.
+	 */
+	boolean onStack() {
+		if (root == this) {
+			return true;
+		}
+		Coroutine r = root;
+		return r.frames != null && depth <= r.top && r.frames[depth] == this;
+	}
+
+	/**
+	 * innermost frame of next chain
+	 */
+	Coroutine innermost() {
+		if (onStack()) {
+			Coroutine r = root;
+			return r.top == 0 ? r : r.frames[r.top];
+		}
+		Coroutine selection = this;
+		while (selection.next != null) {
+			selection = selection.next;
+		}
+		return selection;
+	}
 
 	/**
 	 * clear all context
 	 */
 	public void clear() {
-		instructions.clear();
+		codeLength = 0;
+		compiled = false;
+		capturesState = false;
+		globals.clear();
+		if (shared) {
+			shared = false;
+			code = null;
+			instructions = new Vector<Delegates.Action1<Coroutine>>();
+			labels = new Hashtable<String, Integer>();
+			slotNames = null;
+		} else {
+			instructions.clear();
+			labels.clear();
+			if (slotNames != null) {
+				slotNames.clear();
+			}
+		}
+		Arrays.fill(slots, 0, slotCount, null);
+		slotCount = 0;
+	}
+
+	/**
+	 * restore this frame to its template frame, sharing its program again
+	 */
+	void restore() {
+		CoroutineTemplate.Frame src = source;
+		instructions = src.instructions;
+		labels = src.labels;
+		slotNames = src.slotNames;
+		code = src.code;
+		codeLength = src.code.length;
+		compiled = true;
+		shared = true;
+		int count = src.slotCount;
+		if (slots.length < count) {
+			slots = new Object[count];
+			intSlots = new int[count];
+			longSlots = new long[count];
+			doubleSlots = new double[count];
+		} else if (slotCount > count) {
+			Arrays.fill(slots, count, slotCount, null);
+		}
+		System.arraycopy(src.slots, 0, slots, 0, count);
+		System.arraycopy(src.intSlots, 0, intSlots, 0, count);
+		System.arraycopy(src.longSlots, 0, longSlots, 0, count);
+		System.arraycopy(src.doubleSlots, 0, doubleSlots, 0, count);
+		slotCount = count;
 		globals.clear();
-		labels.clear();
+		name = src.name;
+		yieldValue = null;
+		profileNode = null;
+		ip = 0;
+		state = src.state;
+	}
+
+	/**
+	 * take private copies of the program shared with template frame before
+	 * modifying it
+	 */
+	private void unshare() {
+		if (!shared) {
+			return;
+		}
+		shared = false;
+		instructions = new Vector<Delegates.Action1<Coroutine>>(instructions);
+		labels = new Hashtable<String, Integer>(labels);
+		if (slotNames != null) {
+			slotNames = new HashMap<String, Integer>(slotNames);
+		}
+		code = Arrays.copyOf(code, Math.max(8, codeLength * 2));
 	}
 
 	/**
@@ -188,8 +569,12 @@ public class Coroutine {
 	 * @param value content of value
 	 */
 	public <T> void setValue(String name, T value) {
-		if (globals.containsKey(name)) {
-			globals.remove(name);
+		if (slotNames != null) {
+			Integer slot = slotNames.get(name);
+			if (slot != null) {
+				slots[slot] = value;
+				return;
+			}
 		}
 		globals.put(name, value);
 	}
@@ -203,12 +588,105 @@ public class Coroutine {
 	 */
 	@SuppressWarnings("unchecked")
 	public <T> T getValue(String name) {
-		if (!globals.containsKey(name)) {
-			return null;
+		if (slotNames != null) {
+			Integer slot = slotNames.get(name);
+			if (slot != null) {
+				return (T) slots[slot];
+			}
 		}
 		return (T) globals.get(name);
 	}
 
+	/**
+	 * resolve a local name to a slot index, allocate a new slot if not existed.
+	 * call it while building the coroutine, and access the slot by index in
+	 * instructions, e.g.
+	 *
+	 * <pre>
+	 * int sum = cor.declareSlot("sum");
+	 * cor.addInstruction((me) -> me.setLongSlot(sum, me.getLongSlot(sum) + 1));
+	 * </pre>
+	 *
+	 * every slot index can be used as Object, int, long and double storage, a
+	 * named slot is also reachable by getValue(name)/setValue(name,value).
+	 *
+	 * @param name local name
+	 * @return slot index
+	 */
+	public int declareSlot(String name) {
+		if (slotNames != null) {
+			Integer slot = slotNames.get(name);
+			if (slot != null) {
+				return slot;
+			}
+		}
+		unshare();
+		if (slotNames == null) {
+			slotNames = new HashMap<String, Integer>();
+		}
+		int idx = slotCount++;
+		if (idx == slots.length) {
+			int capacity = Math.max(4, idx * 2);
+			slots = Arrays.copyOf(slots, capacity);
+			intSlots = Arrays.copyOf(intSlots, capacity);
+			longSlots = Arrays.copyOf(longSlots, capacity);
+			doubleSlots = Arrays.copyOf(doubleSlots, capacity);
+		} else {
+			intSlots[idx] = 0;
+			longSlots[idx] = 0;
+			doubleSlots[idx] = 0;
+		}
+		slotNames.put(name, idx);
+		return idx;
+	}
+
+	/**
+	 * find slot index of given name
+	 *
+	 * @param name local name
+	 * @return slot index, or -1 if not declared
+	 */
+	public int slotOf(String name) {
+		if (slotNames == null) {
+			return -1;
+		}
+		Integer slot = slotNames.get(name);
+		return slot == null ? -1 : slot;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T getSlotValue(int slot) {
+		return (T) slots[slot];
+	}
+
+	public <T> void setSlotValue(int slot, T value) {
+		slots[slot] = value;
+	}
+
+	public int getIntSlot(int slot) {
+		return intSlots[slot];
+	}
+
+	public void setIntSlot(int slot, int value) {
+		intSlots[slot] = value;
+	}
+
+	public long getLongSlot(int slot) {
+		return longSlots[slot];
+	}
+
+	public void setLongSlot(int slot, long value) {
+		longSlots[slot] = value;
+	}
+
+	public double getDoubleSlot(int slot) {
+		return doubleSlots[slot];
+	}
+
+	public void setDoubleSlot(int slot, double value) {
+		doubleSlots[slot] = value;
+	}
+
 
 	/**
 	 * add instruction
@@ -217,15 +695,66 @@ public class Coroutine {
 	 * @return new instruction pointer
 	 */
 	public int addInstruction(Delegates.Action1<Coroutine> ins) {
+		return append(ins);
+	}
+
+	/**
+	 * append to instruction vector, and to compiled array when already compiled
+	 * (e.g. If() invoked inside a running loop body)
+	 */
+	private int append(Delegates.Action1<Coroutine> ins) {
+		unshare();
 		int idx = instructions.size();
 		instructions.add(ins);
+		if (compiled) {
+			if (codeLength == code.length) {
+				code = Arrays.copyOf(code, Math.max(8, codeLength * 2));
+			}
+			code[codeLength++] = ins;
+		}
 		return idx;
 	}
+
+	/**
+	 * freeze instruction vector into a plain array. once compiled, exec() and
+	 * execUntilSuspend() dispatch from the array without synchronization.
+	 * instructions added by addInstruction() afterwards are still appended, but
+	 * modifying the instructions vector directly is no longer observed.
+	 * it is invoked by start().
+	 */
+	public void compile() {
+		if (shared) {
+			// program of template frame is compiled already
+			return;
+		}
+		int size = instructions.size();
+		code = instructions.toArray(code != null && code.length >= size ? code : newCode(size));
+		codeLength = size;
+		compiled = true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Delegates.Action1<Coroutine>[] newCode(int size) {
+		return (Delegates.Action1<Coroutine>[]) new Delegates.Action1<?>[size];
+	}
+
+	/**
+	 * test if instructions are frozen by compile()
+	 *
+	 * @return true if compiled
+	 */
+	public boolean isCompiled() {
+		return compiled;
+	}
+
+	int length() {
+		return compiled ? codeLength : instructions.size();
+	}
 	/**
 	 * break
 	 */
 	public void doBreak() {
-		if(ipLoopEnd.IsEmpty.get()) return;
+		if(ipLoopEnd == null || ipLoopEnd.IsEmpty.get()) return;
 		int end = ipLoopEnd.Last.get().Value;
 		if(end >= 0) {
 			jmp(end);
@@ -235,15 +764,20 @@ public class Coroutine {
 	 * break
 	 */
 	public void doContinue() {
-		if(ipLoopStart.IsEmpty.get()) return;
+		if(ipLoopStart == null || ipLoopStart.IsEmpty.get()) return;
 		int end = ipLoopStart.Last.get().Value;
 		if(end >= 0) {
 			jmp(end);
 		}
 	}
 
-	BaseLinkedList<Integer> ipLoopEnd = new BaseLinkedList<Integer>();
-	BaseLinkedList<Integer> ipLoopStart = new BaseLinkedList<Integer>();
+	/**
+	 * slot name of loop end position in loop frames
+	 */
+	static final String LOOP_END = "#loopEnd";
+
+	BaseLinkedList<Integer> ipLoopEnd;
+	BaseLinkedList<Integer> ipLoopStart;
 	/**
 	 * foreach string
 	 * @param <T>
@@ -251,7 +785,7 @@ public class Coroutine {
 	 * @return
 	 */
 	public ForeachBody<String> Foreach(StringTokenizer arr) {
-		return Foreach(Delegates.forall(arr));
+		return Foreach(Delegates.forall(arr).iterator());
 	}
 	/**
 	 * foreach loop
@@ -260,7 +794,7 @@ public class Coroutine {
 	 * @return
 	 */
 	public <T> ForeachBody<T> Foreach(Enumeration<T> arr) {
-		return Foreach(Delegates.forall(arr));
+		return Foreach(Delegates.forall(arr).iterator());
 	}
 	/**
 	 * foreach loop
@@ -272,28 +806,27 @@ public class Coroutine {
 		return Foreach(Delegates.forall(arr));
 	}
 	/**
-	 * foreach loop
+	 * foreach loop, iterable.iterator() is called each time the loop starts
+	 * and the iterator is kept in a slot of the loop frame, so the loop can be
+	 * part of a CoroutineTemplate program.
 	 * @param <T>
-	 * @param iterator
+	 * @param iterable
 	 * @return
 	 */
 	public <T> ForeachBody<T> Foreach(Iterable<T> iterable) {
-		return Foreach(iterable.iterator());
-	}
-	/**
-	 * foreach loop
-	 * @param iterator iterator to perform foreach coroutine
-	 * @return
-	 */
-	public <T> ForeachBody<T> Foreach(Iterator<T> iterator) {
-		Var<Integer> breakLoop = new Var<>();
 		ForeachBody<T> ret = new ForeachBody<T>();
 		Coroutine pthat=this.push();
 		ret.parent = pthat;
+		int breakLoop = pthat.declareSlot(LOOP_END);
+		int valueSlot = pthat.declareSlot("Value");
+		int iteratorSlot = pthat.declareSlot("#iterator");
+		ret.valueSlot = valueSlot;
 		
+		pthat.addInstruction((cor)->cor.slots[iteratorSlot] = iterable.iterator());
 		int loopPos = pthat.addInstruction((cor)->{
-			if(!iterator.hasNext()) {
-				cor.jmp(breakLoop.get());
+			if(!((Iterator<?>) cor.slots[iteratorSlot]).hasNext()) {
+				cor.slots[iteratorSlot] = null;
+				cor.jmp(cor.intSlots[breakLoop]);
 				return;
 			}
 		});
@@ -301,7 +834,7 @@ public class Coroutine {
 			try {
 				// While Loop Body
 				if(ret.body!=null) {
-				    cor.setValue("Value", iterator.next());
+				    cor.slots[valueSlot] = ((Iterator<?>) cor.slots[iteratorSlot]).next();
 				    ret.body.Invoke(cor);
 				}
 			}catch(Exception ee) {
@@ -312,24 +845,47 @@ public class Coroutine {
 		pthat.addInstruction((cor)->cor.jmp(loopPos));
 		int endloop=pthat.addInstruction((cor)->{
 		});
-		breakLoop.set(endloop);
+		pthat.intSlots[breakLoop] = endloop;
+		pthat.compile();
 		ret.ip = loopPos;
 		return ret;
 	}
 	/**
-	 * while loop
+	 * foreach loop over a single-use iterator, the loop cannot be part of a
+	 * CoroutineTemplate program, use Foreach(Iterable) there.
+	 * @param iterator iterator to perform foreach coroutine
+	 * @return
+	 */
+	public <T> ForeachBody<T> Foreach(Iterator<T> iterator) {
+		ForeachBody<T> ret = Foreach(() -> iterator);
+		ret.parent.capturesState = true;
+		return ret;
+	}
+	/**
+	 * while loop whose condition only reads captured state, the loop cannot
+	 * be part of a CoroutineTemplate program, use While(Func1) there.
 	 * @param cond
 	 * @return
 	 */
 	public CompositeBlock While(Delegates.Func<Boolean> cond) {
-		Var<Integer> breakLoop = new Var<>();
+		CompositeBlock ret = While((cor) -> cond.Invoke());
+		ret.parent.capturesState = true;
+		return ret;
+	}
+	/**
+	 * while loop, cond gets the loop frame so its state can live in slots
+	 * @param cond
+	 * @return
+	 */
+	public CompositeBlock While(Delegates.Func1<Coroutine, Boolean> cond) {
 		CompositeBlock ret = new CompositeBlock();
 		Coroutine pthat=this.push();
 		ret.parent = pthat;
+		int breakLoop = pthat.declareSlot(LOOP_END);
 		
 		int loopPos = pthat.addInstruction((cor)->{
-			if(!cond.Invoke()) {
-				cor.jmp(breakLoop.get());
+			if(!cond.Invoke(cor)) {
+				cor.jmp(cor.intSlots[breakLoop]);
 				return;
 			}
 		});
@@ -347,27 +903,43 @@ public class Coroutine {
 		pthat.addInstruction((cor)->cor.jmp(loopPos));
 		int endloop=pthat.addInstruction((cor)->{
 		});
-		breakLoop.set(endloop);
+		pthat.intSlots[breakLoop] = endloop;
+		pthat.compile();
 		ret.ip = loopPos;
 		return ret;
 	}
 	/**
-	 * For-Loop
+	 * For-Loop whose condition only reads captured state, the loop cannot be
+	 * part of a CoroutineTemplate program, use For(init, Func1, step) or
+	 * For(counter, from, to, step) there.
 	 * @param init
 	 * @param cond
 	 * @param step
 	 * @return
 	 */
 	public CompositeBlock For(Delegates.Action1<Coroutine> init,Delegates.Func<Boolean> cond,Delegates.Action1<Coroutine> step) {
-		Var<Integer> breakLoop = new Var<>();
+		CompositeBlock ret = For(init, (cor) -> cond.Invoke(), step);
+		ret.parent.capturesState = true;
+		return ret;
+	}
+	/**
+	 * For-Loop, init, cond and step get the loop frame so the loop state can
+	 * live in slots
+	 * @param init
+	 * @param cond
+	 * @param step
+	 * @return
+	 */
+	public CompositeBlock For(Delegates.Action1<Coroutine> init,Delegates.Func1<Coroutine, Boolean> cond,Delegates.Action1<Coroutine> step) {
 		CompositeBlock ret = new CompositeBlock();
 		Coroutine pthat=this.push();
 		ret.parent = pthat;
-		int initPos = pthat.addInstruction(init);
+		int breakLoop = pthat.declareSlot(LOOP_END);
+		pthat.addInstruction(init);
 		
 		int loopPos = pthat.addInstruction((cor)->{
-			if(!cond.Invoke()) {
-				cor.jmp(breakLoop.get());
+			if(!cond.Invoke(cor)) {
+				cor.jmp(cor.intSlots[breakLoop]);
 				return;
 			}
 		});
@@ -387,7 +959,56 @@ public class Coroutine {
 		int endloop=pthat.addInstruction((cor)->{
 			 
 		});
-		breakLoop.set(endloop);
+		pthat.intSlots[breakLoop] = endloop;
+		pthat.compile();
+		ret.ip = loopPos;
+		return ret;
+	}
+	/**
+	 * counting For-Loop, the counter lives in an int slot of the loop frame so
+	 * neither the loop nor the body boxes it.
+	 * <pre>
+	 * cor.For("i", 0, 100, 1).run((ctx, i) -> ctx.yield(i));
+	 * </pre>
+	 * @param counter slot name of counter
+	 * @param from initial value
+	 * @param to exclusive bound
+	 * @param step increment, a negative step counts down to (exclusive) to
+	 * @return
+	 */
+	public ForRangeBody For(String counter, int from, int to, int step) {
+		ForRangeBody ret = new ForRangeBody();
+		Coroutine pthat=this.push();
+		ret.parent = pthat;
+		int breakLoop = pthat.declareSlot(LOOP_END);
+		int i = pthat.declareSlot(counter);
+		ret.counterSlot = i;
+		pthat.addInstruction((cor)->cor.intSlots[i] = from);
+		
+		int loopPos = pthat.addInstruction((cor)->{
+			if(step > 0 ? cor.intSlots[i] >= to : cor.intSlots[i] <= to) {
+				cor.jmp(cor.intSlots[breakLoop]);
+				return;
+			}
+		});
+		pthat.addInstruction((cor)->{
+			try {
+				// For Loop Body
+				if(ret.body!=null) {
+				   ret.body.Invoke(cor);
+				}
+			}catch(Exception ee) {
+				Tracer.D(ee);
+				cor.stop();
+			}
+		});
+		pthat.addInstruction((cor)->cor.intSlots[i] += step);
+		pthat.addInstruction((cor)->cor.jmp(loopPos));
+		int endloop=pthat.addInstruction((cor)->{
+			 
+		});
+		pthat.intSlots[breakLoop] = endloop;
+		pthat.compile();
 		ret.ip = loopPos;
 		return ret;
 	}
@@ -402,16 +1023,12 @@ public class Coroutine {
 	 * @return IfBlock for fluent configuration
 	 */
 	public IfBlock If(Delegates.Func<Boolean> cond) {
-		Var<Integer> endIf = new Var<>();
-		Var<Integer> elseBlock = new Var<>();
 		IfBlock ret = new IfBlock();
 		ret.parent = this;  // Don't push, use same coroutine
-		ret.endIfPos = endIf;
-		ret.elseBlockPos = elseBlock;
 		ret.cond = cond;
 		
 		// The actual instructions will be added when then()/Else() are called
-		ret.ip = this.instructions.size();
+		ret.ip = length();
 		
 		return ret;
 	}
@@ -422,8 +1039,9 @@ public class Coroutine {
 	public static class IfBlock extends CompositeBlock {
 		Delegates.Action1<Coroutine> thenBody;
 		Delegates.Action1<Coroutine> elseBody;
-		Var<Integer> endIfPos;
-		Var<Integer> elseBlockPos;
+		// -1 until the branch is added
+		int endIfPos = -1;
+		int elseBlockPos = -1;
 		Delegates.Func<Boolean> cond;
 		int jumpToEndPos;
 		boolean instructionsAdded = false;
@@ -446,10 +1064,10 @@ public class Coroutine {
 			int condPos = parent.addInstruction((cor) -> {
 				if (!cond.Invoke()) {
 					// Jump to else or end
-					if (elseBlockPos.get() != null) {
-						cor.jmp(elseBlockPos.get());
-					} else if (endIfPos.get() != null) {
-						cor.jmp(endIfPos.get());
+					if (elseBlockPos >= 0) {
+						cor.jmp(elseBlockPos);
+					} else if (endIfPos >= 0) {
+						cor.jmp(endIfPos);
 					}
 				}
 			});
@@ -469,8 +1087,8 @@ public class Coroutine {
 			
 			// Jump over else block after then completes
 			jumpToEndPos = parent.addInstruction((cor) -> {
-				if (endIfPos.get() != null) {
-					cor.jmp(endIfPos.get());
+				if (endIfPos >= 0) {
+					cor.jmp(endIfPos);
 				}
 			});
 		}
@@ -492,13 +1110,13 @@ public class Coroutine {
 					cor.stop();
 				}
 			});
-			elseBlockPos.set(elseStart);
+			elseBlockPos = elseStart;
 			
 			// End of if-else
 			int endPos = parent.addInstruction((cor) -> {
 				// No-op, just a marker
 			});
-			endIfPos.set(endPos);
+			endIfPos = endPos;
 			
 			return this;
 		}
@@ -512,12 +1130,12 @@ public class Coroutine {
 		 * Finish the if block without else
 		 */
 		private IfBlock finishIf() {
-			if (elseBlockPos.get() == null) {
+			if (elseBlockPos < 0) {
 				// No else block, set end position
 				int endPos = parent.addInstruction((cor) -> {
 					// No-op, just a marker
 				});
-				endIfPos.set(endPos);
+				endIfPos = endPos;
 			}
 			return this;
 		}
@@ -532,11 +1150,7 @@ public class Coroutine {
 	 * @return new instruction pointer
 	 */
 	public int addInstruction(String label, Delegates.Action1<Coroutine> ins) {
-		int idx = instructions.size();
-		instructions.add(ins);
-		if (labels.containsKey(label)) {
-			labels.remove(label);
-		}
+		int idx = append(ins);
 		labels.put(label, idx);
 		return idx;
 	}
@@ -551,8 +1165,8 @@ public class Coroutine {
 		if (this.ip < 0) {
 			this.ip = 0;
 		}
-		if (this.ip >= instructions.size()) {
-			this.ip = instructions.size() - 1;
+		if (this.ip >= length()) {
+			this.ip = length() - 1;
 		}
 	}
 
@@ -575,10 +1189,7 @@ public class Coroutine {
 	 */
 	@SuppressWarnings("unchecked")
 	public <T> T getYieldValue() {
-		Coroutine selection = this;
-		while (selection.next != null && !selection.next.isStopped()) {
-			selection = selection.next;
-		}
+		Coroutine selection = activeFrame();
 		T ret = (T) selection.yieldValue;
 		selection.yieldValue = null;
 
@@ -597,15 +1208,85 @@ public class Coroutine {
 	}
 
 	/**
-	 * reset the instruction pointer and transfer to initial state
+	 * suspend execution with an int value, without boxing. read it by
+	 * getYieldInt() or iterate by IntGenerator.
+	 *
+	 * @param value
+	 */
+	public void yieldInt(int value) {
+		yieldPrimitive = value;
+		state = State.Suspend;
+	}
+
+	/**
+	 * suspend execution with a long value, without boxing. read it by
+	 * getYieldLong() or iterate by LongGenerator.
+	 *
+	 * @param value
+	 */
+	public void yieldLong(long value) {
+		yieldPrimitive = value;
+		state = State.Suspend;
+	}
+
+	/**
+	 * suspend execution with a double value, without boxing. read it by
+	 * getYieldDouble() or iterate by DoubleGenerator.
+	 *
+	 * @param value
+	 */
+	public void yieldDouble(double value) {
+		yieldPrimitive = Double.doubleToRawLongBits(value);
+		state = State.Suspend;
+	}
+
+	/**
+	 * get value of yieldInt()
+	 */
+	public int getYieldInt() {
+		return (int) activeFrame().yieldPrimitive;
+	}
+
+	/**
+	 * get value of yieldLong()
+	 */
+	public long getYieldLong() {
+		return activeFrame().yieldPrimitive;
+	}
+
+	/**
+	 * get value of yieldDouble()
+	 */
+	public double getYieldDouble() {
+		return Double.longBitsToDouble(activeFrame().yieldPrimitive);
+	}
+
+	/**
+	 * reset the instruction pointer and transfer to initial state.
+	 * an instance of CoroutineTemplate is restored to the template program:
+	 * frames pushed while running are kept for reuse, slots and globals get
+	 * their initial values, no container is reallocated.
 	 */
 	public void reset() {
 		ip = 0;
 		state = State.None;
+		if (template != null) {
+			truncate(0);
+			next = null;
+			for (int i = 0; i < chain.length; ++i) {
+				Coroutine frame = chain[i];
+				frame.restore();
+				frame.next = null;
+				if (i > 0) {
+					chain[i - 1].attach(frame);
+				}
+			}
+		}
 	}
 
 	/**
-	 * transfer state to run state To run pushed instruction, use exec() instead
+	 * transfer state to run state To run pushed instruction, use exec() instead.
+	 * instructions are compiled, see compile()
 	 */
 	public void start() {
 		state = State.Run;
@@ -614,6 +1295,7 @@ public class Coroutine {
 				pthis.pop();
 			});
 		}
+		compile();
 	}
 
 	/**
@@ -623,6 +1305,37 @@ public class Coroutine {
 		state = State.Stop;
 	}
 
+	/**
+	 * stop this coroutine with all its frames once cancellation of
+	 * cancellationSource is requested. the run loops check it before each
+	 * instruction, a running instruction finishes.
+	 *
+	 * @param cancellationSource source, null to detach
+	 */
+	public void setCancellation(CancellationTokenSource cancellationSource) {
+		root.cancellation = cancellationSource;
+	}
+
+	public CancellationTokenSource getCancellation() {
+		return root.cancellation;
+	}
+
+	/**
+	 * stop every frame when cancellation of root is requested
+	 *
+	 * @return true when stopped by cancellation
+	 */
+	boolean stopIfCancelled() {
+		CancellationTokenSource c = root.cancellation;
+		if (c == null || !c.IsCancellationRequested) {
+			return false;
+		}
+		for (Coroutine frame = root; frame != null; frame = frame.next) {
+			frame.state = State.Stop;
+		}
+		return true;
+	}
+
 	/**
 	 * execute instruction to run until stop, use
 	 *
@@ -645,14 +1358,49 @@ public class Coroutine {
 	 * @return true if it can continue, or false when stopped/suspend
 	 */
 	boolean execCurrent() {
+		if (root.cancellation != null && stopIfCancelled()) {
+			return false;
+		}
+		if (state == State.Suspend) {
+			state = State.Run;
+		}
+		int length = length();
+		if (state != State.Stop && ip < length) {
+			Delegates.Action1<Coroutine> instruction = compiled ? code[ip] : instructions.get(ip);
+			++ip;
+			instruction.Invoke(this);
+			if (ip == length()) {
+				state = State.Stop;
+			}
+			if (state == State.Suspend) {
+				return false;
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * execCurrent() which records the instruction in profiler
+	 */
+	boolean execProfiled(CoroutineProfiler profiler) {
+		if (root.cancellation != null && stopIfCancelled()) {
+			return false;
+		}
 		if (state == State.Suspend) {
 			state = State.Run;
 		}
-		if (state != State.Stop && ip < instructions.size()) {
-			Delegates.Action1<Coroutine> instruction = instructions.get(ip);
+		int length = length();
+		if (state != State.Stop && ip < length) {
+			CoroutineProfiler.Node node = profileNode(profiler);
+			int at = ip;
+			Delegates.Action1<Coroutine> instruction = compiled ? code[ip] : instructions.get(ip);
 			++ip;
+			long begin = System.nanoTime();
 			instruction.Invoke(this);
-			if (ip == instructions.size()) {
+			long elapsed = System.nanoTime() - begin;
+			node.record(at, elapsed, state == State.Suspend);
+			if (ip == length()) {
 				state = State.Stop;
 			}
 			if (state == State.Suspend) {
@@ -663,16 +1411,144 @@ public class Coroutine {
 		return false;
 	}
 
+	/**
+	 * counters of this frame, a pushed frame gets a child of its parent's node
+	 * keyed by the parent's ip
+	 */
+	CoroutineProfiler.Node profileNode(CoroutineProfiler profiler) {
+		CoroutineProfiler.Node node = profileNode;
+		if (node != null && node.profiler == profiler) {
+			return node;
+		}
+		if (parent == null) {
+			node = profiler.root;
+			node.describe(this);
+		} else {
+			node = parent.profileNode(profiler).child(parent.ip, this);
+		}
+		profileNode = node;
+		return node;
+	}
+
+	/**
+	 * record instruction counters of this coroutine and frames pushed by it,
+	 * until set to null. when null (the default) nothing is recorded.
+	 *
+	 * @param profiler profiler, may be shared by several coroutines
+	 */
+	public void setProfiler(CoroutineProfiler profiler) {
+		this.profiler = profiler;
+	}
+
+	public CoroutineProfiler getProfiler() {
+		return profiler;
+	}
+
 	public boolean exec() {
-		Coroutine selection = this;
+		Coroutine frame = activeFrame();
+		return profiler != null ? frame.execProfiled(profiler) : frame.execCurrent();
+	}
+
+	/**
+	 * execute at most budget instructions, stops early when yield() occurred or
+	 * the coroutine stopped.
+	 *
+	 * @param budget maximal count of instructions to execute
+	 * @return count of executed instructions
+	 */
+	public int exec(int budget) {
+		int executed = 0;
+		while (executed < budget) {
+			Coroutine frame = activeFrame();
+			if (frame.state == State.Stop || frame.ip >= frame.length()) {
+				break;
+			}
+			++executed;
+			if (!(profiler != null ? frame.execProfiled(profiler) : frame.execCurrent())) {
+				break;
+			}
+		}
+		return executed;
+	}
+
+	/**
+	 * execute until yield() or stop, same as
+	 *
+	 * <pre>
+	 * while (coroutine.exec())
+	 * 	;
+	 * </pre>
+	 *
+	 * but compiled frames are dispatched in a tight loop over the instruction
+	 * array, the active frame is only searched again when a frame is pushed
+	 * or stopped.
+	 */
+	public void execUntilSuspend() {
+		if (profiler != null) {
+			while (activeFrame().execProfiled(profiler))
+				;
+			return;
+		}
+		for (;;) {
+			Coroutine frame = activeFrame();
+			boolean more = frame.compiled ? frame.dispatch() : frame.execCurrent();
+			if (!more) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * dispatch loop of compiled frame
+	 *
+	 * @return true if active frame should be searched again, or false when
+	 *         stopped/suspend
+	 */
+	private boolean dispatch() {
+		if (state == State.Suspend) {
+			state = State.Run;
+		}
+		if (state == State.Stop || ip >= codeLength) {
+			return false;
+		}
+		CancellationTokenSource c = root.cancellation;
+		do {
+			if (c != null && c.IsCancellationRequested) {
+				stopIfCancelled();
+				return false;
+			}
+			Delegates.Action1<Coroutine> instruction = code[ip];
+			++ip;
+			instruction.Invoke(this);
+			if (ip == codeLength) {
+				state = State.Stop;
+			}
+			if (state == State.Suspend) {
+				return false;
+			}
+			if (state == State.Stop) {
+				return true;
+			}
+		} while (next == null || next.isStopped());
+		return true;
+	}
+
+	Coroutine activeFrame() {
+		Coroutine selection = innermost();
+		if (selection == this || !selection.currentIsStopped()) {
+			// innermost frame is running, every frame on the way is not stopped
+			return selection;
+		}
+		// innermost frame has finished but is not popped yet
+		selection = this;
 		while (selection.next != null && !selection.next.isStopped()) {
 			selection = selection.next;
 		}
-		return selection.execCurrent();
+		return selection;
 	}
 
 	boolean currentIsStopped() {
-		return state == State.Stop || ip == instructions.size();
+		return state == State.Stop || ip == length();
 	}
 
 	/**
@@ -681,10 +1557,7 @@ public class Coroutine {
 	 * @return true if stopped
 	 */
 	public boolean isStopped() {
-		Coroutine selection = this;
-		while (selection.next != null) {
-			selection = selection.next;
-		}
+		Coroutine selection = innermost();
 		if (selection != this) {
 			if (!selection.currentIsStopped()) {
 				return false;
@@ -700,12 +1573,8 @@ public class Coroutine {
 	 * @return true if stopped
 	 */
 	public boolean isYield() {
-		Coroutine selection = this;
 		// check topmost one
-		while (selection.next != null) {
-			selection = selection.next;
-		}
-		return selection.state == State.Suspend;
+		return innermost().state == State.Suspend;
 	}
 
 	@Override
@@ -0,0 +1,402 @@
+package com.example.sharp.coroutine;
+
+import com.example.sharp.io.MemoryStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * binary snapshot of a suspended coroutine.
+ *
+ * a checkpoint holds, for each frame of the next chain, ip, state, name, the
+ * yielded value, slot values and globals. instructions are not saved: they
+ * are lambdas and are identified by their index, so a checkpoint is restored
+ * into a coroutine built by the same program, e.g. a new instance of the
+ * same CoroutineTemplate. the restored coroutine continues where the saved
+ * one was suspended.
+ *
+ * <pre>
+ * byte[] parked = CoroutineCheckpoint.park(cor);   // cor goes back to template pool
+ * ...
+ * Coroutine resumed = CoroutineCheckpoint.resume(template, parked);
+ * </pre>
+ *
+ * values of slots and globals must be null, boxed primitives, String,
+ * BigInteger, BigDecimal or Serializable. frames pushed while running (e.g.
+ * a For inside a loop body) can be saved but are not rebuilt by the program,
+ * so such a checkpoint is only restored into a coroutine having the same
+ * frames.
+ */
+public class CoroutineCheckpoint {
+	static final int MAGIC = 0x434f5230; // "COR0"
+	static final int VERSION = 1;
+
+	static final int NULL = 0;
+	static final int INT = 1;
+	static final int LONG = 2;
+	static final int DOUBLE = 3;
+	static final int STRING = 4;
+	static final int BOOLEAN = 5;
+	static final int FLOAT = 6;
+	static final int SHORT = 7;
+	static final int BYTE = 8;
+	static final int CHAR = 9;
+	static final int BIG_INTEGER = 10;
+	static final int BIG_DECIMAL = 11;
+	static final int SERIALIZED = 12;
+
+	private CoroutineCheckpoint() {
+	}
+
+	/**
+	 * write checkpoint of cor at current position of stream
+	 *
+	 * @param cor    outermost frame of coroutine
+	 * @param stream target stream
+	 * @throws NotSerializableException if a slot or global holds an unsupported
+	 *                                  value
+	 */
+	public static void write(Coroutine cor, MemoryStream stream) throws IOException {
+		write(cor, stream.asOutputStream());
+	}
+
+	/**
+	 * restore a checkpoint from current position of stream into cor, which
+	 * must be built by the same program as the saved coroutine
+	 *
+	 * @param cor    outermost frame of coroutine to overwrite
+	 * @param stream source stream
+	 * @throws IOException if the checkpoint is corrupted or does not match cor
+	 */
+	public static void read(Coroutine cor, MemoryStream stream) throws IOException {
+		read(cor, new DataInputStream(stream));
+	}
+
+	/**
+	 * @return checkpoint of cor
+	 */
+	public static byte[] toBytes(Coroutine cor) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		write(cor, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * restore checkpoint from toBytes() into cor
+	 */
+	public static void fromBytes(Coroutine cor, byte[] checkpoint) throws IOException {
+		read(cor, new DataInputStream(new ByteArrayInputStream(checkpoint)));
+	}
+
+	/**
+	 * write checkpoint of cor to file
+	 */
+	public static void save(Coroutine cor, File file) throws IOException {
+		MemoryStream stream = new MemoryStream();
+		write(cor, stream);
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(buffer(stream), 0, (int) stream.getLength());
+		}
+	}
+
+	/**
+	 * restore checkpoint from file into cor
+	 */
+	public static void load(Coroutine cor, File file) throws IOException {
+		read(cor, new MemoryStream(Files.readAllBytes(file.toPath()), false));
+	}
+
+	/**
+	 * take a checkpoint of cor and give it back to its template pool, if it is
+	 * an instance from CoroutineTemplate.acquire()
+	 *
+	 * @return checkpoint to pass to resume()
+	 */
+	public static byte[] park(Coroutine cor) throws IOException {
+		byte[] checkpoint = toBytes(cor);
+		if (cor.template != null) {
+			cor.template.release(cor);
+		}
+		return checkpoint;
+	}
+
+	/**
+	 * check out an instance of template and restore a checkpoint from park()
+	 * into it
+	 */
+	public static Coroutine resume(CoroutineTemplate template, byte[] checkpoint) throws IOException {
+		Coroutine cor = template.acquire();
+		try {
+			fromBytes(cor, checkpoint);
+		} catch (IOException ee) {
+			template.release(cor);
+			throw ee;
+		}
+		return cor;
+	}
+
+	private static byte[] buffer(MemoryStream stream) throws IOException {
+		try {
+			return stream.getBuffer();
+		} catch (Exception ee) {
+			throw new IOException(ee);
+		}
+	}
+
+	static void write(Coroutine cor, OutputStream target) throws IOException {
+		DataOutputStream out = new DataOutputStream(target);
+		ArrayList<Coroutine> frames = chain(cor);
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		writeVarInt(out, frames.size());
+		for (Coroutine frame : frames) {
+			writeVarInt(out, frame.length());
+			writeString(out, frame.name);
+			out.writeByte(frame.state.ordinal());
+			writeVarInt(out, frame.ip);
+			writeValue(out, frame.yieldValue);
+			out.writeLong(frame.yieldPrimitive);
+
+			String[] names = slotNames(frame);
+			writeVarInt(out, names.length);
+			for (int i = 0; i < names.length; ++i) {
+				writeString(out, names[i]);
+				out.writeInt(frame.intSlots[i]);
+				out.writeLong(frame.longSlots[i]);
+				out.writeDouble(frame.doubleSlots[i]);
+				writeValue(out, frame.slots[i]);
+			}
+
+			Map.Entry<?, ?>[] globals = frame.globals.entrySet().toArray(new Map.Entry<?, ?>[0]);
+			writeVarInt(out, globals.length);
+			for (Map.Entry<?, ?> global : globals) {
+				writeString(out, (String) global.getKey());
+				writeValue(out, global.getValue());
+			}
+		}
+		out.flush();
+	}
+
+	static void read(Coroutine cor, DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new StreamCorruptedException("not a coroutine checkpoint");
+		}
+		int version = in.readByte();
+		if (version != VERSION) {
+			throw new StreamCorruptedException("unsupported checkpoint version " + version);
+		}
+		ArrayList<Coroutine> frames = chain(cor);
+		int count = readVarInt(in);
+		if (count == 0 || count > frames.size()) {
+			throw new InvalidClassException("checkpoint has " + count + " frames, coroutine has " + frames.size()
+					+ ", frames pushed while running cannot be rebuilt");
+		}
+		Coroutine.State[] states = Coroutine.State.values();
+		for (int i = 0; i < count; ++i) {
+			Coroutine frame = frames.get(i);
+			int length = readVarInt(in);
+			if (length != frame.length()) {
+				throw new InvalidClassException("frame " + i + " has " + frame.length() + " instructions, checkpoint has "
+						+ length);
+			}
+			frame.name = readString(in);
+			int state = in.readByte();
+			if (state < 0 || state >= states.length) {
+				throw new StreamCorruptedException("invalid state " + state);
+			}
+			frame.state = states[state];
+			frame.ip = readVarInt(in);
+			frame.yieldValue = readValue(in);
+			frame.yieldPrimitive = in.readLong();
+
+			int slotCount = readVarInt(in);
+			String[] names = slotNames(frame);
+			for (int slot = 0; slot < slotCount; ++slot) {
+				String name = readString(in);
+				boolean declared = slot < names.length ? name.equals(names[slot]) : frame.declareSlot(name) == slot;
+				if (!declared) {
+					throw new InvalidClassException("slot " + slot + " of frame " + i + " is not " + name);
+				}
+				frame.intSlots[slot] = in.readInt();
+				frame.longSlots[slot] = in.readLong();
+				frame.doubleSlots[slot] = in.readDouble();
+				frame.slots[slot] = readValue(in);
+			}
+
+			int globals = readVarInt(in);
+			frame.globals.clear();
+			for (int g = 0; g < globals; ++g) {
+				String key = readString(in);
+				Object value = readValue(in);
+				if (key != null && value != null) {
+					frame.globals.put(key, value);
+				}
+			}
+		}
+		// frames of the program the saved coroutine had already dropped
+		frames.get(count - 1).detachNext();
+	}
+
+	static ArrayList<Coroutine> chain(Coroutine cor) {
+		ArrayList<Coroutine> frames = new ArrayList<Coroutine>();
+		for (Coroutine frame = cor; frame != null; frame = frame.next) {
+			frames.add(frame);
+		}
+		return frames;
+	}
+
+	static String[] slotNames(Coroutine frame) {
+		String[] names = new String[frame.slotCount];
+		if (frame.slotNames != null) {
+			for (Map.Entry<String, Integer> entry : frame.slotNames.entrySet()) {
+				names[entry.getValue()] = entry.getKey();
+			}
+		}
+		return names;
+	}
+
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("malformed varint");
+	}
+
+	static void writeString(DataOutputStream out, String value) throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(NULL);
+		} else if (value instanceof Integer) {
+			out.writeByte(INT);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Double) {
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof String) {
+			out.writeByte(STRING);
+			byte[] bytes = ((String) value).getBytes("UTF-8");
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		} else if (value instanceof Boolean) {
+			out.writeByte(BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Float) {
+			out.writeByte(FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Short) {
+			out.writeByte(SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Byte) {
+			out.writeByte(BYTE);
+			out.writeByte((Byte) value);
+		} else if (value instanceof Character) {
+			out.writeByte(CHAR);
+			out.writeChar((Character) value);
+		} else if (value.getClass() == BigInteger.class) {
+			out.writeByte(BIG_INTEGER);
+			byte[] bytes = ((BigInteger) value).toByteArray();
+			writeVarInt(out, bytes.length);
+			out.write(bytes);
+		} else if (value.getClass() == BigDecimal.class) {
+			out.writeByte(BIG_DECIMAL);
+			writeString(out, value.toString());
+		} else if (value instanceof Serializable) {
+			out.writeByte(SERIALIZED);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+				objects.writeObject(value);
+			}
+			writeVarInt(out, bytes.size());
+			bytes.writeTo(out);
+		} else {
+			throw new NotSerializableException(value.getClass().getName());
+		}
+	}
+
+	static Object readValue(DataInputStream in) throws IOException {
+		int tag = in.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case INT:
+			return in.readInt();
+		case LONG:
+			return in.readLong();
+		case DOUBLE:
+			return in.readDouble();
+		case STRING:
+			return new String(readBytes(in), "UTF-8");
+		case BOOLEAN:
+			return in.readBoolean();
+		case FLOAT:
+			return in.readFloat();
+		case SHORT:
+			return in.readShort();
+		case BYTE:
+			return in.readByte();
+		case CHAR:
+			return in.readChar();
+		case BIG_INTEGER:
+			return new BigInteger(readBytes(in));
+		case BIG_DECIMAL:
+			return new BigDecimal(readString(in));
+		case SERIALIZED:
+			try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+				return objects.readObject();
+			} catch (ClassNotFoundException ee) {
+				throw new InvalidClassException(ee.getMessage());
+			}
+		default:
+			throw new StreamCorruptedException("invalid value tag " + tag);
+		}
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,283 @@
+package com.example.sharp.coroutine;
+
+import com.example.sharp.CString;
+import com.example.sharp.Tracer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * per-instruction counters of profiled coroutines.
+ *
+ * every executed instruction records its invocation count, nanoseconds spent
+ * in it and how often it yielded. counters are kept per frame in a tree of
+ * nodes: a frame pushed by a loop (For, While, Foreach) or by push() is a
+ * child node of the frame which pushed it, so the cost of a loop body adds up
+ * under the block that created it.
+ *
+ * <pre>
+ * CoroutineProfiler profiler = new CoroutineProfiler();
+ * cor.setProfiler(profiler);
+ * for (Object value : cor.iterable()) {
+ * 	...
+ * }
+ * profiler.dump();
+ * </pre>
+ *
+ * a profiler may be shared by several coroutines, their counters are summed.
+ */
+public class CoroutineProfiler {
+	/**
+	 * counters of a frame
+	 */
+	public static class Node {
+		final CoroutineProfiler profiler;
+		final Node parent;
+		final int site;
+		String name;
+		String[] labels = new String[0];
+		long[] counts = new long[8];
+		long[] nanos = new long[8];
+		long[] yields = new long[8];
+		int length;
+		final LinkedHashMap<Integer, Node> children = new LinkedHashMap<Integer, Node>();
+
+		Node(CoroutineProfiler profiler, Node parent, int site) {
+			this.profiler = profiler;
+			this.parent = parent;
+			this.site = site;
+		}
+
+		/**
+		 * node of frames pushed when the parent frame was at ip site
+		 */
+		synchronized Node child(int site, Coroutine frame) {
+			Node node = children.get(site);
+			if (node == null) {
+				node = new Node(profiler, this, site);
+				children.put(site, node);
+			}
+			node.describe(frame);
+			return node;
+		}
+
+		/**
+		 * take name and labels of a frame, frames of the same site may add
+		 * labels later
+		 */
+		synchronized void describe(Coroutine frame) {
+			if (name == null && !CString.IsNullOrEmpty(frame.name)) {
+				name = frame.name;
+			}
+			for (Map.Entry<String, Integer> label : frame.labels.entrySet()) {
+				int idx = label.getValue();
+				if (idx >= labels.length) {
+					labels = Arrays.copyOf(labels, Math.max(idx + 1, labels.length * 2));
+				}
+				labels[idx] = label.getKey();
+			}
+		}
+
+		synchronized void record(int ip, long elapsed, boolean yielded) {
+			if (ip >= counts.length) {
+				int size = Math.max(ip + 1, counts.length * 2);
+				counts = Arrays.copyOf(counts, size);
+				nanos = Arrays.copyOf(nanos, size);
+				yields = Arrays.copyOf(yields, size);
+			}
+			if (ip >= length) {
+				length = ip + 1;
+			}
+			counts[ip]++;
+			nanos[ip] += elapsed;
+			if (yielded) {
+				yields[ip]++;
+			}
+		}
+
+		synchronized void clear() {
+			Arrays.fill(counts, 0);
+			Arrays.fill(nanos, 0);
+			Arrays.fill(yields, 0);
+			for (Node child : children.values()) {
+				child.clear();
+			}
+		}
+
+		public Node getParent() {
+			return parent;
+		}
+
+		/**
+		 * @return frame name, or push@site for unnamed frames
+		 */
+		public synchronized String getName() {
+			if (name != null) {
+				return name;
+			}
+			return parent == null ? "root" : "push@" + site;
+		}
+
+		/**
+		 * @return ip of the parent frame when this frame was pushed, -1 for root
+		 */
+		public int getSite() {
+			return site;
+		}
+
+		/**
+		 * @return count of instruction indexes with counters
+		 */
+		public synchronized int length() {
+			return length;
+		}
+
+		public synchronized long getCount(int ip) {
+			return ip < length ? counts[ip] : 0;
+		}
+
+		public synchronized long getNanos(int ip) {
+			return ip < length ? nanos[ip] : 0;
+		}
+
+		public synchronized long getYields(int ip) {
+			return ip < length ? yields[ip] : 0;
+		}
+
+		/**
+		 * @return label of instruction from addInstruction(label, ...), or null
+		 */
+		public synchronized String getLabel(int ip) {
+			return ip < labels.length ? labels[ip] : null;
+		}
+
+		/**
+		 * @return ip of label, or -1
+		 */
+		public synchronized int indexOf(String label) {
+			for (int i = 0; i < labels.length; ++i) {
+				if (label.equals(labels[i])) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		public synchronized List<Node> getChildren() {
+			return new ArrayList<Node>(children.values());
+		}
+
+		/**
+		 * @return nanoseconds in instructions of this frame, without children
+		 */
+		public synchronized long getSelfNanos() {
+			long sum = 0;
+			for (int i = 0; i < length; ++i) {
+				sum += nanos[i];
+			}
+			return sum;
+		}
+
+		/**
+		 * @return nanoseconds in this frame and frames pushed from it
+		 */
+		public long getTotalNanos() {
+			long sum = getSelfNanos();
+			for (Node child : getChildren()) {
+				sum += child.getTotalNanos();
+			}
+			return sum;
+		}
+
+		/**
+		 * @return executed instructions of this frame and frames pushed from it
+		 */
+		public long getTotalCount() {
+			long sum = 0;
+			synchronized (this) {
+				for (int i = 0; i < length; ++i) {
+					sum += counts[i];
+				}
+			}
+			for (Node child : getChildren()) {
+				sum += child.getTotalCount();
+			}
+			return sum;
+		}
+
+		/**
+		 * @return yields of this frame and frames pushed from it
+		 */
+		public long getTotalYields() {
+			long sum = 0;
+			synchronized (this) {
+				for (int i = 0; i < length; ++i) {
+					sum += yields[i];
+				}
+			}
+			for (Node child : getChildren()) {
+				sum += child.getTotalYields();
+			}
+			return sum;
+		}
+
+		void report(StringBuilder out, String indent) {
+			out.append(String.format("%s%s: %d instructions, %.3f ms, %d yields%n", indent, getName(), getTotalCount(),
+					getTotalNanos() / 1e6, getTotalYields()));
+			synchronized (this) {
+				for (int i = 0; i < length; ++i) {
+					if (counts[i] == 0) {
+						continue;
+					}
+					String label = i < labels.length && labels[i] != null ? labels[i] : "";
+					out.append(String.format("%s  #%-3d %-12s %10d calls %12d ns %8.1f ns/call %8d yields%n", indent, i,
+							label, counts[i], nanos[i], (double) nanos[i] / counts[i], yields[i]));
+				}
+			}
+			for (Node child : getChildren()) {
+				child.report(out, indent + "  ");
+			}
+		}
+	}
+
+	final Node root = new Node(this, null, -1);
+
+	/**
+	 * @return node of outermost frames
+	 */
+	public Node getRoot() {
+		return root;
+	}
+
+	/**
+	 * zero all counters
+	 */
+	public void reset() {
+		root.clear();
+	}
+
+	/**
+	 * @return counters as indented text, one line per frame and executed
+	 *         instruction
+	 */
+	public String report() {
+		StringBuilder out = new StringBuilder();
+		root.report(out, "");
+		return out.toString();
+	}
+
+	/**
+	 * write report() to Tracer log
+	 */
+	public void dump() {
+		Tracer.D("coroutine profile%n%s", report());
+	}
+
+	@Override
+	public String toString() {
+		return report();
+	}
+}
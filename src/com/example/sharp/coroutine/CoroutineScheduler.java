@@ -0,0 +1,464 @@
+package com.example.sharp.coroutine;
+
+import com.example.sharp.CString;
+import com.example.sharp.Delegates;
+import com.example.sharp.Tracer;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * runs many coroutines on a fixed count of carrier threads.
+ *
+ * a scheduled coroutine runs for a time slice, measured in instructions, then
+ * it is put back to the run queue. a coroutine which yield() gives up the rest
+ * of its slice, the yielded value is passed to the onYield handler of its
+ * task. a task can be parked (e.g. while it waits for I/O) and is not run
+ * again until unpark().
+ *
+ * <pre>
+ * CoroutineScheduler scheduler = new CoroutineScheduler(4);
+ * CoroutineScheduler.Task&lt;Integer&gt; task = scheduler.schedule(cor, (value) -&gt; consume(value));
+ * task.join();
+ * </pre>
+ */
+public class CoroutineScheduler {
+	/**
+	 * how runnable tasks share the carrier threads
+	 */
+	public enum Fairness {
+		/**
+		 * first in first out, every task runs timeSlice instructions per turn
+		 */
+		RoundRobin,
+		/**
+		 * first in first out, a task runs timeSlice * priority instructions per
+		 * turn
+		 */
+		Weighted,
+		/**
+		 * the runnable task with highest priority runs first, tasks with the same
+		 * priority run in round robin order. low priority tasks may starve.
+		 */
+		Priority
+	}
+
+	public static class Task<T> implements Comparable<Task<?>> {
+		final CoroutineScheduler scheduler;
+		final Coroutine coroutine;
+		final int priority;
+		final Delegates.Action1<T> onYield;
+		final Object locker = new Object();
+		long sequence;
+		boolean queued;
+		boolean running;
+		boolean parked;
+		volatile boolean done;
+		volatile Throwable error;
+		volatile long instructions;
+		volatile long yields;
+		volatile long slices;
+
+		Task(CoroutineScheduler scheduler, Coroutine coroutine, int priority, Delegates.Action1<T> onYield) {
+			this.scheduler = scheduler;
+			this.coroutine = coroutine;
+			this.priority = priority;
+			this.onYield = onYield;
+		}
+
+		public Coroutine getCoroutine() {
+			return coroutine;
+		}
+
+		public int getPriority() {
+			return priority;
+		}
+
+		/**
+		 * stop scheduling this task until unpark(), a running task finishes its
+		 * current slice first.
+		 */
+		public void park() {
+			synchronized (locker) {
+				parked = true;
+			}
+		}
+
+		/**
+		 * make a parked task runnable again
+		 */
+		public void unpark() {
+			synchronized (locker) {
+				parked = false;
+				if (queued || running || done) {
+					return;
+				}
+				queued = true;
+			}
+			scheduler.enqueue(this);
+		}
+
+		public boolean isParked() {
+			synchronized (locker) {
+				return parked;
+			}
+		}
+
+		/**
+		 * test if coroutine stopped or failed
+		 */
+		public boolean isDone() {
+			return done;
+		}
+
+		/**
+		 * exception or error thrown by an instruction, a CancellationException
+		 * when the scheduler was shut down before the coroutine stopped, or null
+		 */
+		public Throwable getError() {
+			return error;
+		}
+
+		public long getInstructionCount() {
+			return instructions;
+		}
+
+		public long getYieldCount() {
+			return yields;
+		}
+
+		public long getSliceCount() {
+			return slices;
+		}
+
+		/**
+		 * wait until done
+		 */
+		public void join() throws InterruptedException {
+			synchronized (locker) {
+				while (!done) {
+					locker.wait();
+				}
+			}
+		}
+
+		/**
+		 * wait until done
+		 *
+		 * @param millis maximal milliseconds to wait
+		 * @return true if done
+		 */
+		public boolean join(long millis) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + millis;
+			synchronized (locker) {
+				while (!done) {
+					long remain = deadline - System.currentTimeMillis();
+					if (remain <= 0) {
+						return false;
+					}
+					locker.wait(remain);
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int compareTo(Task<?> other) {
+			if (priority != other.priority) {
+				return priority > other.priority ? -1 : 1;
+			}
+			return Long.compare(sequence, other.sequence);
+		}
+	}
+
+	final Fairness fairness;
+	final int timeSlice;
+	final BlockingQueue<Task<?>> queue;
+	final Thread[] workers;
+	volatile boolean shutdown;
+	final AtomicLong sequence = new AtomicLong();
+	final AtomicInteger live = new AtomicInteger();
+	/**
+	 * tasks not done, completed by shutdown()
+	 */
+	final Set<Task<?>> liveTasks = ConcurrentHashMap.newKeySet();
+	final AtomicLong instructions = new AtomicLong();
+	final AtomicLong yields = new AtomicLong();
+	final AtomicLong slices = new AtomicLong();
+	final AtomicLong completed = new AtomicLong();
+	final long startTime = System.nanoTime();
+
+	/**
+	 * scheduler with a carrier thread per processor, round robin and time
+	 * slice of 1000 instructions
+	 */
+	public CoroutineScheduler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * round robin scheduler with time slice of 1000 instructions
+	 *
+	 * @param workers count of carrier threads
+	 */
+	public CoroutineScheduler(int workers) {
+		this(workers, 1000, Fairness.RoundRobin);
+	}
+
+	/**
+	 * @param workers   count of carrier threads
+	 * @param timeSlice instructions a task runs per turn
+	 * @param fairness  how runnable tasks are ordered
+	 */
+	public CoroutineScheduler(int workers, int timeSlice, Fairness fairness) {
+		this(workers, timeSlice, fairness, "CoroutineScheduler");
+	}
+
+	/**
+	 * @param workers   count of carrier threads
+	 * @param timeSlice instructions a task runs per turn
+	 * @param fairness  how runnable tasks are ordered
+	 * @param name      prefix of carrier thread names
+	 */
+	public CoroutineScheduler(int workers, int timeSlice, Fairness fairness, String name) {
+		if (workers <= 0 || timeSlice <= 0) {
+			throw new IllegalArgumentException("workers and timeSlice must be positive");
+		}
+		this.fairness = fairness;
+		this.timeSlice = timeSlice;
+		if (fairness == Fairness.Priority) {
+			queue = new PriorityBlockingQueue<Task<?>>();
+		} else {
+			queue = new LinkedBlockingQueue<Task<?>>();
+		}
+		this.workers = new Thread[workers];
+		for (int i = 0; i < workers; ++i) {
+			Thread worker = new Thread(this::worker);
+			worker.setName((CString.IsNullOrEmpty(name) ? "CoroutineScheduler" : name) + "-" + i);
+			worker.setDaemon(true);
+			this.workers[i] = worker;
+			worker.start();
+		}
+	}
+
+	/**
+	 * schedule a coroutine, yielded values are dropped
+	 *
+	 * @param cor coroutine to run, it must not be driven by another thread
+	 * @return task
+	 */
+	public <T> Task<T> schedule(Coroutine cor) {
+		return schedule(cor, 1, null);
+	}
+
+	/**
+	 * schedule a coroutine
+	 *
+	 * @param cor     coroutine to run, it must not be driven by another thread
+	 * @param onYield handler of yielded values, invoked on a carrier thread
+	 * @return task
+	 */
+	public <T> Task<T> schedule(Coroutine cor, Delegates.Action1<T> onYield) {
+		return schedule(cor, 1, onYield);
+	}
+
+	/**
+	 * schedule a coroutine
+	 *
+	 * @param cor      coroutine to run, it must not be driven by another thread
+	 * @param priority priority (Priority) or slice multiplier (Weighted), at
+	 *                 least 1
+	 * @param onYield  handler of yielded values, invoked on a carrier thread
+	 * @return task
+	 */
+	public <T> Task<T> schedule(Coroutine cor, int priority, Delegates.Action1<T> onYield) {
+		if (shutdown) {
+			throw new IllegalStateException("scheduler is shut down");
+		}
+		Task<T> task = new Task<T>(this, cor, Math.max(1, priority), onYield);
+		live.incrementAndGet();
+		liveTasks.add(task);
+		task.queued = true;
+		enqueue(task);
+		if (shutdown) {
+			// shutdown() may have missed it
+			cancel(task);
+		}
+		return task;
+	}
+
+	void enqueue(Task<?> task) {
+		task.sequence = sequence.getAndIncrement();
+		queue.add(task);
+	}
+
+	private void worker() {
+		while (!shutdown) {
+			Task<?> task;
+			try {
+				task = queue.take();
+			} catch (InterruptedException e) {
+				break;
+			}
+			runSlice(task);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> void runSlice(Task<T> task) {
+		synchronized (task.locker) {
+			task.queued = false;
+			if (task.parked || task.done) {
+				return;
+			}
+			task.running = true;
+		}
+		int budget = fairness == Fairness.Weighted ? timeSlice * task.priority : timeSlice;
+		Coroutine cor = task.coroutine;
+		boolean finished;
+		try {
+			int executed = cor.exec(budget);
+			task.instructions += executed;
+			task.slices++;
+			instructions.addAndGet(executed);
+			slices.incrementAndGet();
+			if (cor.isYield()) {
+				T value = cor.getYieldValue();
+				task.yields++;
+				yields.incrementAndGet();
+				if (task.onYield != null) {
+					task.onYield.Invoke(value);
+				}
+			}
+			finished = cor.isStopped();
+		} catch (Throwable ee) {
+			// an Error of an instruction must neither kill the carrier nor
+			// leave the task running
+			Tracer.D(ee instanceof Exception ? (Exception) ee : new Exception(ee));
+			task.error = ee;
+			finished = true;
+		}
+		synchronized (task.locker) {
+			task.running = false;
+			if (finished) {
+				task.done = true;
+				task.locker.notifyAll();
+			} else if (!task.parked) {
+				task.queued = true;
+			}
+		}
+		if (finished) {
+			liveTasks.remove(task);
+			live.decrementAndGet();
+			completed.incrementAndGet();
+		} else if (shutdown) {
+			cancel(task);
+		} else if (task.queued) {
+			enqueue(task);
+		}
+	}
+
+	/**
+	 * complete a task which will not run anymore with a CancellationException,
+	 * unless it is done or a carrier runs it
+	 */
+	private void cancel(Task<?> task) {
+		synchronized (task.locker) {
+			if (task.done || task.running) {
+				return;
+			}
+			task.queued = false;
+			task.error = new CancellationException("scheduler is shut down");
+			task.done = true;
+			task.locker.notifyAll();
+		}
+		liveTasks.remove(task);
+		live.decrementAndGet();
+	}
+
+	/**
+	 * stop carrier threads. queued and parked tasks are not run anymore, they
+	 * are done with a CancellationException as error once a running slice
+	 * ends, so join() returns.
+	 */
+	public void shutdown() {
+		shutdown = true;
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+		queue.clear();
+		for (Task<?> task : liveTasks) {
+			cancel(task);
+		}
+	}
+
+	public boolean isShutdown() {
+		return shutdown;
+	}
+
+	public Fairness getFairness() {
+		return fairness;
+	}
+
+	public int getTimeSlice() {
+		return timeSlice;
+	}
+
+	public int getWorkerCount() {
+		return workers.length;
+	}
+
+	/**
+	 * count of scheduled tasks which are not done, including parked ones
+	 */
+	public int getLiveCount() {
+		return live.get();
+	}
+
+	/**
+	 * count of tasks waiting in run queue
+	 */
+	public int getQueuedCount() {
+		return queue.size();
+	}
+
+	public long getInstructionCount() {
+		return instructions.get();
+	}
+
+	public long getYieldCount() {
+		return yields.get();
+	}
+
+	public long getSliceCount() {
+		return slices.get();
+	}
+
+	public long getCompletedCount() {
+		return completed.get();
+	}
+
+	/**
+	 * executed instructions per second since the scheduler was created
+	 */
+	public double getThroughput() {
+		long elapsed = System.nanoTime() - startTime;
+		if (elapsed <= 0) {
+			return 0;
+		}
+		return instructions.get() * 1e9 / elapsed;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CoroutineScheduler[%s, workers=%d, live=%d, queued=%d, instructions=%d, yields=%d, completed=%d]",
+				fairness, workers.length, getLiveCount(), getQueuedCount(), getInstructionCount(), getYieldCount(),
+				getCompletedCount());
+	}
+}
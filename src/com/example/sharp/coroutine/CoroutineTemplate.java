@@ -0,0 +1,216 @@
+package com.example.sharp.coroutine;
+
+import com.example.sharp.Delegates;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * immutable, shareable program of a coroutine. the program is built once,
+ * runnable instances are checked out by acquire() and given back by release(),
+ * which reset() them for reuse without reallocating.
+ *
+ * since every instance runs the same instructions, per-run state must live
+ * in the coroutine (slots, see Coroutine.declareSlot(), or globals) rather
+ * than in variables captured by the instructions. loops of the program keep
+ * their state in slots when built by Foreach(Iterable), While(Func1),
+ * For(init, Func1, step) or For(counter, from, to, step); Foreach(Iterator),
+ * While(Func) and For(init, Func, step) capture it and are rejected.
+ *
+ * <pre>
+ * CoroutineTemplate range = new CoroutineTemplate((cor) -> {
+ * 	cor.For("i", 0, 100, 1).run((ctx, i) -> ctx.yield(i));
+ * });
+ * for (Integer i : range.&lt;Integer&gt;iterable()) {
+ * 	...
+ * }
+ * </pre>
+ *
+ * frames pushed while an instance runs (e.g. a For inside a loop body) are
+ * reused by later pushes of the same instance, so references to such frames
+ * must not be kept after they finish.
+ */
+public class CoroutineTemplate {
+	/**
+	 * snapshot of a frame built by the program
+	 */
+	static class Frame {
+		final String name;
+		final Coroutine.State state;
+		final Vector<Delegates.Action1<Coroutine>> instructions;
+		final Delegates.Action1<Coroutine>[] code;
+		final Hashtable<String, Integer> labels;
+		final HashMap<String, Integer> slotNames;
+		final int slotCount;
+		final Object[] slots;
+		final int[] intSlots;
+		final long[] longSlots;
+		final double[] doubleSlots;
+
+		Frame(Coroutine frame) {
+			if (!frame.isCompiled()) {
+				frame.compile();
+			}
+			name = frame.name;
+			state = frame.state;
+			instructions = frame.instructions;
+			code = Arrays.copyOf(frame.code, frame.codeLength);
+			labels = frame.labels;
+			slotNames = frame.slotNames;
+			slotCount = frame.slotCount;
+			slots = Arrays.copyOf(frame.slots, slotCount);
+			intSlots = Arrays.copyOf(frame.intSlots, slotCount);
+			longSlots = Arrays.copyOf(frame.longSlots, slotCount);
+			doubleSlots = Arrays.copyOf(frame.doubleSlots, slotCount);
+		}
+	}
+
+	final Frame[] frames;
+	final ArrayDeque<Coroutine> pool = new ArrayDeque<Coroutine>();
+	final int maxPoolSize;
+	final AtomicLong created = new AtomicLong();
+	final AtomicLong reused = new AtomicLong();
+
+	/**
+	 * build a template, pooling up to 64 idle instances
+	 *
+	 * @param program action which adds instructions to a new coroutine
+	 */
+	public CoroutineTemplate(Delegates.Action1<Coroutine> program) {
+		this(program, 64);
+	}
+
+	/**
+	 * build a template
+	 *
+	 * @param program     action which adds instructions to a new coroutine
+	 * @param maxPoolSize maximal count of idle instances kept by release()
+	 * @throws IllegalArgumentException if the program has a loop keeping its
+	 *                                  state in captured objects
+	 */
+	public CoroutineTemplate(Delegates.Action1<Coroutine> program, int maxPoolSize) {
+		this.maxPoolSize = maxPoolSize;
+		Coroutine cor = new Coroutine();
+		program.Invoke(cor);
+		int count = 0;
+		for (Coroutine frame = cor; frame != null; frame = frame.next) {
+			if (frame.capturesState) {
+				throw new IllegalArgumentException("loop frame " + count
+						+ " keeps its state in captured objects and would be shared by all instances,"
+						+ " use Foreach(Iterable), While(Func1) or For(init, Func1, step)");
+			}
+			++count;
+		}
+		frames = new Frame[count];
+		int i = 0;
+		for (Coroutine frame = cor; frame != null; frame = frame.next) {
+			frames[i++] = new Frame(frame);
+		}
+	}
+
+	/**
+	 * check out an instance in its initial state
+	 *
+	 * @return instance, give it back by release() when done
+	 */
+	public Coroutine acquire() {
+		Coroutine cor;
+		synchronized (pool) {
+			cor = pool.poll();
+		}
+		if (cor != null) {
+			reused.incrementAndGet();
+			return cor;
+		}
+		created.incrementAndGet();
+		Coroutine[] chain = new Coroutine[frames.length];
+		for (int i = 0; i < frames.length; ++i) {
+			chain[i] = new Coroutine(frames[i]);
+		}
+		Coroutine root = chain[0];
+		root.template = this;
+		root.chain = chain;
+		root.reset();
+		return root;
+	}
+
+	/**
+	 * give back an instance from acquire(), it is reset and kept for the next
+	 * acquire() unless the pool is full.
+	 *
+	 * @param cor instance
+	 */
+	public void release(Coroutine cor) {
+		if (cor == null || cor.template != this) {
+			return;
+		}
+		cor.reset();
+		cor.cancellation = null;
+		synchronized (pool) {
+			if (pool.size() < maxPoolSize) {
+				pool.push(cor);
+			}
+		}
+	}
+
+	/**
+	 * iterable whose every iterator runs an instance from acquire(), the
+	 * instance is released once the iterator is exhausted.
+	 *
+	 * @param <T>
+	 * @return
+	 */
+	public <T> Delegates.IterableEx<T> iterable() {
+		Iterable<T> ret = () -> new Iterator<T>() {
+			Coroutine cor = acquire();
+			Iterator<T> iterator = cor.iterator();
+
+			@Override
+			public boolean hasNext() {
+				if (cor == null) {
+					return false;
+				}
+				if (iterator.hasNext()) {
+					return true;
+				}
+				release(cor);
+				cor = null;
+				return false;
+			}
+
+			@Override
+			public T next() {
+				return iterator.next();
+			}
+		};
+		return Delegates.forall(ret);
+	}
+
+	/**
+	 * @return count of idle instances in pool
+	 */
+	public int getPooledCount() {
+		synchronized (pool) {
+			return pool.size();
+		}
+	}
+
+	/**
+	 * @return count of instances created by acquire()
+	 */
+	public long getCreatedCount() {
+		return created.get();
+	}
+
+	/**
+	 * @return count of acquire() served from pool
+	 */
+	public long getReusedCount() {
+		return reused.get();
+	}
+}
@@ -0,0 +1,32 @@
+package com.example.sharp.coroutine;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * double generator over a coroutine which yields by yieldDouble(), no value is boxed
+ * while iterating.
+ *
+ * <pre>
+ * Coroutine cor = new Coroutine();
+ * cor.For("i", 0, 10, 1).run((ctx, i) -&gt; ctx.yieldDouble(i));
+ * cor.start();
+ * DoubleGenerator gen = new DoubleGenerator(cor);
+ * while (gen.hasNext()) {
+ * 	double value = gen.nextDouble();
+ * }
+ * </pre>
+ */
+public class DoubleGenerator extends PrimitiveGenerator implements PrimitiveIterator.OfDouble {
+
+	public DoubleGenerator(Coroutine coroutine) {
+		super(coroutine);
+	}
+
+	@Override
+	public double nextDouble() {
+		prepare();
+		double ret = coroutine.getYieldDouble();
+		advance();
+		return ret;
+	}
+}
@@ -0,0 +1,102 @@
+package com.example.sharp.coroutine;
+
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * base of state machine iterators written by GeneratorProcessor for
+ * {@code @Generator} methods. advance() runs the generator body from the
+ * current state to its next yield, no instruction is interpreted.
+ *
+ * @param <T> element type
+ */
+public abstract class GeneratedIterator<T> implements Iterator<T> {
+	/**
+	 * resume point of advance(), -1 once finished
+	 */
+	protected int state;
+	/**
+	 * value of the last yield
+	 */
+	protected T current;
+	private boolean ready;
+	private boolean done;
+
+	/**
+	 * run to next yield
+	 *
+	 * @return true if current holds a yielded value, false when body finished
+	 */
+	protected abstract boolean advance();
+
+	@Override
+	public boolean hasNext() {
+		if (!ready && !done) {
+			if (advance()) {
+				ready = true;
+			} else {
+				done = true;
+				state = -1;
+			}
+		}
+		return ready;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		ready = false;
+		T ret = current;
+		current = null;
+		return ret;
+	}
+
+	/**
+	 * iterator of an enhanced for loop source
+	 */
+	public static <T> Iterator<T> iterate(Iterable<T> iterable) {
+		return iterable.iterator();
+	}
+
+	/**
+	 * iterator of an enhanced for loop source
+	 */
+	public static <T> Iterator<T> iterate(T[] array) {
+		return new Iterator<T>() {
+			int idx = 0;
+
+			@Override
+			public boolean hasNext() {
+				return idx < array.length;
+			}
+
+			@Override
+			public T next() {
+				return array[idx++];
+			}
+		};
+	}
+
+	/**
+	 * iterator of an enhanced for loop over primitive array
+	 */
+	public static Iterator<Object> iterate(Object array) {
+		return new Iterator<Object>() {
+			int len = Array.getLength(array);
+			int idx = 0;
+
+			@Override
+			public boolean hasNext() {
+				return idx < len;
+			}
+
+			@Override
+			public Object next() {
+				return Array.get(array, idx++);
+			}
+		};
+	}
+}
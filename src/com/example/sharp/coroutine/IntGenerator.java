@@ -0,0 +1,32 @@
+package com.example.sharp.coroutine;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * int generator over a coroutine which yields by yieldInt(), no value is boxed
+ * while iterating.
+ *
+ * <pre>
+ * Coroutine cor = new Coroutine();
+ * cor.For("i", 0, 10, 1).run((ctx, i) -&gt; ctx.yieldInt(i));
+ * cor.start();
+ * IntGenerator gen = new IntGenerator(cor);
+ * while (gen.hasNext()) {
+ * 	int value = gen.nextInt();
+ * }
+ * </pre>
+ */
+public class IntGenerator extends PrimitiveGenerator implements PrimitiveIterator.OfInt {
+
+	public IntGenerator(Coroutine coroutine) {
+		super(coroutine);
+	}
+
+	@Override
+	public int nextInt() {
+		prepare();
+		int ret = coroutine.getYieldInt();
+		advance();
+		return ret;
+	}
+}
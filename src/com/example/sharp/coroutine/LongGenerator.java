@@ -0,0 +1,32 @@
+package com.example.sharp.coroutine;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * long generator over a coroutine which yields by yieldLong(), no value is boxed
+ * while iterating.
+ *
+ * <pre>
+ * Coroutine cor = new Coroutine();
+ * cor.For("i", 0, 10, 1).run((ctx, i) -&gt; ctx.yieldLong(i));
+ * cor.start();
+ * LongGenerator gen = new LongGenerator(cor);
+ * while (gen.hasNext()) {
+ * 	long value = gen.nextLong();
+ * }
+ * </pre>
+ */
+public class LongGenerator extends PrimitiveGenerator implements PrimitiveIterator.OfLong {
+
+	public LongGenerator(Coroutine coroutine) {
+		super(coroutine);
+	}
+
+	@Override
+	public long nextLong() {
+		prepare();
+		long ret = coroutine.getYieldLong();
+		advance();
+		return ret;
+	}
+}
@@ -0,0 +1,289 @@
+package com.example.sharp.coroutine;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Vector;
+
+import com.example.sharp.Delegates;
+import com.example.sharp.Dictionary;
+import com.example.sharp.LinkedList;
+
+/**
+ * IterableEx stage whose translate/filter chain runs on Parallelx workers,
+ * usage:
+ *
+ * <pre>
+ * ArrayList&lt;String&gt; names = Delegates.forall(records).parallel()
+ * 		.filter((r) -&gt; r.active)
+ * 		.translate((r) -&gt; r.name)
+ * 		.toArrayList();
+ * </pre>
+ *
+ * random access sources (arrays from Delegates.forall, ArrayList, Vector) are
+ * cut into index chunks, other sources are read in batches by the workers
+ * taking turns on the shared iterator. every chunk is filtered and
+ * translated by one worker, terminal operations merge the chunk results in
+ * source order, so toArrayList() keeps the sequential order. stages are
+ * evaluated again by every terminal operation, the functions must be safe to
+ * call from several threads.
+ */
+public class ParallelIterable<T> implements Delegates.IterableEx<T> {
+	/**
+	 * pipeline result of filtered items
+	 */
+	static final Object SKIP = new Object();
+	public static Integer DefaultBatchSize = 1024;
+
+	final Iterable<?> source;
+	final Delegates.Func1<Object, Object> pipeline;
+	final Parallelx.ParallelForScheduler scheduler;
+	final int chunkSize;
+
+	ParallelIterable(Iterable<?> source, Delegates.Func1<Object, Object> pipeline,
+					 Parallelx.ParallelForScheduler scheduler, int chunkSize) {
+		this.source = source;
+		this.pipeline = pipeline;
+		this.scheduler = scheduler;
+		this.chunkSize = chunkSize;
+	}
+
+	public static <T> ParallelIterable<T> of(Iterable<T> source) {
+		if (source instanceof ParallelIterable) {
+			return (ParallelIterable<T>) source;
+		}
+		return new ParallelIterable<T>(source, null, Parallelx.ParallelForScheduler.WorkStealing, 0);
+	}
+
+	/**
+	 * @param scheduler
+	 *            partitioning of the chunks, WorkStealing by default
+	 */
+	public ParallelIterable<T> withScheduler(Parallelx.ParallelForScheduler scheduler) {
+		return new ParallelIterable<T>(source, pipeline, scheduler, chunkSize);
+	}
+
+	/**
+	 * @param chunkSize
+	 *            items per chunk, 0 picks size / (8 * Concurrency) for random
+	 *            access sources and DefaultBatchSize for others
+	 */
+	public ParallelIterable<T> withChunkSize(int chunkSize) {
+		return new ParallelIterable<T>(source, pipeline, scheduler, chunkSize);
+	}
+
+	@Override
+	public ParallelIterable<T> parallel() {
+		return this;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T2> ParallelIterable<T2> translate(Delegates.Func1<T, T2> translator) {
+		Delegates.Func1<Object, Object> previous = pipeline;
+		return new ParallelIterable<T2>(source, (value) -> {
+			if (previous != null) {
+				value = previous.Invoke(value);
+				if (value == SKIP) {
+					return SKIP;
+				}
+			}
+			return translator.Invoke((T) value);
+		}, scheduler, chunkSize);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public ParallelIterable<T> filter(Delegates.Func1<T, Boolean> accept) {
+		Delegates.Func1<Object, Object> previous = pipeline;
+		return new ParallelIterable<T>(source, (value) -> {
+			if (previous != null) {
+				value = previous.Invoke(value);
+				if (value == SKIP) {
+					return SKIP;
+				}
+			}
+			return accept.Invoke((T) value) ? value : SKIP;
+		}, scheduler, chunkSize);
+	}
+
+	/**
+	 * run the stages over every chunk, folding chunk outputs into
+	 * accumulators created by seed
+	 *
+	 * @return accumulators of all chunks in source order
+	 */
+	@SuppressWarnings("unchecked")
+	public <R> ArrayList<R> aggregateChunks(Delegates.Func<R> seed, Delegates.Func2<R, T, R> accumulate) {
+		ArrayList<R> ret = new ArrayList<R>();
+		if (source instanceof List && source instanceof RandomAccess) {
+			List<Object> list = (List<Object>) source;
+			int size = list.size();
+			int chunk = chunkSize > 0 ? chunkSize : Math.max(64, size / (Parallelx.Concurrency * 8));
+			int chunks = (int) (((long) size + chunk - 1) / chunk);
+			Object[] results = new Object[chunks];
+			Vector<AsyncTask> tasks = Parallelx.For(0, chunks, (int c, int worker) -> {
+				R accumulator = seed.Invoke();
+				int end = (int) Math.min(size, (long) (c + 1) * chunk);
+				for (int i = c * chunk; i < end; ++i) {
+					Object value = apply(list.get(i));
+					if (value != SKIP) {
+						accumulator = accumulate.Invoke(accumulator, (T) value);
+					}
+				}
+				results[c] = accumulator;
+			}, true, scheduler);
+			Parallelx.ThrowIfFault(tasks, "ParallelIterable");
+			for (Object result : results) {
+				ret.add((R) result);
+			}
+			return ret;
+		}
+		Iterator<Object> iterator = (Iterator<Object>) source.iterator();
+		int batchSize = chunkSize > 0 ? chunkSize : DefaultBatchSize;
+		Hashtable<Integer, Object> results = new Hashtable<Integer, Object>();
+		int[] batches = new int[1];
+		Vector<AsyncTask> tasks = Parallelx.For(0, Parallelx.Concurrency, (int w, int worker) -> {
+			ArrayList<Object> batch = new ArrayList<Object>(batchSize);
+			while (true) {
+				int index;
+				batch.clear();
+				synchronized (batches) {
+					if (iterator instanceof Delegates.IteratorEx) {
+						((Delegates.IteratorEx<Object>) iterator).drainTo(batch, batchSize);
+					} else {
+						while (batch.size() < batchSize && iterator.hasNext()) {
+							batch.add(iterator.next());
+						}
+					}
+					if (batch.isEmpty()) {
+						break;
+					}
+					index = batches[0]++;
+				}
+				R accumulator = seed.Invoke();
+				for (int i = 0; i < batch.size(); ++i) {
+					Object value = apply(batch.get(i));
+					if (value != SKIP) {
+						accumulator = accumulate.Invoke(accumulator, (T) value);
+					}
+				}
+				results.put(index, accumulator);
+			}
+		}, true, scheduler);
+		Parallelx.ThrowIfFault(tasks, "ParallelIterable");
+		for (int i = 0; i < batches[0]; ++i) {
+			ret.add((R) results.get(i));
+		}
+		return ret;
+	}
+
+	Object apply(Object value) {
+		return pipeline == null ? value : pipeline.Invoke(value);
+	}
+
+	@Override
+	public ArrayList<T> toArrayList() {
+		ArrayList<ArrayList<T>> chunks = aggregateChunks(() -> new ArrayList<T>(), (list, value) -> {
+			list.add(value);
+			return list;
+		});
+		int size = 0;
+		for (ArrayList<T> chunk : chunks) {
+			size += chunk.size();
+		}
+		ArrayList<T> ret = new ArrayList<T>(size);
+		for (ArrayList<T> chunk : chunks) {
+			ret.addAll(chunk);
+		}
+		return ret;
+	}
+
+	@Override
+	public Vector<T> toVector() {
+		return new Vector<T>(toArrayList());
+	}
+
+	@Override
+	public T[] toArray() {
+		return Delegates.toArray(toArrayList());
+	}
+
+	@Override
+	public LinkedList<T> toList() {
+		return Delegates.tolist(toArrayList());
+	}
+
+	/**
+	 * groups are built per chunk and merged in source order, items of a group
+	 * keep their sequential order. null keys are dropped like in
+	 * Delegates.groupBy.
+	 */
+	@Override
+	public <K> Dictionary<K, Vector<T>> group(Delegates.Func1<T, K> transform) {
+		ArrayList<LinkedHashMap<K, Vector<T>>> chunks = aggregateChunks(() -> new LinkedHashMap<K, Vector<T>>(),
+				(groups, value) -> {
+					K key = transform.Invoke(value);
+					if (key != null) {
+						groups.computeIfAbsent(key, (k) -> new Vector<T>()).add(value);
+					}
+					return groups;
+				});
+		Dictionary<K, Vector<T>> ret = new Dictionary<K, Vector<T>>();
+		for (LinkedHashMap<K, Vector<T>> groups : chunks) {
+			for (Map.Entry<K, Vector<T>> group : groups.entrySet()) {
+				if (ret.ContainsKey(group.getKey())) {
+					ret.get(group.getKey()).addAll(group.getValue());
+				} else {
+					ret.set(group.getKey(), group.getValue());
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * chunks are reduced in parallel and their results in source order, so
+	 * reduceFnc must be associative. called like Delegates.reduce as
+	 * reduceFnc(next, accumulated).
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public T reduce(Delegates.Func2<T, T, T> reduceFnc) {
+		ArrayList<Object[]> chunks = aggregateChunks(() -> new Object[1], (holder, value) -> {
+			holder[0] = holder[0] == null ? value : reduceFnc.Invoke(value, (T) holder[0]);
+			return holder;
+		});
+		T ret = null;
+		for (Object[] holder : chunks) {
+			T value = (T) holder[0];
+			if (value == null) {
+				continue;
+			}
+			ret = ret == null ? value : reduceFnc.Invoke(value, ret);
+		}
+		return ret;
+	}
+
+	@Override
+	public <V> Dictionary<T, V> map(Delegates.Func1<T, V> transform, Delegates.Func1<T, Boolean> accept) {
+		return Delegates.map(toArrayList(), transform, accept);
+	}
+
+	@Override
+	public Delegates.IterableEx<T> merge(Iterable<T> concat) {
+		return Delegates.forall(toArrayList(), concat);
+	}
+
+	/**
+	 * runs the stages and iterates their results
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return Delegates.iterator(toArrayList());
+	}
+}
@@ -1,9 +1,20 @@
 package com.example.sharp.coroutine;
 
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
-import com.example.Locked;
 import com.example.sharp.Delegates;
 
 /**
@@ -16,7 +27,49 @@ import com.example.sharp.Delegates;
  */
 public class Parallelx {
 	public static enum ParallelForScheduler {
-		Blocked, Cyclic, RuntimeLoadBalance
+		Blocked, Cyclic, RuntimeLoadBalance,
+		/**
+		 * ranges are split in halves on the shared pool of
+		 * getWorkStealingPool(), idle workers steal halves from busy ones. no
+		 * thread is created per loop.
+		 */
+		WorkStealing
+	}
+
+	/**
+	 * loop body receiving index and worker id without boxing
+	 */
+	public static interface IntAction {
+		public void Invoke(int index, int worker);
+	}
+
+	/**
+	 * loop body receiving a whole sub-range [from, to), its inner loop runs
+	 * without boxing and may be vectorized
+	 */
+	public static interface LongRangeAction {
+		public void Invoke(long from, long to, int worker);
+	}
+
+	/**
+	 * folds sub-range [from, to) into the accumulator of a worker
+	 *
+	 * @return new accumulator, may be the given one when it is mutable
+	 */
+	public static interface RangeAggregator<A> {
+		public A Invoke(A accumulator, long from, long to);
+	}
+
+	public static interface IntIndexFunc {
+		public int Invoke(int index);
+	}
+
+	public static interface LongIndexFunc {
+		public long Invoke(int index);
+	}
+
+	public static interface DoubleIndexFunc {
+		public double Invoke(int index);
 	}
 
 	private void WaitForAsyncTasks(Vector<AsyncTask> tasks, boolean wait) {
@@ -27,50 +80,258 @@ public class Parallelx {
 		}
 	}
 
+	/**
+	 * rethrow failure of a joined loop
+	 *
+	 * @throws RuntimeException
+	 *             with FaultReason of the first failed task as cause
+	 */
+	static void ThrowIfFault(Vector<AsyncTask> tasks, String what) {
+		for (AsyncTask task : tasks) {
+			if (task.IsFault) {
+				throw new RuntimeException(what + " worker failed", task.FaultReason);
+			}
+		}
+	}
+
+	/**
+	 * cancellation of one loop, cancelled by the caller's source or by
+	 * StopAsync() of any task of the loop. the workers check it before every
+	 * index or sub-range, it is unlinked from the caller's source when the
+	 * last worker ends. the caller's flag is read as well, so setting
+	 * IsCancellationRequested on it without Cancel() stops the loop too.
+	 */
+	static class LoopCancellation {
+		final CancellationTokenSource source;
+		final CancellationTokenSource caller;
+		/**
+		 * running workers, plus one held by the thread starting them
+		 */
+		final AtomicInteger workers = new AtomicInteger(1);
+
+		LoopCancellation(CancellationTokenSource cancellationSource) {
+			source = CancellationTokenSource.CreateLinkedTokenSource(cancellationSource);
+			caller = cancellationSource;
+		}
+
+		boolean isCancelled() {
+			return source.IsCancellationRequested || (caller != null && caller.IsCancellationRequested);
+		}
+
+		/**
+		 * count task as worker, its StopAsync() cancels the loop
+		 */
+		void Attach(AsyncTask task) {
+			workers.incrementAndGet();
+			task.SetCancellation(source);
+		}
+
+		void Leave() {
+			if (workers.decrementAndGet() == 0) {
+				source.Dispose();
+			}
+		}
+	}
+
 	public static Integer Concurrency = Runtime.getRuntime().availableProcessors();
 
+	/**
+	 * how RuntimeLoadBalance workers size the index chunks they take from the
+	 * shared counter
+	 */
+	public static enum ChunkPolicy {
+		/**
+		 * every chunk has chunkSize indexes
+		 */
+		Dynamic,
+		/**
+		 * chunks of remaining / (2 * threads) indexes, shrinking as the loop
+		 * runs out of work, but not below chunkSize
+		 */
+		Guided
+	}
+
+	public static ChunkPolicy DefaultChunkPolicy = ChunkPolicy.Guided;
+	public static Integer DefaultChunkSize = 1;
+
 	public Vector<AsyncTask> RuntimeLoadBalanceFor(Integer lowerBound, Integer upperBound,
 												   Delegates.Action3<Integer, CancellationTokenSource, Integer> action, CancellationTokenSource cancellationSource,
 												   boolean wait) {
+		return RuntimeLoadBalanceFor(lowerBound, upperBound, action, cancellationSource, DefaultChunkPolicy,
+				DefaultChunkSize, wait);
+	}
+
+	/**
+	 * workers take chunks of indexes from a shared atomic counter until the
+	 * range is used up
+	 *
+	 * @param policy
+	 *            chunk sizing
+	 * @param chunkSize
+	 *            chunk size of Dynamic, minimum chunk size of Guided
+	 */
+	public Vector<AsyncTask> RuntimeLoadBalanceFor(Integer lowerBound, Integer upperBound,
+												   Delegates.Action3<Integer, CancellationTokenSource, Integer> action, CancellationTokenSource cancellationSource,
+												   ChunkPolicy policy, Integer chunkSize, boolean wait) {
+		LoopCancellation loop = new LoopCancellation(cancellationSource);
+		LongRangeAction rangeProxy = (long from, long to, int worker) -> {
+			for (long i = from; i < to; ++i) {
+				if (loop.isCancelled()) {
+					break;
+				}
+				action.Invoke((int) i, cancellationSource, worker);
+			}
+		};
+		return LoadBalanceRanges(lowerBound, upperBound, rangeProxy, loop, policy, chunkSize, wait);
+	}
+
+	private Vector<AsyncTask> LoadBalanceRanges(long lowerBound, long upperBound, LongRangeAction action,
+			LoopCancellation loop, ChunkPolicy policy, long chunkSize, boolean wait) {
 		Vector<AsyncTask> ret = new Vector<AsyncTask>();
-		Object locker = new Object();
-		final Locked<Integer> sharedIdx = new Locked<>(lowerBound);
-		Integer threadCount = Concurrency;
-		for (Integer i = 0; i < threadCount; ++i) {
-			final Integer _i = i;
+		final AtomicLong sharedIdx = new AtomicLong(lowerBound);
+		final long end = upperBound;
+		final long minChunk = Math.max(1, chunkSize);
+		int threadCount = Concurrency;
+		for (int i = 0; i < threadCount; ++i) {
+			final int _i = i;
 			AsyncTask task = new AsyncTask(() ->
 
 			{
-				Integer load = lowerBound;
-				while (true) {
-					if (cancellationSource != null && cancellationSource.IsCancellationRequested) {
-						// cancelled
-						break;
-					}
-					// fetch next load
-					synchronized (locker) {
-						load = sharedIdx.get();
-						sharedIdx.set(load + 1);
-					}
-					if (load >= upperBound) {
-						break;
-					}
-					// consume load
-					action.Invoke(load, cancellationSource, _i);
+				try {
+					LoadBalanceRunner(sharedIdx, end, minChunk, policy, threadCount, action, _i, loop);
+				} finally {
+					loop.Leave();
 				}
 			});
+			loop.Attach(task);
 			task.Start(false);
 			ret.add(task);
 		}
+		loop.Leave();
+		WaitForAsyncTasks(ret, wait);
+		return ret;
+	}
+
+	/**
+	 * worker takes chunks from sharedIdx until the range is used up
+	 */
+	private static void LoadBalanceRunner(AtomicLong sharedIdx, long end, long minChunk, ChunkPolicy policy,
+			int threadCount, LongRangeAction action, int worker, LoopCancellation loop) {
+		while (true) {
+			if (loop.isCancelled()) {
+				// cancelled
+				break;
+			}
+			// fetch next chunk
+			long from;
+			long to;
+			if (policy == ChunkPolicy.Dynamic) {
+				from = sharedIdx.getAndAdd(minChunk);
+				if (from >= end) {
+					break;
+				}
+				to = Math.min(from + minChunk, end);
+			} else {
+				from = sharedIdx.get();
+				if (from >= end) {
+					break;
+				}
+				to = Math.min(from + Math.max(minChunk, (end - from) / (2 * threadCount)), end);
+				if (!sharedIdx.compareAndSet(from, to)) {
+					continue;
+				}
+			}
+			// consume chunk
+			action.Invoke(from, to, worker);
+		}
+	}
+
+	/**
+	 * worker runs sub-ranges of chunk indexes starting at start, stride apart
+	 */
+	private static void RangeRunner(long start, long end, long chunk, long stride, LongRangeAction action, int worker,
+			LoopCancellation loop) {
+		for (long lo = start; lo < end; lo += stride) {
+			if (loop.isCancelled()) {
+				break;
+			}
+			action.Invoke(lo, Math.min(lo + chunk, end), worker);
+		}
+	}
+
+	/**
+	 * run range bodies over [lowerBound, upperBound), each call gets a
+	 * sub-range of about grain indexes. Blocked gives every worker one block
+	 * in grain sized pieces, Cyclic deals grain sized pieces round robin,
+	 * RuntimeLoadBalance takes them by DefaultChunkPolicy with grain as chunk
+	 * size, WorkStealing splits ranges down to grain.
+	 *
+	 * @param grain
+	 *            sub-range length, 0 picks length / (16 * Concurrency)
+	 */
+	public Vector<AsyncTask> RangeFor(long lowerBound, long upperBound, long grain, LongRangeAction action,
+			CancellationTokenSource cancellationSource, boolean wait, ParallelForScheduler scheduler) {
+		return LoopRangeFor(lowerBound, upperBound, grain, action, new LoopCancellation(cancellationSource), wait,
+				scheduler);
+	}
+
+	private Vector<AsyncTask> LoopRangeFor(long lowerBound, long upperBound, long grain, LongRangeAction action,
+			LoopCancellation loop, boolean wait, ParallelForScheduler scheduler) {
+		upperBound = Math.max(lowerBound, upperBound);
+		int threadCount = Concurrency;
+		long length = upperBound - lowerBound;
+		long chunk = grain > 0 ? grain : Math.max(1, length / (threadCount * 16L));
+		if (scheduler == ParallelForScheduler.RuntimeLoadBalance) {
+			return LoadBalanceRanges(lowerBound, upperBound, action, loop, DefaultChunkPolicy, chunk, wait);
+		}
+		Vector<AsyncTask> ret = new Vector<AsyncTask>();
+		if (scheduler == ParallelForScheduler.WorkStealing) {
+			RangeTask task = new RangeTask(null, lowerBound, upperBound, chunk, action, loop);
+			WorkStealingTask view = new WorkStealingTask(task);
+			view.SetCancellation(loop.source);
+			ret.add(view);
+			getWorkStealingPool().execute(task);
+			WaitForAsyncTasks(ret, wait);
+			return ret;
+		}
+		final long _lowerBound = lowerBound;
+		final long _upperBound = upperBound;
+		for (int i = 0; i < threadCount; ++i) {
+			final int _i = i;
+			AsyncTask task;
+			if (scheduler == ParallelForScheduler.Cyclic) {
+				task = new AsyncTask(() -> {
+					try {
+						RangeRunner(_lowerBound + _i * chunk, _upperBound, chunk, threadCount * chunk, action, _i, loop);
+					} finally {
+						loop.Leave();
+					}
+				});
+			} else {
+				final long start = _lowerBound + length / threadCount * _i + Math.min(_i, length % threadCount);
+				final long end = start + length / threadCount + (_i < length % threadCount ? 1 : 0);
+				task = new AsyncTask(() -> {
+					try {
+						RangeRunner(start, end, chunk, chunk, action, _i, loop);
+					} finally {
+						loop.Leave();
+					}
+				});
+			}
+			loop.Attach(task);
+			task.Start(false);
+			ret.add(task);
+		}
+		loop.Leave();
 		WaitForAsyncTasks(ret, wait);
 		return ret;
 	}
 
 	private void BlockedParitionRunner(Integer start, Integer end,
 									   Delegates.Action3<Integer, CancellationTokenSource, Integer> action, Integer threadid,
-									   CancellationTokenSource cancellationSource) {
+									   CancellationTokenSource cancellationSource, LoopCancellation loop) {
 		for (Integer i = start; i < end; ++i) {
-			if (cancellationSource != null && cancellationSource.IsCancellationRequested) {
+			if (loop.isCancelled()) {
 				break;
 			}
 			action.Invoke(i, cancellationSource, threadid);
@@ -79,9 +340,9 @@ public class Parallelx {
 
 	private void CyclicParitionRunner(Integer start, Integer end, Integer step,
 									  Delegates.Action3<Integer, CancellationTokenSource, Integer> action, Integer threadid,
-									  CancellationTokenSource cancellationSource) {
+									  CancellationTokenSource cancellationSource, LoopCancellation loop) {
 		for (Integer i = start; i < end; i += step) {
-			if (cancellationSource != null && cancellationSource.IsCancellationRequested) {
+			if (loop.isCancelled()) {
 				break;
 			}
 			action.Invoke(i, cancellationSource, threadid);
@@ -97,6 +358,7 @@ public class Parallelx {
 		if (len % threadCount > 0) {
 			partLen += 1;
 		}
+		LoopCancellation loop = new LoopCancellation(cancellationSource);
 		Vector<AsyncTask> ret = new Vector<AsyncTask>();
 		for (Integer i = 0; i < threadCount; ++i) {
 			Integer start = lowerBound + i;
@@ -104,7 +366,11 @@ public class Parallelx {
 			AsyncTask.ThisAction actionTask = new AsyncTask.ThisAction() {
 				public void Invoke(AsyncTask task) {
 					Integer id = (Integer) task.DynamicFields.get("ID");
-					CyclicParitionRunner(start, end, threadCount, action, id, cancellationSource);
+					try {
+						CyclicParitionRunner(start, end, threadCount, action, id, cancellationSource, loop);
+					} finally {
+						loop.Leave();
+					}
 				}
 
 				@Override
@@ -114,9 +380,11 @@ public class Parallelx {
 			};
 			AsyncTask thread = new AsyncTask(actionTask);
 			thread.DynamicFields.put("ID", i);
+			loop.Attach(thread);
 			thread.Start(false);
 			ret.add(thread);
 		}
+		loop.Leave();
 		WaitForAsyncTasks(ret, wait);
 		return ret;
 	}
@@ -130,6 +398,7 @@ public class Parallelx {
 		if (len % threadCount > 0) {
 			partLen += 1;
 		}
+		LoopCancellation loop = new LoopCancellation(cancellationSource);
 		Vector<AsyncTask> ret = new Vector<AsyncTask>();
 		for (Integer i = 0; i < threadCount; ++i) {
 			Integer start = lowerBound + i * partLen;
@@ -138,11 +407,15 @@ public class Parallelx {
 				end = upperBound;
 			}
 			final Integer _start = start;
-			final Integer _end = start;
+			final Integer _end = end;
 			AsyncTask.ThisAction actionTask = new AsyncTask.ThisAction() {
 				public void Invoke(AsyncTask task) {
 					Integer id = (Integer) task.DynamicFields.get("ID");
-					BlockedParitionRunner(_start, _end, action, id, cancellationSource);
+					try {
+						BlockedParitionRunner(_start, _end, action, id, cancellationSource, loop);
+					} finally {
+						loop.Leave();
+					}
 				}
 
 				@Override
@@ -152,13 +425,233 @@ public class Parallelx {
 			};
 			AsyncTask thread = new AsyncTask(actionTask);
 			thread.DynamicFields.put("ID", i);
+			loop.Attach(thread);
 			thread.Start(false);
 			ret.add(thread);
 		}
+		loop.Leave();
 		WaitForAsyncTasks(ret, wait);
 		return ret;
 	}
 
+	/**
+	 * worker of the WorkStealing pool, id is its thread id passed to loop
+	 * bodies
+	 */
+	static class WorkStealingThread extends ForkJoinWorkerThread {
+		static final Object idLocker = new Object();
+		static final BitSet ids = new BitSet();
+		final int id;
+
+		WorkStealingThread(ForkJoinPool pool) {
+			super(pool);
+			synchronized (idLocker) {
+				id = ids.nextClearBit(0);
+				ids.set(id);
+			}
+			setName("Parallelx-" + id);
+			setDaemon(true);
+		}
+
+		@Override
+		protected void onTermination(Throwable exception) {
+			synchronized (idLocker) {
+				ids.clear(id);
+			}
+			super.onTermination(exception);
+		}
+	}
+
+	private static volatile ForkJoinPool workStealingPool;
+
+	/**
+	 * pool of WorkStealing loops, created on first use with Concurrency
+	 * workers. thread ids passed to loop bodies are below its parallelism
+	 * unless nested loops make the pool add spare workers.
+	 *
+	 * @return shared pool
+	 */
+	public static ForkJoinPool getWorkStealingPool() {
+		ForkJoinPool pool = workStealingPool;
+		if (pool == null) {
+			synchronized (Parallelx.class) {
+				if (workStealingPool == null) {
+					workStealingPool = new ForkJoinPool(Concurrency, WorkStealingThread::new, null, false);
+				}
+				pool = workStealingPool;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * range [from, to) of a WorkStealing loop, splits off right halves while
+	 * it is larger than grain and the pool runs short of queued work, then
+	 * passes the rest to the range body
+	 */
+	static class RangeTask extends CountedCompleter<Void> {
+		private static final long serialVersionUID = 1L;
+		final long from;
+		final long to;
+		final long grain;
+		final LongRangeAction action;
+		/**
+		 * cancellation of the loop, left when the root completes
+		 */
+		final LoopCancellation loop;
+		final CountDownLatch done;
+
+		RangeTask(RangeTask parent, long from, long to, long grain, LongRangeAction action,
+				  LoopCancellation loop) {
+			super(parent);
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.action = action;
+			this.loop = loop;
+			this.done = parent == null ? new CountDownLatch(1) : null;
+		}
+
+		@Override
+		public void compute() {
+			long lo = from;
+			long hi = to;
+			while (hi - lo > grain && getSurplusQueuedTaskCount() <= 3) {
+				long mid = lo + ((hi - lo) >>> 1);
+				addToPendingCount(1);
+				new RangeTask(this, mid, hi, grain, action, loop).fork();
+				hi = mid;
+			}
+			Thread current = Thread.currentThread();
+			int threadid = current instanceof WorkStealingThread ? ((WorkStealingThread) current).id : 0;
+			if (!loop.isCancelled()) {
+				action.Invoke(lo, hi, threadid);
+			}
+			tryComplete();
+		}
+
+		@Override
+		public void onCompletion(CountedCompleter<?> caller) {
+			if (done != null) {
+				loop.Leave();
+				done.countDown();
+			}
+		}
+
+		@Override
+		public boolean onExceptionalCompletion(Throwable ex, CountedCompleter<?> caller) {
+			if (done != null) {
+				loop.Leave();
+				done.countDown();
+			}
+			return true;
+		}
+
+		/**
+		 * wait for root task, a worker of the pool helps instead of blocking
+		 */
+		boolean await(long millis) throws InterruptedException {
+			if (Thread.currentThread() instanceof WorkStealingThread) {
+				if (millis > 0) {
+					try {
+						get(millis, TimeUnit.MILLISECONDS);
+					} catch (TimeoutException ee) {
+						return false;
+					} catch (ExecutionException | CancellationException ee) {
+						// reported by getException()
+					}
+				} else {
+					quietlyJoin();
+				}
+				return true;
+			}
+			if (millis > 0) {
+				return done.await(millis, TimeUnit.MILLISECONDS);
+			}
+			done.await();
+			return true;
+		}
+	}
+
+	/**
+	 * AsyncTask view of a WorkStealing loop
+	 */
+	static class WorkStealingTask extends AsyncTask {
+		final RangeTask task;
+
+		WorkStealingTask(RangeTask task) {
+			this.task = task;
+		}
+
+		@Override
+		public boolean IsAlive() {
+			return !task.isDone();
+		}
+
+		@Override
+		public boolean Join(int timeMills) {
+			try {
+				if (!task.await(timeMills)) {
+					return false;
+				}
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				return false;
+			}
+			Throwable ex = task.getException();
+			if (ex != null && !IsFault) {
+				IsFault = true;
+				FaultReason = ex instanceof Exception ? (Exception) ex : new RuntimeException(ex);
+				ex.printStackTrace();
+			}
+			IsAvailable = !IsFault;
+			return true;
+		}
+
+		@Override
+		public boolean TimedWait(int millis) {
+			return Join(millis);
+		}
+
+		@Override
+		public void Wait() {
+			Join(0);
+		}
+	}
+
+	/**
+	 * run action for [lowerBound, upperBound) on the shared work stealing pool
+	 *
+	 * @return one task, Join() waits for the whole loop
+	 */
+	public Vector<AsyncTask> WorkStealingFor(Integer lowerBound, Integer upperBound,
+											 Delegates.Action3<Integer, CancellationTokenSource, Integer> action, CancellationTokenSource cancellationSource,
+											 boolean wait) {
+		LoopCancellation loop = new LoopCancellation(cancellationSource);
+		LongRangeAction rangeProxy = (long from, long to, int worker) -> {
+			for (long i = from; i < to; ++i) {
+				if (loop.isCancelled()) {
+					break;
+				}
+				action.Invoke((int) i, cancellationSource, worker);
+			}
+		};
+		return LoopRangeFor(lowerBound, upperBound, 0, rangeProxy, loop, wait, ParallelForScheduler.WorkStealing);
+	}
+
+	public Vector<AsyncTask> WorkStealingFor(Integer lowerBound, Integer upperBound, Delegates.Action1<Integer> action,
+			boolean wait) {
+		Delegates.Action3<Integer, CancellationTokenSource, Integer> actionProxy = (Integer i, CancellationTokenSource dummy,
+																					Integer arg3) -> {
+			action.Invoke(i);
+		};
+		return WorkStealingFor(lowerBound, upperBound, actionProxy, null, wait);
+	}
+
+	public Vector<AsyncTask> WorkStealingFor(Integer upperBound, Delegates.Action1<Integer> action, boolean wait) {
+		return WorkStealingFor(0, upperBound, action, wait);
+	}
+
 	public Vector<AsyncTask> BlockedPartitionFor(Integer lowerBound, Integer upperBound,
 												 final Delegates.Action2<Integer, CancellationTokenSource> action, boolean wait) {
 		Delegates.Action3<Integer, CancellationTokenSource, Integer> actionProxy = (Integer i, CancellationTokenSource dummy,
@@ -225,6 +718,16 @@ public class Parallelx {
 		return RuntimeLoadBalanceFor(0, upperBound, action, wait);
 	}
 
+	public Vector<AsyncTask> RuntimeLoadBalanceFor(Integer lowerBound, Integer upperBound, Delegates.Action1<Integer> action,
+			ChunkPolicy policy, Integer chunkSize, boolean wait) {
+		Delegates.Action3<Integer, CancellationTokenSource, Integer> actionProxy = (Integer i, CancellationTokenSource dummy,
+																					Integer arg3) -> {
+			action.Invoke(i);
+
+		};
+		return RuntimeLoadBalanceFor(lowerBound, upperBound, actionProxy, null, policy, chunkSize, wait);
+	}
+
 	public static Vector<AsyncTask> For(Integer lowerbound, Integer upperBound,
 										Delegates.Action3<Integer, CancellationTokenSource, Integer> action, boolean wait, ParallelForScheduler scheduler) {
 		switch (scheduler) {
@@ -238,6 +741,8 @@ public class Parallelx {
 		case RuntimeLoadBalance:
 			return new Parallelx().RuntimeLoadBalanceFor(lowerbound, upperBound, action, new CancellationTokenSource(),
 					wait);
+		case WorkStealing:
+			return new Parallelx().WorkStealingFor(lowerbound, upperBound, action, new CancellationTokenSource(), wait);
 		}
 
 	}
@@ -253,9 +758,29 @@ public class Parallelx {
 			return new Parallelx().CyclicPartitionFor(lowerbound, upperBound, action, cancellationSource, wait);
 		case RuntimeLoadBalance:
 			return new Parallelx().RuntimeLoadBalanceFor(lowerbound, upperBound, action, cancellationSource, wait);
+		case WorkStealing:
+			return new Parallelx().WorkStealingFor(lowerbound, upperBound, action, cancellationSource, wait);
 		}
 	}
 
+	/**
+	 * RuntimeLoadBalance loop with the given chunk policy
+	 */
+	public static Vector<AsyncTask> For(Integer lowerbound, Integer upperBound,
+										Delegates.Action3<Integer, CancellationTokenSource, Integer> action, CancellationTokenSource cancellationSource,
+										boolean wait, ChunkPolicy policy, Integer chunkSize) {
+		return new Parallelx().RuntimeLoadBalanceFor(lowerbound, upperBound, action, cancellationSource, policy, chunkSize,
+				wait);
+	}
+
+	/**
+	 * RuntimeLoadBalance loop with the given chunk policy
+	 */
+	public static Vector<AsyncTask> For(Integer lowerbound, Integer upperBound, Delegates.Action1<Integer> action, boolean wait,
+										ChunkPolicy policy, Integer chunkSize) {
+		return new Parallelx().RuntimeLoadBalanceFor(lowerbound, upperBound, action, policy, chunkSize, wait);
+	}
+
 	public static Vector<AsyncTask> For(Integer lowerbound, Integer upperBound, Delegates.Action1<Integer> action, boolean wait,
 										ParallelForScheduler scheduler) {
 		switch (scheduler) {
@@ -266,6 +791,8 @@ public class Parallelx {
 			return new Parallelx().CyclicPartitionFor(lowerbound, upperBound, action, wait);
 		case RuntimeLoadBalance:
 			return new Parallelx().RuntimeLoadBalanceFor(lowerbound, upperBound, action, wait);
+		case WorkStealing:
+			return new Parallelx().WorkStealingFor(lowerbound, upperBound, action, wait);
 		}
 	}
 
@@ -279,8 +806,217 @@ public class Parallelx {
 			return new Parallelx().CyclicPartitionFor(upperBound, action, wait);
 		case RuntimeLoadBalance:
 			return new Parallelx().RuntimeLoadBalanceFor(upperBound, action, wait);
+		case WorkStealing:
+			return new Parallelx().WorkStealingFor(upperBound, action, wait);
+		}
+
+	}
+
+	/**
+	 * int loop without boxing of index and worker id
+	 */
+	public static Vector<AsyncTask> For(int lowerbound, int upperBound, IntAction action, boolean wait,
+										ParallelForScheduler scheduler) {
+		return For(lowerbound, upperBound, action, null, wait, scheduler);
+	}
+
+	/**
+	 * int loop without boxing of index and worker id
+	 */
+	public static Vector<AsyncTask> For(int lowerbound, int upperBound, IntAction action,
+										CancellationTokenSource cancellationSource, boolean wait, ParallelForScheduler scheduler) {
+		LoopCancellation loop = new LoopCancellation(cancellationSource);
+		LongRangeAction rangeProxy = (long from, long to, int worker) -> {
+			for (int i = (int) from; i < to; ++i) {
+				if (loop.isCancelled()) {
+					break;
+				}
+				action.Invoke(i, worker);
+			}
+		};
+		return new Parallelx().LoopRangeFor(lowerbound, upperBound, 0, rangeProxy, loop, wait, scheduler);
+	}
+
+	/**
+	 * range loop, action gets sub-ranges of about grain indexes
+	 *
+	 * @param grain
+	 *            sub-range length, 0 picks length / (16 * Concurrency)
+	 */
+	public static Vector<AsyncTask> For(long lowerbound, long upperBound, long grain, LongRangeAction action, boolean wait,
+										ParallelForScheduler scheduler) {
+		return new Parallelx().RangeFor(lowerbound, upperBound, grain, action, null, wait, scheduler);
+	}
+
+	/**
+	 * range loop, action gets sub-ranges of about grain indexes
+	 *
+	 * @param grain
+	 *            sub-range length, 0 picks length / (16 * Concurrency)
+	 */
+	public static Vector<AsyncTask> For(long lowerbound, long upperBound, long grain, LongRangeAction action,
+										CancellationTokenSource cancellationSource, boolean wait, ParallelForScheduler scheduler) {
+		return new Parallelx().RangeFor(lowerbound, upperBound, grain, action, cancellationSource, wait, scheduler);
+	}
+
+	/**
+	 * accumulators of an Aggregate by worker id, a worker only touches its own
+	 * slot
+	 */
+	static class WorkerSlots<A> {
+		Object[] slots = new Object[Concurrency];
+
+		synchronized Object get(int worker) {
+			return worker < slots.length ? slots[worker] : null;
+		}
+
+		synchronized void set(int worker, Object value) {
+			if (worker >= slots.length) {
+				slots = Arrays.copyOf(slots, Math.max(worker + 1, slots.length * 2));
+			}
+			slots[worker] = value;
+		}
+
+		synchronized Object[] toArray() {
+			return slots.clone();
 		}
+	}
+
+	/**
+	 * parallel fold of [lowerBound, upperBound). every worker folds the
+	 * sub-ranges it runs into its own accumulator created by seed, the
+	 * accumulators are then merged by combiner in worker id order. with
+	 * Blocked and Cyclic a worker always gets the same sub-ranges, so the
+	 * result is reproducible even for non associative combiners like
+	 * floating point sums; RuntimeLoadBalance and WorkStealing need an
+	 * associative and commutative combiner.
+	 *
+	 * @param grain
+	 *            sub-range length, 0 picks length / (16 * Concurrency)
+	 * @return merged accumulator, seed value for an empty range
+	 * @throws RuntimeException
+	 *             when a worker failed, with its exception as cause
+	 */
+	public static <A> A Aggregate(long lowerBound, long upperBound, long grain, Delegates.Func<A> seed,
+			RangeAggregator<A> aggregator, Delegates.Func2<A, A, A> combiner, ParallelForScheduler scheduler) {
+		return Aggregate(lowerBound, upperBound, grain, seed, aggregator, combiner, null, scheduler);
+	}
+
+	/**
+	 * Aggregate which stops before the next sub-range once cancellation of
+	 * cancellationSource is requested
+	 *
+	 * @throws CancellationException
+	 *             when cancelled, no partial result is returned
+	 */
+	@SuppressWarnings("unchecked")
+	public static <A> A Aggregate(long lowerBound, long upperBound, long grain, Delegates.Func<A> seed,
+			RangeAggregator<A> aggregator, Delegates.Func2<A, A, A> combiner,
+			CancellationTokenSource cancellationSource, ParallelForScheduler scheduler) {
+		WorkerSlots<A> accumulators = new WorkerSlots<A>();
+		LongRangeAction rangeProxy = (long from, long to, int worker) -> {
+			Object accumulator = accumulators.get(worker);
+			if (accumulator == null) {
+				accumulator = seed.Invoke();
+			}
+			accumulators.set(worker, aggregator.Invoke((A) accumulator, from, to));
+		};
+		Vector<AsyncTask> tasks = new Parallelx().RangeFor(lowerBound, upperBound, grain, rangeProxy,
+				cancellationSource, true, scheduler);
+		ThrowIfFault(tasks, "Parallelx.Aggregate");
+		if (cancellationSource != null) {
+			cancellationSource.ThrowIfCancellationRequested();
+		}
+		A ret = null;
+		boolean empty = true;
+		for (Object accumulator : accumulators.toArray()) {
+			if (accumulator == null) {
+				continue;
+			}
+			ret = empty ? (A) accumulator : combiner.Invoke(ret, (A) accumulator);
+			empty = false;
+		}
+		return empty ? seed.Invoke() : ret;
+	}
+
+	/**
+	 * Aggregate over the items of a random access list
+	 */
+	public static <T, A> A Aggregate(final List<T> source, Delegates.Func<A> seed, Delegates.Func2<A, T, A> accumulate,
+			Delegates.Func2<A, A, A> combiner, ParallelForScheduler scheduler) {
+		return Aggregate(0, source.size(), 0, seed, (A accumulator, long from, long to) -> {
+			for (int i = (int) from; i < to; ++i) {
+				accumulator = accumulate.Invoke(accumulator, source.get(i));
+			}
+			return accumulator;
+		}, combiner, scheduler);
+	}
 
+	/**
+	 * reduce items of a random access list by an associative operation
+	 *
+	 * @param identity
+	 *            result for an empty list, op(identity, x) must be x
+	 */
+	public static <T> T Reduce(final List<T> source, T identity, Delegates.Func2<T, T, T> op,
+			ParallelForScheduler scheduler) {
+		return Aggregate(source, () -> identity, op, op, scheduler);
+	}
+
+	/**
+	 * reduce indexes [lowerBound, upperBound) mapped by selector
+	 */
+	public static <T> T Reduce(int lowerBound, int upperBound, T identity, Delegates.Func1<Integer, T> selector,
+			Delegates.Func2<T, T, T> op, ParallelForScheduler scheduler) {
+		return Aggregate(lowerBound, upperBound, 0, () -> identity, (T accumulator, long from, long to) -> {
+			for (int i = (int) from; i < to; ++i) {
+				accumulator = op.Invoke(accumulator, selector.Invoke(i));
+			}
+			return accumulator;
+		}, op, scheduler);
+	}
+
+	/**
+	 * sum of selector over [lowerBound, upperBound), overflows like int
+	 * arithmetic. values are boxed once per sub-range only.
+	 */
+	public static int SumInt(int lowerBound, int upperBound, IntIndexFunc selector, ParallelForScheduler scheduler) {
+		return Aggregate(lowerBound, upperBound, 0, () -> 0, (Integer accumulator, long from, long to) -> {
+			int sum = accumulator;
+			for (int i = (int) from; i < to; ++i) {
+				sum += selector.Invoke(i);
+			}
+			return sum;
+		}, Integer::sum, scheduler);
+	}
+
+	/**
+	 * sum of selector over [lowerBound, upperBound), values are boxed once per
+	 * sub-range only
+	 */
+	public static long SumLong(int lowerBound, int upperBound, LongIndexFunc selector, ParallelForScheduler scheduler) {
+		return Aggregate(lowerBound, upperBound, 0, () -> 0L, (Long accumulator, long from, long to) -> {
+			long sum = accumulator;
+			for (int i = (int) from; i < to; ++i) {
+				sum += selector.Invoke(i);
+			}
+			return sum;
+		}, Long::sum, scheduler);
+	}
+
+	/**
+	 * sum of selector over [lowerBound, upperBound), values are boxed once per
+	 * sub-range only. Blocked and Cyclic give the same result on every run.
+	 */
+	public static double SumDouble(int lowerBound, int upperBound, DoubleIndexFunc selector,
+			ParallelForScheduler scheduler) {
+		return Aggregate(lowerBound, upperBound, 0, () -> 0.0, (Double accumulator, long from, long to) -> {
+			double sum = accumulator;
+			for (int i = (int) from; i < to; ++i) {
+				sum += selector.Invoke(i);
+			}
+			return sum;
+		}, Double::sum, scheduler);
 	}
 
 	public static <T> Vector<AsyncTask> Foreach(final List<T> upperBound, final Delegates.Action1<T> action, boolean wait,
@@ -296,6 +1032,8 @@ public class Parallelx {
 			return new Parallelx().CyclicPartitionFor(upperBound.size(), actionProxy, wait);
 		case RuntimeLoadBalance:
 			return new Parallelx().RuntimeLoadBalanceFor(upperBound.size(), actionProxy, wait);
+		case WorkStealing:
+			return new Parallelx().WorkStealingFor(upperBound.size(), actionProxy, wait);
 		}
 	}
 
@@ -315,6 +1053,8 @@ public class Parallelx {
 			return new Parallelx().CyclicPartitionFor(0, upperBound.size(), actionProxy, null, wait);
 		case RuntimeLoadBalance:
 			return new Parallelx().RuntimeLoadBalanceFor(0, upperBound.size(), actionProxy, null, wait);
+		case WorkStealing:
+			return new Parallelx().WorkStealingFor(0, upperBound.size(), actionProxy, null, wait);
 		}
 	}
 
@@ -0,0 +1,52 @@
+package com.example.sharp.coroutine;
+
+import java.util.NoSuchElementException;
+
+/**
+ * stepping shared by IntGenerator, LongGenerator and DoubleGenerator, same
+ * order as Coroutine.iterator(): the coroutine is run to its next yield right
+ * after a value is taken.
+ */
+abstract class PrimitiveGenerator {
+	final Coroutine coroutine;
+	boolean tested = false;
+
+	PrimitiveGenerator(Coroutine coroutine) {
+		this.coroutine = coroutine;
+	}
+
+	public boolean hasNext() {
+		if (!tested) {
+			if (!coroutine.isYield()) {
+				coroutine.execUntilSuspend();
+			}
+			tested = true;
+		}
+		return !coroutine.isStopped();
+	}
+
+	/**
+	 * run to the pending yield, if not suspended there already
+	 *
+	 * @throws NoSuchElementException when the coroutine stopped
+	 */
+	void prepare() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+	}
+
+	/**
+	 * run ahead to the following yield
+	 */
+	void advance() {
+		coroutine.execUntilSuspend();
+	}
+
+	/**
+	 * underlying coroutine
+	 */
+	public Coroutine coroutine() {
+		return coroutine;
+	}
+}
@@ -3,8 +3,16 @@ package com.example.sharp.coroutine;
 import com.example.events.Var;
 import com.example.sharp.Delegates;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Helper class to simplify generator syntax by collecting yield values.
@@ -117,6 +125,430 @@ public class YieldHelper {
         return cor.iterable();
     }
     
+    /**
+     * Generator body yielding int values
+     */
+    @FunctionalInterface
+    public interface IntGeneratorAction {
+        void run(IntYieldCollector yield) throws Exception;
+    }
+    
+    /**
+     * Collector for int yield values, values are never boxed. consecutive
+     * values are stored in a primitive array replayed by one loop.
+     */
+    public static class IntYieldCollector {
+        private Coroutine coroutine;
+        private PrimitiveChunk chunk;
+        
+        IntYieldCollector(Coroutine coroutine) {
+            this.coroutine = coroutine;
+        }
+        
+        public void accept(int value) {
+            chunk = PrimitiveChunk.append(coroutine, chunk, PrimitiveChunk.INT, value);
+        }
+        
+        public void yieldReturn(int value) {
+            accept(value);
+        }
+        
+        public Coroutine coroutine() {
+            return coroutine;
+        }
+    }
+    
+    /**
+     * int counterpart of generate(), neither recording nor iterating allocates
+     * per element
+     */
+    public static IntGenerator generateInt(IntGeneratorAction action) {
+        Coroutine cor = new Coroutine();
+        try {
+            action.run(new IntYieldCollector(cor));
+        } catch (Exception e) {
+            failWith(cor, e);
+        }
+        seal(cor);
+        return new IntGenerator(cor);
+    }
+    
+    /**
+     * Generator body yielding long values
+     */
+    @FunctionalInterface
+    public interface LongGeneratorAction {
+        void run(LongYieldCollector yield) throws Exception;
+    }
+    
+    /**
+     * Collector for long yield values, values are never boxed. consecutive
+     * values are stored in a primitive array replayed by one loop.
+     */
+    public static class LongYieldCollector {
+        private Coroutine coroutine;
+        private PrimitiveChunk chunk;
+        
+        LongYieldCollector(Coroutine coroutine) {
+            this.coroutine = coroutine;
+        }
+        
+        public void accept(long value) {
+            chunk = PrimitiveChunk.append(coroutine, chunk, PrimitiveChunk.LONG, value);
+        }
+        
+        public void yieldReturn(long value) {
+            accept(value);
+        }
+        
+        public Coroutine coroutine() {
+            return coroutine;
+        }
+    }
+    
+    /**
+     * long counterpart of generate(), neither recording nor iterating allocates
+     * per element
+     */
+    public static LongGenerator generateLong(LongGeneratorAction action) {
+        Coroutine cor = new Coroutine();
+        try {
+            action.run(new LongYieldCollector(cor));
+        } catch (Exception e) {
+            failWith(cor, e);
+        }
+        seal(cor);
+        return new LongGenerator(cor);
+    }
+    
+    /**
+     * Generator body yielding double values
+     */
+    @FunctionalInterface
+    public interface DoubleGeneratorAction {
+        void run(DoubleYieldCollector yield) throws Exception;
+    }
+    
+    /**
+     * Collector for double yield values, values are never boxed. consecutive
+     * values are stored in a primitive array replayed by one loop.
+     */
+    public static class DoubleYieldCollector {
+        private Coroutine coroutine;
+        private PrimitiveChunk chunk;
+        
+        DoubleYieldCollector(Coroutine coroutine) {
+            this.coroutine = coroutine;
+        }
+        
+        public void accept(double value) {
+            chunk = PrimitiveChunk.append(coroutine, chunk, PrimitiveChunk.DOUBLE, Double.doubleToRawLongBits(value));
+        }
+        
+        public void yieldReturn(double value) {
+            accept(value);
+        }
+        
+        public Coroutine coroutine() {
+            return coroutine;
+        }
+    }
+    
+    /**
+     * double counterpart of generate(), neither recording nor iterating allocates
+     * per element
+     */
+    public static DoubleGenerator generateDouble(DoubleGeneratorAction action) {
+        Coroutine cor = new Coroutine();
+        try {
+            action.run(new DoubleYieldCollector(cor));
+        } catch (Exception e) {
+            failWith(cor, e);
+        }
+        seal(cor);
+        return new DoubleGenerator(cor);
+    }
+    
+    /**
+     * values yielded by an int/long/double generator body with no other
+     * instruction between them. three instructions in front of them yield one
+     * per pass, the cursor lives in an int slot, so recording a value
+     * allocates neither an instruction nor a box.
+     */
+    static final class PrimitiveChunk {
+        static final int INT = 0;
+        static final int LONG = 1;
+        static final int DOUBLE = 2;
+        
+        long[] values = new long[16];
+        int count;
+        /**
+         * instruction count of the coroutine right after the loop, a value
+         * recorded later belongs to this chunk only if nothing was added since
+         */
+        int mark;
+        
+        /**
+         * record a value, doubles as raw bits
+         * 
+         * @return chunk holding the value, a new one if instructions were
+         *         added after the given one
+         */
+        static PrimitiveChunk append(Coroutine cor, PrimitiveChunk chunk, int kind, long value) {
+            if (chunk == null || cor.instructions.size() != chunk.mark) {
+                PrimitiveChunk fresh = new PrimitiveChunk();
+                int cursor = cor.declareSlot("#chunk" + cor.instructions.size());
+                cor.addInstruction((c) -> c.intSlots[cursor] = 0);
+                int loopPos = cor.instructions.size();
+                int end = loopPos + 2;
+                if (kind == INT) {
+                    cor.addInstruction((c) -> {
+                        int i = c.intSlots[cursor];
+                        if (i == fresh.count) {
+                            c.jmp(end);
+                        } else {
+                            c.intSlots[cursor] = i + 1;
+                            c.yieldInt((int) fresh.values[i]);
+                        }
+                    });
+                } else if (kind == LONG) {
+                    cor.addInstruction((c) -> {
+                        int i = c.intSlots[cursor];
+                        if (i == fresh.count) {
+                            c.jmp(end);
+                        } else {
+                            c.intSlots[cursor] = i + 1;
+                            c.yieldLong(fresh.values[i]);
+                        }
+                    });
+                } else {
+                    cor.addInstruction((c) -> {
+                        int i = c.intSlots[cursor];
+                        if (i == fresh.count) {
+                            c.jmp(end);
+                        } else {
+                            c.intSlots[cursor] = i + 1;
+                            c.yieldDouble(Double.longBitsToDouble(fresh.values[i]));
+                        }
+                    });
+                }
+                cor.addInstruction((c) -> c.jmp(loopPos));
+                fresh.mark = cor.instructions.size();
+                chunk = fresh;
+            }
+            if (chunk.count == chunk.values.length) {
+                chunk.values = Arrays.copyOf(chunk.values, chunk.count * 2);
+            }
+            chunk.values[chunk.count++] = value;
+            return chunk;
+        }
+    }
+    
+    /**
+     * add an instruction which rethrows a failure of generator body
+     */
+    static void failWith(Coroutine cor, Exception e) {
+        cor.addInstruction((c) -> {
+            throw new RuntimeException("Generator error", e);
+        });
+    }
+    
+    /**
+     * add the sentinel described in generate() and start
+     */
+    static void seal(Coroutine cor) {
+        cor.addInstruction((c) -> {
+            // No-op sentinel instruction
+        });
+        cor.start();
+    }
+    
+    /**
+     * Generate an iterable whose body runs lazily, as far as the consumer pulls.
+     * Same generator body as generate(), so switching is one factory call:
+     * 
+     * <pre>
+     * Iterable<Integer> naturals = YieldHelper.generateLazy((yield) -> {
+     *     for (int i = 0; ; i++) {
+     *         yield.accept(i);
+     *     }
+     * });
+     * </pre>
+     * 
+     * Unlike generate(), no instruction is recorded per value, so infinite or
+     * huge generators are fine. Each iterator runs the body on a pooled daemon
+     * thread, and accept() blocks until the consumer asks for the next value.
+     * That thread stays taken by the iterator until the body returns, so an
+     * iterator that is not read to the end pins one pool thread, which wakes
+     * once a second to check whether the iterator was garbage collected and
+     * only then unwinds the body. Keep the number of live, unfinished lazy
+     * iterators small.
+     * Every value costs a handoff between two threads, so generate() stays
+     * cheaper for small finite generators.
+     * yield.coroutine() is null in this mode.
+     */
+    public static <T> Delegates.IterableEx<T> generateLazy(GeneratorAction<T> action) {
+        Iterable<T> ret = () -> new LazyIterator<T>(action);
+        return Delegates.forall(ret);
+    }
+    
+    /**
+     * daemon threads running bodies of generateLazy()
+     */
+    static final ExecutorService lazyExecutor = Executors.newCachedThreadPool((r) -> {
+        Thread thread = new Thread(r, "YieldHelper-lazy");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * token and sentinels exchanged between consumer and lazy body
+     */
+    static final Object DEMAND = new Object();
+    static final Object END = new Object();
+    /**
+     * stands for a yielded null, SynchronousQueue does not take null
+     */
+    private static final Object NULL = new Object();
+    
+    static class Failure {
+        final Exception error;
+        Failure(Exception error) {
+            this.error = error;
+        }
+    }
+    
+    /**
+     * thrown inside a lazy body to unwind it when its iterator is gone
+     */
+    static class Abandoned extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+    
+    /**
+     * consumer side of generateLazy(), hands a demand token to the body and
+     * takes back one value per pull
+     */
+    static class LazyIterator<T> implements Iterator<T> {
+        final SynchronousQueue<Object> demand = new SynchronousQueue<>();
+        final SynchronousQueue<Object> values = new SynchronousQueue<>();
+        final GeneratorAction<T> action;
+        boolean started;
+        boolean fetched;
+        Object current;
+        
+        LazyIterator(GeneratorAction<T> action) {
+            this.action = action;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (!fetched) {
+                if (current == END) {
+                    return false;
+                }
+                if (!started) {
+                    started = true;
+                    // the body must not reach this iterator, only the queues
+                    LazyYieldCollector<T> collector = new LazyYieldCollector<>(demand, values, new WeakReference<>(this));
+                    GeneratorAction<T> body = action;
+                    lazyExecutor.execute(() -> collector.run(body));
+                }
+                try {
+                    demand.put(DEMAND);
+                    current = values.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Generator interrupted", e);
+                }
+                fetched = true;
+                if (current instanceof Failure) {
+                    Exception error = ((Failure) current).error;
+                    current = END;
+                    throw new RuntimeException("Generator error", error);
+                }
+            }
+            return current != END;
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            fetched = false;
+            T ret = current == NULL ? null : (T) current;
+            current = null;
+            return ret;
+        }
+    }
+    
+    /**
+     * producer side of generateLazy(), accept() hands the value over and waits
+     * for the next demand
+     */
+    static class LazyYieldCollector<T> extends YieldCollector<T> {
+        final SynchronousQueue<Object> demand;
+        final SynchronousQueue<Object> values;
+        final WeakReference<LazyIterator<T>> owner;
+        boolean abandoned;
+        
+        LazyYieldCollector(SynchronousQueue<Object> demand, SynchronousQueue<Object> values, WeakReference<LazyIterator<T>> owner) {
+            super(null);
+            this.demand = demand;
+            this.values = values;
+            this.owner = owner;
+        }
+        
+        void run(GeneratorAction<T> body) {
+            try {
+                awaitDemand();
+                body.run(this);
+                if (!abandoned) {
+                    values.put(END);
+                }
+            } catch (Abandoned e) {
+                // iterator is gone, nobody to tell
+            } catch (InterruptedException e) {
+                // pool is shutting down
+            } catch (Exception e) {
+                if (abandoned) {
+                    return;
+                }
+                try {
+                    values.put(new Failure(e));
+                } catch (InterruptedException ie) {
+                    // consumer is gone
+                }
+            }
+        }
+        
+        private void awaitDemand() throws InterruptedException {
+            while (demand.poll(1, TimeUnit.SECONDS) == null) {
+                if (owner.get() == null) {
+                    abandoned = true;
+                    throw new Abandoned();
+                }
+            }
+        }
+        
+        @Override
+        public void accept(T value) {
+            if (abandoned) {
+                // body swallowed Abandoned, keep unwinding
+                throw new Abandoned();
+            }
+            try {
+                values.put(value == null ? NULL : value);
+                awaitDemand();
+            } catch (InterruptedException e) {
+                abandoned = true;
+                throw new Abandoned();
+            }
+        }
+    }
+    
     /**
      * Generate with automatic state management for loop variables.
      * Use this when you need proper coroutine loop control.
@@ -0,0 +1,123 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.events.AsyncEventBus;
+import com.example.events.EventDelegate;
+import com.example.events.INotificationEventArgs;
+
+/**
+ * publishes to a handler costing about 2 microseconds per event, first on the
+ * publisher thread, then through an AsyncEventBus with each overflow policy
+ * and with a BatchHandler. prints nanoseconds per publish, the bus metrics
+ * and whether every event was delivered, dropped or coalesced, in order.
+ * last publishes to a delegate whose bus was disposed.
+ */
+public class AsyncEventBenchmark {
+	static final int COUNT = 200000;
+	static final long HANDLER_NANOS = 2000;
+
+	static void work() {
+		long end = System.nanoTime() + HANDLER_NANOS;
+		while (System.nanoTime() < end) {
+			Thread.onSpinWait();
+		}
+	}
+
+	static long publish(EventDelegate.Event1<Integer> event) {
+		long begin = System.nanoTime();
+		for (int i = 0; i < COUNT; ++i) {
+			event.invoke(event, (Integer) i);
+		}
+		return System.nanoTime() - begin;
+	}
+
+	static void run(String title, int capacity, AsyncEventBus.OverflowPolicy policy) throws Exception {
+		AsyncEventBus bus = new AsyncEventBus(1, capacity, 64, policy);
+		EventDelegate.Event1<Integer> event = new EventDelegate.Event1<Integer>();
+		LongAdder calls = new LongAdder();
+		int[] last = { -1 };
+		boolean[] ordered = { true };
+		event.subscribe((from, value) -> {
+			work();
+			ordered[0] &= value > last[0];
+			last[0] = value;
+			calls.increment();
+		});
+		event.setAsync(bus);
+		long elapsed = publish(event);
+		bus.awaitIdle(60000);
+		long accounted = bus.getDelivered() + bus.getDropped() + bus.getCoalesced();
+		System.out.printf("%-22s %7.1f ns/publish, delivered %d dropped %d coalesced %d, peak depth %d %s%n", title,
+				(double) elapsed / COUNT, bus.getDelivered(), bus.getDropped(), bus.getCoalesced(),
+				bus.getPeakQueueDepth(),
+				accounted == COUNT && calls.sum() == bus.getDelivered() && ordered[0] ? "ok" : "WRONG");
+		bus.dispose();
+	}
+
+	static void runBatch() throws Exception {
+		AsyncEventBus bus = new AsyncEventBus(1, 1 << 18, 64, AsyncEventBus.OverflowPolicy.BLOCK);
+		EventDelegate.Event1<Integer> event = new EventDelegate.Event1<Integer>();
+		LongAdder calls = new LongAdder();
+		LongAdder events = new LongAdder();
+		event.subscribeBatch((senders, args, count) -> {
+			// one costly call per batch, as a write of all rows at once
+			work();
+			calls.increment();
+			events.add(count);
+		});
+		event.setAsync(bus);
+		long elapsed = publish(event);
+		long begin = System.nanoTime();
+		bus.awaitIdle(60000);
+		long drained = System.nanoTime() - begin;
+		System.out.printf("%-22s %7.1f ns/publish, %d events in %d calls, drained %.1f ms later %s%n", "BatchHandler",
+				(double) elapsed / COUNT, events.sum(), calls.sum(), drained / 1e6,
+				events.sum() == COUNT ? "ok" : "WRONG");
+		bus.dispose();
+	}
+
+	public static void main(String[] argv) throws Exception {
+		for (int round = 0; round < 2; ++round) {
+			EventDelegate.Event1<Integer> event = new EventDelegate.Event1<Integer>();
+			LongAdder calls = new LongAdder();
+			event.subscribe((from, value) -> {
+				work();
+				calls.increment();
+			});
+			long elapsed = publish(event);
+			System.out.printf("%-22s %7.1f ns/publish %s%n", "synchronous", (double) elapsed / COUNT,
+					calls.sum() == COUNT ? "ok" : "WRONG");
+
+			run("BLOCK, room for all", 1 << 18, AsyncEventBus.OverflowPolicy.BLOCK);
+			run("BLOCK, 1024 slots", 1024, AsyncEventBus.OverflowPolicy.BLOCK);
+			run("DROP, 1024 slots", 1024, AsyncEventBus.OverflowPolicy.DROP);
+			run("COALESCE, 1024 slots", 1024, AsyncEventBus.OverflowPolicy.COALESCE);
+			runBatch();
+
+			// legacy handlers of an async delegate still get args objects
+			LongAdder legacy = new LongAdder();
+			AsyncEventBus bus = new AsyncEventBus(1, 64, 8, AsyncEventBus.OverflowPolicy.BLOCK);
+			EventDelegate.Event1<String> named = new EventDelegate.Event1<String>();
+			named.addDelegate((EventDelegate.Handler1<String>) (from, args) -> legacy.add(args.get_1().length()));
+			named.setAsync(bus);
+			named.invoke(named, "four");
+			named.invoke(named, (INotificationEventArgs) EventDelegate.args("five!"));
+			bus.awaitIdle(1000);
+			System.out.printf("%-22s %s%n", "Handler1 async", legacy.sum() == 9 ? "ok" : "WRONG");
+			bus.dispose();
+
+			// a disposed BLOCK bus does not stall publishers once a ring is full
+			LongAdder after = new LongAdder();
+			EventDelegate.Event1<Integer> detached = new EventDelegate.Event1<Integer>();
+			detached.subscribe((from, value) -> after.increment());
+			AsyncEventBus stopped = new AsyncEventBus(1, 64, 8, AsyncEventBus.OverflowPolicy.BLOCK);
+			detached.setAsync(stopped);
+			stopped.dispose();
+			for (int i = 0; i < 1000; ++i) {
+				detached.invoke(detached, (Integer) i);
+			}
+			System.out.printf("%-22s %s%n", "after dispose", after.sum() == 1000 && !detached.isAsync() ? "ok" : "WRONG");
+		}
+	}
+}
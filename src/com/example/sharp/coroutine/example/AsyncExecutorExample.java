@@ -0,0 +1,92 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.sharp.coroutine.AsyncTask;
+import com.example.sharp.coroutine.AsyncTaskExecutor;
+import com.example.sharp.coroutine.Parallelx;
+
+/**
+ * starts bursts of short AsyncTasks with after-finish jobs and runAsync
+ * futures on the available executors, checks that every job and after-finish
+ * job ran and prints the executor metrics. then lets the jobs of a small pool
+ * wait for jobs queued behind them.
+ */
+public class AsyncExecutorExample {
+	static final int TASKS = 5000;
+
+	static void burst(String title, AsyncTaskExecutor executor) throws Exception {
+		AsyncTask.DefaultExecutor = executor;
+		AtomicLong jobs = new AtomicLong();
+		AtomicLong afterJobs = new AtomicLong();
+		long begin = System.nanoTime();
+		ArrayList<AsyncTask> tasks = new ArrayList<AsyncTask>();
+		for (int i = 0; i < TASKS; ++i) {
+			AsyncTask task = new AsyncTask(() -> jobs.incrementAndGet());
+			task.AddAfterFinishJob(() -> afterJobs.incrementAndGet());
+			task.Start(false);
+			tasks.add(task);
+		}
+		for (AsyncTask task : tasks) {
+			task.Join(0);
+		}
+		long sum = 0;
+		for (int i = 0; i < 100; ++i) {
+			final int value = i;
+			sum += AsyncTask.runAsync(() -> value).thenRun((v) -> v * 2).get();
+		}
+		Parallelx.For(0, 1000, (i) -> jobs.incrementAndGet(), true, Parallelx.ParallelForScheduler.Cyclic);
+		long elapsed = System.nanoTime() - begin;
+		boolean ok = jobs.get() == TASKS + 1000 && afterJobs.get() == TASKS && sum == 9900;
+		System.out.printf("%-16s %8.1f ms %s%n  %s%n", title, elapsed / 1e6, ok ? "ok" : "WRONG", executor);
+	}
+
+	/**
+	 * jobs of a two thread pool waiting for jobs queued behind them
+	 */
+	static void nested() throws Exception {
+		AsyncTaskExecutor.Pool pool = AsyncTaskExecutor.newPool(2, 1000);
+		AsyncTask.DefaultExecutor = pool;
+		ArrayList<AsyncTask.ThreadingFuture<Integer>> outer = new ArrayList<AsyncTask.ThreadingFuture<Integer>>();
+		for (int i = 0; i < 100; ++i) {
+			final int value = i;
+			outer.add(AsyncTask.runAsync(() -> {
+				try {
+					return AsyncTask.runAsync(() -> value).get(10, TimeUnit.SECONDS) + 1;
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}));
+		}
+		long sum = 0;
+		for (AsyncTask.ThreadingFuture<Integer> future : outer) {
+			sum += future.get(10, TimeUnit.SECONDS);
+		}
+		System.out.printf("%-16s %s%n  %s%n", "nested waits", sum == 5050 ? "ok" : "WRONG", pool);
+		pool.shutdown();
+	}
+
+	public static void main(String[] argv) throws Exception {
+		AsyncTaskExecutor previous = AsyncTask.DefaultExecutor;
+		for (int round = 0; round < 2; ++round) {
+			burst("thread per task", AsyncTaskExecutor.threadPerTask());
+			burst("shared pool", AsyncTaskExecutor.shared());
+			AsyncTaskExecutor.Pool queued = AsyncTaskExecutor.newPool(4, 1000);
+			burst("queued pool", queued);
+			queued.shutdown();
+			AsyncTaskExecutor.Service service = AsyncTaskExecutor.of(Executors.newFixedThreadPool(8));
+			burst("ExecutorService", service);
+			service.shutdown();
+			if (AsyncTaskExecutor.isVirtualThreadSupported()) {
+				AsyncTaskExecutor.Service virtual = AsyncTaskExecutor.virtualThreads();
+				burst("virtual threads", virtual);
+				virtual.shutdown();
+			}
+		}
+		nested();
+		AsyncTask.DefaultExecutor = previous;
+	}
+}
@@ -0,0 +1,109 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.ArrayList;
+
+import com.example.sharp.Delegates;
+import com.example.sharp.coroutine.Coroutine;
+
+/**
+ * Micro benchmark of draining a generator by next(), by nextBatch() and by
+ * toArrayList(), which uses drainTo().
+ */
+public class BatchYieldBenchmark {
+	static final int COUNT = 1000 * 1000;
+
+	static Coroutine range(int count) {
+		Coroutine cor = new Coroutine();
+		cor.For("i", 0, count, 1).run((ctx, i) -> ctx.yield(i));
+		cor.start();
+		return cor;
+	}
+
+	static long single() {
+		long sum = 0;
+		Delegates.IteratorEx<Integer> iterator = range(COUNT).iterator();
+		while (iterator.hasNext()) {
+			sum += iterator.next();
+		}
+		return sum;
+	}
+
+	static long batch() {
+		long sum = 0;
+		Delegates.IteratorEx<Integer> iterator = range(COUNT).iterator();
+		Integer[] buf = new Integer[256];
+		int count;
+		while ((count = iterator.nextBatch(buf)) > 0) {
+			for (int i = 0; i < count; ++i) {
+				sum += buf[i];
+			}
+		}
+		return sum;
+	}
+
+	static long list() {
+		long sum = 0;
+		ArrayList<Integer> values = range(COUNT).<Integer>iterable().toArrayList();
+		for (int i = 0; i < values.size(); ++i) {
+			sum += values.get(i);
+		}
+		return sum;
+	}
+
+	/**
+	 * next() and nextBatch() mixed on one iterator give the same sequence,
+	 * empty and single slot buffers and negative drain limits do not skip
+	 * values
+	 */
+	static boolean mixed() {
+		Delegates.IteratorEx<Integer> iterator = range(100).iterator();
+		ArrayList<Integer> values = new ArrayList<>();
+		Integer[] buf = new Integer[7];
+		Integer[] empty = new Integer[0];
+		Integer[] single = new Integer[1];
+		while (iterator.hasNext()) {
+			values.add(iterator.next());
+			if (iterator.nextBatch(empty) != 0) {
+				return false;
+			}
+			int count = iterator.nextBatch(buf);
+			for (int i = 0; i < count; ++i) {
+				values.add(buf[i]);
+			}
+			if (iterator.drainTo(values, 0) != 0 || iterator.drainTo(values, -1) != 0) {
+				return false;
+			}
+			if (iterator.nextBatch(single) == 1) {
+				values.add(single[0]);
+			}
+			iterator.drainTo(values, 3);
+		}
+		for (int i = 0; i < 100; ++i) {
+			if (values.size() != 100 || values.get(i) != i) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static void report(String name, long nanos, long sum) {
+		System.out.printf("%-8s %8.2f ms %6.1f ns/element (sum %d)%n", name, nanos / 1e6, (double) nanos / COUNT, sum);
+	}
+
+	public static void main(String[] argv) {
+		System.out.println("mixed next/nextBatch/drainTo " + (mixed() ? "ok" : "FAILED"));
+		for (int round = 0; round < 4; ++round) {
+			long begin = System.nanoTime();
+			long sum = single();
+			report("next", System.nanoTime() - begin, sum);
+
+			begin = System.nanoTime();
+			sum = batch();
+			report("batch", System.nanoTime() - begin, sum);
+
+			begin = System.nanoTime();
+			sum = list();
+			report("list", System.nanoTime() - begin, sum);
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.sharp.coroutine.AsyncTask;
+import com.example.sharp.coroutine.AsyncTask.ThreadingFuture;
+import com.example.sharp.coroutine.CancellationTokenSource;
+import com.example.sharp.coroutine.Coroutine;
+import com.example.sharp.coroutine.Parallelx;
+import com.example.sharp.coroutine.Parallelx.ParallelForScheduler;
+
+/**
+ * cancels endless parallel loops, a coroutine, a blocked AsyncTask and a
+ * future through CancellationTokenSource, and prints how long each took to
+ * stop after the cancellation callback ran.
+ */
+public class CancellationExample {
+	static final int ENDLESS = Integer.MAX_VALUE;
+
+	static String check(boolean ok) {
+		return ok ? "ok" : "WRONG";
+	}
+
+	static void spin() {
+		long end = System.nanoTime() + 1000;
+		while (System.nanoTime() < end) {
+		}
+	}
+
+	/**
+	 * nanos from cancel callback to return of the joined loop
+	 */
+	static void loop(ParallelForScheduler scheduler, boolean print) {
+		CancellationTokenSource cts = new CancellationTokenSource();
+		AtomicLong cancelledAt = new AtomicLong();
+		cts.Register(() -> cancelledAt.set(System.nanoTime()));
+		cts.CancelAfter(20);
+		AtomicLong runs = new AtomicLong();
+		Parallelx.For(0, ENDLESS, (int i, int worker) -> {
+			spin();
+			runs.incrementAndGet();
+		}, cts, true, scheduler);
+		long latency = System.nanoTime() - cancelledAt.get();
+		if (!print) {
+			return;
+		}
+		System.out.printf("%-18s stopped %8.1f us after cancel, %d bodies ran %s%n", scheduler, latency / 1e3,
+				runs.get(), check(cancelledAt.get() != 0 && runs.get() < ENDLESS));
+	}
+
+	public static void main(String[] argv) throws Exception {
+		for (int round = 0; round < 2; ++round) {
+			// the first round warms up
+			for (ParallelForScheduler scheduler : ParallelForScheduler.values()) {
+				loop(scheduler, round == 1);
+			}
+		}
+
+		// StopAsync() of one task stops the whole loop
+		Vector<AsyncTask> tasks = Parallelx.For(0, ENDLESS, (int i, int worker) -> spin(), false,
+				ParallelForScheduler.RuntimeLoadBalance);
+		Thread.sleep(10);
+		tasks.get(0).StopAsync();
+		boolean stopped = true;
+		for (AsyncTask task : tasks) {
+			stopped &= task.Join(5000);
+		}
+		System.out.printf("StopAsync of one task stops loop %s%n", check(stopped));
+
+		// linked sources
+		CancellationTokenSource parent = new CancellationTokenSource();
+		CancellationTokenSource other = new CancellationTokenSource();
+		CancellationTokenSource linked = CancellationTokenSource.CreateLinkedTokenSource(parent, other);
+		CancellationTokenSource unlinked = CancellationTokenSource.CreateLinkedTokenSource(parent);
+		unlinked.Dispose();
+		parent.Cancel();
+		System.out.printf("linked %s, disposed link %s, other %s%n", check(linked.IsCancellationRequested),
+				check(!unlinked.IsCancellationRequested), check(!other.IsCancellationRequested));
+
+		// coroutine running an endless loop
+		CancellationTokenSource coroutineCts = new CancellationTokenSource();
+		long[] iterations = new long[1];
+		Coroutine cor = new Coroutine();
+		cor.While(() -> true).run((ctx) -> ++iterations[0]);
+		cor.start();
+		cor.setCancellation(coroutineCts);
+		coroutineCts.CancelAfter(20);
+		long begin = System.nanoTime();
+		cor.execUntilSuspend();
+		System.out.printf("coroutine stopped %s after %.1f ms, %d iterations%n", check(cor.isStopped()),
+				(System.nanoTime() - begin) / 1e6, iterations[0]);
+
+		// blocked AsyncTask is interrupted, its job sees the cancellation
+		AsyncTask sleeper = new AsyncTask(() -> {
+			try {
+				Thread.sleep(60000);
+			} catch (InterruptedException ee) {
+				// stopped
+			}
+		});
+		sleeper.Start(false);
+		Thread.sleep(10);
+		CancellationTokenSource taskCts = sleeper.GetCancellation();
+		sleeper.StopAsync();
+		System.out.printf("AsyncTask stopped %s, cancelled %s%n", check(sleeper.Join(5000)),
+				check(taskCts.IsCancellationRequested));
+
+		// future and aggregate
+		CancellationTokenSource futureCts = new CancellationTokenSource();
+		ThreadingFuture<Integer> future = AsyncTask.runAsync(() -> {
+			try {
+				Thread.sleep(60000);
+			} catch (InterruptedException ee) {
+				// cancelled
+			}
+			return 1;
+		}, futureCts);
+		futureCts.CancelAfter(10);
+		boolean futureCancelled;
+		try {
+			future.get();
+			futureCancelled = false;
+		} catch (CancellationException ee) {
+			futureCancelled = future.isCancelled();
+		} catch (ExecutionException ee) {
+			futureCancelled = false;
+		}
+		CancellationTokenSource aggregateCts = new CancellationTokenSource();
+		aggregateCts.CancelAfter(20);
+		boolean aggregateCancelled;
+		try {
+			Parallelx.Aggregate(0, ENDLESS, 1000, () -> 0L, (Long sum, long from, long to) -> {
+				for (long i = from; i < to; ++i) {
+					sum += i;
+				}
+				spin();
+				return sum;
+			}, Long::sum, aggregateCts, ParallelForScheduler.WorkStealing);
+			aggregateCancelled = false;
+		} catch (CancellationException ee) {
+			aggregateCancelled = true;
+		}
+		System.out.printf("future cancelled %s, aggregate cancelled %s%n", check(futureCancelled),
+				check(aggregateCancelled));
+	}
+}
@@ -0,0 +1,83 @@
+package com.example.sharp.coroutine.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import com.example.sharp.coroutine.Coroutine;
+import com.example.sharp.coroutine.CoroutineCheckpoint;
+import com.example.sharp.coroutine.CoroutineTemplate;
+
+/**
+ * parks 10000 half-run state machines as checkpoints, resumes them from the
+ * checkpoints and checks that each one continues where it was parked. the
+ * last part saves a coroutine to a file and loads it into a rebuilt one.
+ */
+public class CheckpointExample {
+	static final int INSTANCES = 10000;
+	static final int LENGTH = 100;
+
+	/**
+	 * yields 0..LENGTH-1, the counter lives in an int slot of the loop frame
+	 */
+	static void program(Coroutine cor) {
+		cor.setValue("owner", "example");
+		cor.For("i", 0, LENGTH, 1).run((ctx, i) -> ctx.yield(i));
+	}
+
+	static long drain(Coroutine cor) {
+		long sum = 0;
+		for (Integer value : cor.<Integer>iterable()) {
+			sum += value;
+		}
+		return sum;
+	}
+
+	public static void main(String[] argv) throws IOException {
+		CoroutineTemplate template = new CoroutineTemplate(CheckpointExample::program);
+		byte[][] parked = new byte[INSTANCES][];
+		long[] consumed = new long[INSTANCES];
+		long bytes = 0;
+		for (int n = 0; n < INSTANCES; ++n) {
+			Coroutine cor = template.acquire();
+			Iterator<Integer> iterator = cor.iterator();
+			for (int k = 0; k < n % LENGTH && iterator.hasNext(); ++k) {
+				consumed[n] += iterator.next();
+			}
+			parked[n] = CoroutineCheckpoint.park(cor);
+			bytes += parked[n].length;
+		}
+		System.out.printf("parked %d coroutines in %d bytes (%.1f bytes each), %d pooled instances%n", INSTANCES, bytes,
+				(double) bytes / INSTANCES, template.getPooledCount());
+
+		int failed = 0;
+		long expected = (long) LENGTH * (LENGTH - 1) / 2;
+		for (int n = 0; n < INSTANCES; ++n) {
+			Coroutine cor = CoroutineCheckpoint.resume(template, parked[n]);
+			if (consumed[n] + drain(cor) != expected) {
+				++failed;
+			}
+			template.release(cor);
+		}
+		System.out.println(failed == 0 ? "all resumed coroutines finished their sequence" : failed + " resumed coroutines FAILED");
+
+		Coroutine cor = new Coroutine();
+		program(cor);
+		cor.start();
+		Iterator<Integer> iterator = cor.iterator();
+		long head = 0;
+		for (int k = 0; k < 40; ++k) {
+			head += iterator.next();
+		}
+		File file = File.createTempFile("coroutine", ".ckpt");
+		file.deleteOnExit();
+		CoroutineCheckpoint.save(cor, file);
+
+		Coroutine rebuilt = new Coroutine();
+		program(rebuilt);
+		rebuilt.start();
+		CoroutineCheckpoint.load(rebuilt, file);
+		System.out.printf("file %d bytes, owner %s, resumed sum %d (expected %d)%n", file.length(),
+				rebuilt.getValue("owner"), head + drain(rebuilt), expected);
+	}
+}
@@ -0,0 +1,45 @@
+package com.example.sharp.coroutine.example;
+
+/**
+ * Micro benchmark of a @Generator run interpreted (YieldHelper builds and
+ * runs a coroutine) and as the state machine written by GeneratorProcessor.
+ */
+public class CompiledGeneratorBenchmark {
+    static final int MAX = 200 * 1000;
+    static final int RUNS = 10;
+
+    static long drain(Iterable<?> iterable) {
+        long sum = 0;
+        for (Object val : iterable) {
+            sum += ((Number) val).longValue();
+        }
+        return sum;
+    }
+
+    static void report(String name, long nanos, long sum) {
+        System.out.printf("%-12s %8.2f ms %8.1f ns/element (sum %d)%n", name, nanos / 1e6, (double) nanos / RUNS / (MAX / 2 + 1), sum);
+    }
+
+    public static void main(String[] argv) {
+        Class<?>[] intArg = {int.class};
+        if (CompiledGeneratorExample.compiled("evenNumbers", intArg, 0) == null) {
+            System.out.println("state machines not found, compile with GeneratorProcessor");
+            return;
+        }
+        for (int round = 0; round < 4; ++round) {
+            long begin = System.nanoTime();
+            long sum = 0;
+            for (int i = 0; i < RUNS; ++i) {
+                sum += drain(CompiledGeneratorExample.evenNumbers(MAX));
+            }
+            report("interpreted", System.nanoTime() - begin, sum);
+
+            begin = System.nanoTime();
+            sum = 0;
+            for (int i = 0; i < RUNS; ++i) {
+                sum += drain(CompiledGeneratorExample.compiled("evenNumbers", intArg, MAX));
+            }
+            report("compiled", System.nanoTime() - begin, sum);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.sharp.coroutine.example;
+
+import com.example.sharp.Delegates;
+import com.example.sharp.annotations.Generator;
+import com.example.sharp.coroutine.YieldHelper;
+
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generators of ControlFlowExample and RecursiveToGeneratorExample written in
+ * plain Java with YieldHelper. Compiled with GeneratorProcessor, each one is
+ * also available as a state machine from CompiledGeneratorExampleGenerators,
+ * which main() compares against the interpreted version.
+ *
+ * <pre>
+ * javac -d classes src/com/example/sharp/annotations/*.java
+ * javac -processorpath classes -processor com.example.sharp.annotations.GeneratorProcessor ...
+ * </pre>
+ */
+public class CompiledGeneratorExample {
+
+    /**
+     * even numbers up to max, odd ones are skipped by continue
+     */
+    @Generator(returnType = Integer.class)
+    public static Delegates.IterableEx<Integer> evenNumbers(int max) {
+        return YieldHelper.generate((yield) -> {
+            for (int i = 0; i <= max; i++) {
+                if (i % 2 != 0) {
+                    continue;
+                }
+                yield.accept(i);
+            }
+        });
+    }
+
+    /**
+     * numbers from 1 until the first multiple of divisor, which is not yielded
+     */
+    @Generator(returnType = Integer.class)
+    public static Delegates.IterableEx<Integer> untilMultiple(int divisor) {
+        return YieldHelper.generate((yield) -> {
+            int i = 1;
+            while (true) {
+                if (i % divisor == 0) {
+                    break;
+                }
+                yield.accept(i);
+                i++;
+            }
+        });
+    }
+
+    @Generator(returnType = String.class)
+    public static Delegates.IterableEx<String> fizzBuzz(int count) {
+        return YieldHelper.generate((yield) -> {
+            for (int i = 1; i <= count; i++) {
+                if (i % 15 == 0) {
+                    yield.accept("FizzBuzz");
+                } else if (i % 3 == 0) {
+                    yield.accept("Fizz");
+                } else if (i % 5 == 0) {
+                    yield.accept("Buzz");
+                } else {
+                    yield.accept(String.valueOf(i));
+                }
+            }
+        });
+    }
+
+    /**
+     * primes below max, the inner trial division loop has no yield
+     */
+    @Generator(returnType = Integer.class)
+    public static Delegates.IterableEx<Integer> primes(int max) {
+        return YieldHelper.generate((yield) -> {
+            for (int n = 2; n < max; n++) {
+                boolean prime = true;
+                for (int d = 2; d * d <= n; d++) {
+                    if (n % d == 0) {
+                        prime = false;
+                        break;
+                    }
+                }
+                if (prime) {
+                    yield.accept(n);
+                }
+            }
+        });
+    }
+
+    @Generator(returnType = Long.class)
+    public static Delegates.IterableEx<Long> collatz(long start) {
+        return YieldHelper.generate((yield) -> {
+            long n = start;
+            do {
+                yield.accept(n);
+                n = n % 2 == 0 ? n / 2 : 3 * n + 1;
+            } while (n != 1);
+            yield.accept(1L);
+        });
+    }
+
+    @Generator(returnType = BigInteger.class)
+    public static Delegates.IterableEx<BigInteger> factorials(int max) {
+        return YieldHelper.generate((yield) -> {
+            BigInteger result = BigInteger.ONE;
+            yield.accept(result);
+            for (int i = 1; i <= max; i++) {
+                result = result.multiply(BigInteger.valueOf(i));
+                yield.accept(result);
+            }
+        });
+    }
+
+    @Generator(returnType = BigInteger.class)
+    public static Delegates.IterableEx<BigInteger> fibonacci(int count) {
+        return YieldHelper.generate((yield) -> {
+            BigInteger a = BigInteger.ZERO;
+            BigInteger b = BigInteger.ONE;
+            for (int i = 0; i < count; i++) {
+                yield.accept(a);
+                BigInteger temp = a.add(b);
+                a = b;
+                b = temp;
+            }
+        });
+    }
+
+    /**
+     * in-order walk, the recursion is replaced by an explicit stack
+     */
+    @Generator
+    public static <T> Delegates.IterableEx<T> inOrder(RecursiveToGeneratorExample.TreeNode<T> root) {
+        return YieldHelper.generate((yield) -> {
+            ArrayDeque<RecursiveToGeneratorExample.TreeNode<T>> stack = new ArrayDeque<>();
+            RecursiveToGeneratorExample.TreeNode<T> node = root;
+            while (node != null || !stack.isEmpty()) {
+                while (node != null) {
+                    stack.push(node);
+                    node = node.left;
+                }
+                node = stack.pop();
+                yield.accept(node.value);
+                node = node.right;
+            }
+        });
+    }
+
+    /**
+     * values of the words which are not longer than maxLength, ends at the
+     * first empty word
+     */
+    @Generator(returnType = String.class)
+    public static Delegates.IterableEx<String> words(int maxLength, String... words) {
+        return YieldHelper.generate((yield) -> {
+            for (String word : words) {
+                if (word.isEmpty()) {
+                    return;
+                }
+                if (word.length() <= maxLength) {
+                    yield.accept(word.toUpperCase());
+                }
+            }
+        });
+    }
+
+    static RecursiveToGeneratorExample.TreeNode<Integer> tree() {
+        return new RecursiveToGeneratorExample.TreeNode<>(5,
+                new RecursiveToGeneratorExample.TreeNode<>(3,
+                        new RecursiveToGeneratorExample.TreeNode<>(1),
+                        new RecursiveToGeneratorExample.TreeNode<>(4)),
+                new RecursiveToGeneratorExample.TreeNode<>(8,
+                        new RecursiveToGeneratorExample.TreeNode<>(6),
+                        new RecursiveToGeneratorExample.TreeNode<>(9)));
+    }
+
+    static List<Object> toList(Iterable<?> iterable) {
+        List<Object> list = new ArrayList<>();
+        for (Object value : iterable) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * state machine of a generator, or null if GeneratorProcessor did not run
+     */
+    static Iterable<?> compiled(String name, Class<?>[] types, Object... args) {
+        try {
+            Class<?> generated = Class.forName(CompiledGeneratorExample.class.getName() + "Generators");
+            Method method = generated.getMethod(name, types);
+            return (Iterable<?>) method.invoke(null, args);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    static void show(String name, Iterable<?> interpreted, Class<?>[] types, Object... args) {
+        List<Object> expected = toList(interpreted);
+        System.out.println(name + ": " + expected);
+        Iterable<?> compiled = compiled(name, types, args);
+        if (compiled == null) {
+            System.out.println("  (not compiled, run javac with GeneratorProcessor)");
+        } else {
+            System.out.println("  state machine " + (expected.equals(toList(compiled)) ? "matches" : "DIFFERS: " + toList(compiled)));
+        }
+    }
+
+    public static void main(String[] args) {
+        Class<?>[] intArg = {int.class};
+        show("evenNumbers", evenNumbers(20), intArg, 20);
+        show("untilMultiple", untilMultiple(7), intArg, 7);
+        show("fizzBuzz", fizzBuzz(15), intArg, 15);
+        show("primes", primes(50), intArg, 50);
+        show("collatz", collatz(27L), new Class<?>[]{long.class}, 27L);
+        show("factorials", factorials(10), intArg, 10);
+        show("fibonacci", fibonacci(15), intArg, 15);
+        show("inOrder", inOrder(tree()), new Class<?>[]{RecursiveToGeneratorExample.TreeNode.class}, tree());
+        String[] words = {"alpha", "be", "gamma", "pi", "", "omega"};
+        show("words", words(2, words), new Class<?>[]{int.class, String[].class}, 2, words);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.sharp.coroutine.example;
+
+import com.example.sharp.coroutine.Coroutine;
+
+/**
+ * Micro benchmark comparing the interpreted exec() path, which reads the
+ * instruction vector on every step, with the compiled dispatch loop entered by
+ * start() and driven by execUntilSuspend().
+ */
+public class CoroutineDispatchBenchmark {
+	static final int YIELD_EVERY = 1000;
+	static final int STEPS = 2 * 1000 * 1000;
+
+	static long counter;
+
+	/**
+	 * a counting loop of 3 instructions which yields every YIELD_EVERY rounds
+	 */
+	static Coroutine build() {
+		Coroutine cor = new Coroutine();
+		cor.addInstruction("_loop", (me) -> {
+			++counter;
+		});
+		cor.addInstruction((me) -> {
+			if (counter % YIELD_EVERY == 0) {
+				me.yield(counter);
+			}
+		});
+		cor.addInstruction((me) -> me.jmp("_loop"));
+		return cor;
+	}
+
+	static long interpreted() {
+		Coroutine cor = build();
+		counter = 0;
+		long begin = System.nanoTime();
+		while (counter < STEPS) {
+			while (cor.exec())
+				;
+			cor.getYieldValue();
+		}
+		return System.nanoTime() - begin;
+	}
+
+	static long compiled() {
+		Coroutine cor = build();
+		cor.start();
+		counter = 0;
+		long begin = System.nanoTime();
+		while (counter < STEPS) {
+			cor.execUntilSuspend();
+			cor.getYieldValue();
+		}
+		return System.nanoTime() - begin;
+	}
+
+	static void report(String name, long nanos) {
+		System.out.printf("%-12s %8.2f ms %8.2f ns/round%n", name, nanos / 1e6, (double) nanos / STEPS);
+	}
+
+	public static void main(String[] argv) {
+		// warm up both paths
+		for (int i = 0; i < 5; ++i) {
+			interpreted();
+			compiled();
+		}
+		for (int i = 0; i < 5; ++i) {
+			report("interpreted", interpreted());
+			report("compiled", compiled());
+		}
+	}
+}
@@ -33,4 +33,39 @@ public class CoroutineLoopExample {
     	return Delegates.forall(cor.iterator(Integer.class));
 	}
 
+	/**
+	 * same generator as integerCreator, counters are kept in int slots of the
+	 * loop frames rather than in Var, so stepping the loops does not box.
+	 * @return
+	 */
+	public static Delegates.IterableEx<Integer> integerCreatorWithSlots(){
+		Coroutine cor = new Coroutine();
+		cor.For("i", 0, 1000*1000, 1000).run((ins, i)->{
+			ins.For("j", 0, 100*100, 100).run((ins2, j)->{
+				ins2.For("k", 0, 10*10, 10).run((ins3, k)->{
+					ins3.yield(i+j+k);
+				});
+			});
+		});
+
+		return Delegates.forall(cor.iterator(Integer.class));
+	}
+
+	public static void main(String[] argv) {
+		long sum = 0;
+		long count = 0;
+		for (Integer val : integerCreator()) {
+			sum += val;
+			++count;
+		}
+		long sumSlots = 0;
+		long countSlots = 0;
+		for (Integer val : integerCreatorWithSlots()) {
+			sumSlots += val;
+			++countSlots;
+		}
+		System.out.printf("Var: %d values, sum %d\n", count, sum);
+		System.out.printf("slots: %d values, sum %d\n", countSlots, sumSlots);
+	}
+
 }
@@ -0,0 +1,112 @@
+package com.example.sharp.coroutine.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import com.example.sharp.Delegates;
+import com.example.sharp.coroutine.Coroutine;
+import com.example.sharp.coroutine.CoroutineTemplate;
+
+/**
+ * Micro benchmark of a short generator run many times, either built from
+ * scratch for every run or checked out from a CoroutineTemplate pool.
+ */
+public class CoroutinePoolBenchmark {
+	static final int RUNS = 100 * 1000;
+
+	/**
+	 * yields 0..63 from 2 nested loops, the inner loop is pushed while running
+	 */
+	static void program(Coroutine cor) {
+		cor.For("i", 0, 16, 1).run((ctx, i) -> {
+			ctx.For("j", 0, 4, 1).run((ctx2, j) -> ctx2.yield(i * 4 + j));
+		});
+	}
+
+	static long drain(Iterable<Integer> iterable) {
+		long sum = 0;
+		for (Integer val : iterable) {
+			sum += val;
+		}
+		return sum;
+	}
+
+	static long build() {
+		long sum = 0;
+		for (int i = 0; i < RUNS; ++i) {
+			Coroutine cor = new Coroutine();
+			program(cor);
+			cor.start();
+			sum += drain(cor.<Integer>iterable());
+		}
+		return sum;
+	}
+
+	static long pooled(CoroutineTemplate template) {
+		long sum = 0;
+		Delegates.IterableEx<Integer> iterable = template.iterable();
+		for (int i = 0; i < RUNS; ++i) {
+			sum += drain(iterable);
+		}
+		return sum;
+	}
+
+	static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	static void report(String name, long nanos, long bytes, long sum) {
+		System.out.printf("%-8s %8.2f ms %10.1f bytes/run (sum %d)%n", name, nanos / 1e6, (double) bytes / RUNS, sum);
+	}
+
+	/**
+	 * every pooled instance restarts the loops of the program
+	 */
+	static void reuse() {
+		CoroutineTemplate foreach = new CoroutineTemplate(
+				(cor) -> cor.Foreach(Arrays.asList(1, 2, 3)).run((ctx, v) -> ctx.yield(v)));
+		// the counter lives in the loop frame, which each instance restores
+		CoroutineTemplate forLoop = new CoroutineTemplate((cor) -> cor
+				.For((ctx) -> ctx.setValue("n", 1), (ctx) -> ctx.<Integer>getValue("n") <= 3,
+						(ctx) -> ctx.setValue("n", ctx.<Integer>getValue("n") + 1))
+				.run((ctx) -> ctx.yield(ctx.<Integer>getValue("n"))));
+		boolean ok = true;
+		for (int run = 0; run < 3; ++run) {
+			ok &= foreach.<Integer>iterable().toVector().toString().equals("[1, 2, 3]");
+			ok &= forLoop.<Integer>iterable().toVector().toString().equals("[1, 2, 3]");
+		}
+		ok &= foreach.getReusedCount() == 2 && forLoop.getReusedCount() == 2;
+		boolean rejected = false;
+		try {
+			new CoroutineTemplate((cor) -> cor.Foreach(Arrays.asList(1, 2, 3).iterator()).run((ctx, v) -> ctx.yield(v)));
+		} catch (IllegalArgumentException ee) {
+			rejected = true;
+		}
+		System.out.printf("pooled Foreach/For rerun, captured iterator rejected %s%n", ok && rejected ? "ok" : "WRONG");
+	}
+
+	public static void main(String[] argv) {
+		reuse();
+		CoroutineTemplate template = new CoroutineTemplate(CoroutinePoolBenchmark::program);
+		for (int i = 0; i < 3; ++i) {
+			build();
+			pooled(template);
+		}
+		for (int i = 0; i < 3; ++i) {
+			long bytes = allocatedBytes();
+			long begin = System.nanoTime();
+			long sum = build();
+			report("build", System.nanoTime() - begin, allocatedBytes() - bytes, sum);
+
+			bytes = allocatedBytes();
+			begin = System.nanoTime();
+			sum = pooled(template);
+			report("pooled", System.nanoTime() - begin, allocatedBytes() - bytes, sum);
+		}
+		System.out.printf("instances created %d, reused %d%n", template.getCreatedCount(), template.getReusedCount());
+	}
+}
@@ -0,0 +1,84 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.events.EventDelegate;
+import com.example.events.INotification;
+import com.example.events.INotificationEventArgs;
+
+/**
+ * 8 threads publish on an EventDelegate with 1, 10 and 1000 subscribers
+ * while another thread keeps subscribing and unsubscribing, and one-shot
+ * handlers are added. checks that no event was dropped and every one-shot
+ * handler ran exactly once, prints nanoseconds per publish and per handler
+ * call.
+ */
+public class EventDispatchBenchmark {
+	static final int PUBLISHERS = 8;
+	static final int CALLS = 4000000;
+	static final Object SENDER = new Object();
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static void run(int subscribers) throws Exception {
+		EventDelegate event = new EventDelegate();
+		LongAdder calls = new LongAdder();
+		for (int i = 0; i < subscribers; ++i) {
+			event.addDelegate((INotification) (from, args) -> calls.increment());
+		}
+		INotificationEventArgs args = new INotificationEventArgs();
+		int publishes = Math.max(1, CALLS / subscribers / PUBLISHERS);
+		AtomicLong churned = new AtomicLong();
+		AtomicLong onceRuns = new AtomicLong();
+		int onceHandlers = 100;
+		Thread churn = new Thread(() -> {
+			INotification extra = (from, a) -> {
+			};
+			int added = 0;
+			while (!Thread.currentThread().isInterrupted()) {
+				event.addDelegate(extra);
+				event.removeDelegate(extra);
+				if (added < onceHandlers) {
+					event.addDelegate((INotification) (from, a) -> onceRuns.incrementAndGet(), true);
+					++added;
+				}
+				churned.incrementAndGet();
+				Thread.yield();
+			}
+		});
+		churn.start();
+		ArrayList<Thread> threads = new ArrayList<Thread>();
+		long begin = System.nanoTime();
+		for (int t = 0; t < PUBLISHERS; ++t) {
+			Thread thread = new Thread(() -> {
+				for (int i = 0; i < publishes; ++i) {
+					event.invoke(SENDER, args);
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		long elapsed = System.nanoTime() - begin;
+		churn.interrupt();
+		churn.join();
+		// the one-shot handlers added after the publishers ended run now
+		event.invoke(SENDER, args);
+		long expected = (long) publishes * PUBLISHERS * subscribers + subscribers;
+		boolean ok = calls.sum() == expected && onceRuns.get() == Math.min(onceHandlers, churned.get());
+		System.out.printf("%5d subscribers: %8.1f ns/publish %6.2f ns/call, %d calls, %d churned %s%n", subscribers,
+				(double) elapsed / ((long) publishes * PUBLISHERS), (double) elapsed / (expected - subscribers),
+				calls.sum(), churned.get(), ok ? "ok" : "WRONG");
+	}
+
+	public static void main(String[] argv) throws Exception {
+		for (int round = 0; round < 2; ++round) {
+			run(1);
+			run(10);
+			run(1000);
+		}
+	}
+}
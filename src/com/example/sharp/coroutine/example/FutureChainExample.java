@@ -0,0 +1,105 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.example.sharp.coroutine.AsyncTask;
+import com.example.sharp.coroutine.AsyncTask.ThreadingFuture;
+import com.example.sharp.coroutine.AsyncTaskExecutor;
+
+/**
+ * chains continuations on 10000 pending futures without a waiting thread per
+ * future, then completes them and checks the results of thenApply,
+ * thenCompose, whenAll, whenAny, cancellation and CompletableFuture interop.
+ */
+public class FutureChainExample {
+	static final int COUNT = 10000;
+
+	static String check(boolean ok) {
+		return ok ? "ok" : "WRONG";
+	}
+
+	public static void main(String[] argv) throws Exception {
+		AsyncTask.DefaultExecutor = AsyncTaskExecutor.shared();
+
+		ArrayList<ThreadingFuture<Integer>> sources = new ArrayList<ThreadingFuture<Integer>>();
+		ArrayList<ThreadingFuture<Integer>> chained = new ArrayList<ThreadingFuture<Integer>>();
+		int threadsBefore = Thread.activeCount();
+		for (int i = 0; i < COUNT; ++i) {
+			ThreadingFuture<Integer> source = new ThreadingFuture<Integer>();
+			sources.add(source);
+			chained.add(source.thenApply((v) -> v + 1).thenCompose((v) -> AsyncTask.runAsync(() -> v * 2)));
+		}
+		int threadsPending = Thread.activeCount();
+		boolean pending = true;
+		for (ThreadingFuture<Integer> future : chained) {
+			pending &= !future.isDone();
+		}
+		System.out.printf("%d pending chains, %d threads before, %d while pending, none done %s%n", COUNT,
+				threadsBefore, threadsPending, check(pending));
+
+		ThreadingFuture<ArrayList<Integer>> all = ThreadingFuture.whenAll(chained);
+		ThreadingFuture<Integer> any = ThreadingFuture.whenAny(chained);
+		long begin = System.nanoTime();
+		for (int i = 0; i < COUNT; ++i) {
+			sources.get(i).complete(i);
+		}
+		ArrayList<Integer> values = all.get();
+		boolean ordered = values.size() == COUNT;
+		for (int i = 0; ordered && i < COUNT; ++i) {
+			ordered = values.get(i) == (i + 1) * 2;
+		}
+		System.out.printf("whenAll %s in %.1f ms, whenAny %s%n", check(ordered), (System.nanoTime() - begin) / 1e6,
+				check(any.get() % 2 == 0));
+
+		ThreadingFuture<Integer> failing = AsyncTask.runAsync(() -> {
+			throw new IllegalStateException("broken");
+		});
+		ThreadingFuture<Integer> afterFailure = failing.thenApply((v) -> v + 1);
+		boolean failed;
+		try {
+			afterFailure.get();
+			failed = false;
+		} catch (ExecutionException ee) {
+			failed = ee.getCause() instanceof IllegalStateException;
+		}
+		System.out.printf("failure passed on %s, done %s%n", check(failed), check(afterFailure.isDone()));
+
+		ThreadingFuture<Integer> slow = AsyncTask.runAsync(() -> {
+			try {
+				Thread.sleep(10000);
+			} catch (InterruptedException ee) {
+				// cancelled
+			}
+			return 1;
+		});
+		ThreadingFuture<Integer> afterCancel = slow.thenApply((v) -> v + 1);
+		boolean timedOut;
+		try {
+			slow.get(10, TimeUnit.MILLISECONDS);
+			timedOut = false;
+		} catch (TimeoutException ee) {
+			timedOut = true;
+		}
+		boolean cancelled = slow.cancel(true) && slow.isCancelled() && slow.isDone();
+		boolean dependentCancelled;
+		try {
+			afterCancel.get();
+			dependentCancelled = false;
+		} catch (ExecutionException ee) {
+			dependentCancelled = ee.getCause() instanceof CancellationException;
+		}
+		System.out.printf("timeout %s, cancel %s, dependent %s%n", check(timedOut), check(cancelled),
+				check(dependentCancelled));
+
+		CompletableFuture<String> completable = AsyncTask.runAsync(() -> "from ThreadingFuture").toCompletableFuture()
+				.thenApply((s) -> s + " via CompletableFuture");
+		ThreadingFuture<String> back = ThreadingFuture.fromCompletableFuture(completable).thenApply((s) -> s + " and back");
+		System.out.println(back.get());
+		System.out.println(AsyncTask.DefaultExecutor);
+	}
+}
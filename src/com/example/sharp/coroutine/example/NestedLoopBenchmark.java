@@ -0,0 +1,57 @@
+package com.example.sharp.coroutine.example;
+
+import com.example.sharp.Delegates;
+import com.example.sharp.coroutine.Coroutine;
+
+/**
+ * Micro benchmark of generators nested in For loops at depth 1, 8 and 64. the
+ * outer loops run once, the innermost one yields every element, so the cost
+ * per element shows how stepping scales with nesting depth.
+ */
+public class NestedLoopBenchmark {
+	static final int ELEMENTS = 200 * 1000;
+
+	static void nest(Coroutine cor, int level, int depth) {
+		if (level == depth - 1) {
+			cor.For("i", 0, ELEMENTS, 1).run((ctx, i) -> ctx.yield(i));
+			return;
+		}
+		cor.For("l", 0, 1, 1).run((ctx, l) -> nest(ctx, level + 1, depth));
+	}
+
+	static Delegates.IterableEx<Integer> generator(int depth) {
+		Coroutine cor = new Coroutine();
+		nest(cor, 0, depth);
+		cor.start();
+		return cor.iterable();
+	}
+
+	static long run(int depth) {
+		long begin = System.nanoTime();
+		long count = 0;
+		for (Integer val : generator(depth)) {
+			++count;
+		}
+		long elapsed = System.nanoTime() - begin;
+		if (count != ELEMENTS) {
+			throw new IllegalStateException("depth " + depth + " yields " + count);
+		}
+		return elapsed;
+	}
+
+	public static void main(String[] argv) {
+		int[] depths = { 1, 8, 64 };
+		for (int i = 0; i < 3; ++i) {
+			for (int depth : depths) {
+				run(depth);
+			}
+		}
+		for (int i = 0; i < 3; ++i) {
+			for (int depth : depths) {
+				long nanos = run(depth);
+				System.out.printf("depth %2d %8.2f ms %8.2f ns/element%n", depth, nanos / 1e6,
+						(double) nanos / ELEMENTS);
+			}
+		}
+	}
+}
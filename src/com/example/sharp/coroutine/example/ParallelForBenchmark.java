@@ -0,0 +1,123 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.sharp.Delegates;
+import com.example.sharp.coroutine.CancellationTokenSource;
+import com.example.sharp.coroutine.Parallelx;
+
+/**
+ * Micro benchmark of the Parallelx.For schedulers over loop sizes from 1e2 to
+ * 1e7, pass a larger maximum size (up to 1e8) as first argument. the last
+ * column is RuntimeLoadBalance with Dynamic chunks of 64 indexes. every body
+ * adds its index into a padded per-thread slot, the slots are summed and
+ * checked against the closed form. a second table runs the same loops with
+ * boxed Action3, primitive IntAction and LongRangeAction bodies. the last
+ * check sets IsCancellationRequested on the caller's source from a body and
+ * expects every scheduler to stop early.
+ */
+public class ParallelForBenchmark {
+	static final int PAD = 16;
+	static final int ROUNDS = 5;
+
+	static long[] slots = new long[0];
+
+	static long sum() {
+		long sum = 0;
+		for (int i = 0; i < slots.length; i += PAD) {
+			sum += slots[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * @return best nanoseconds of ROUNDS runs, or -1 if a sum was wrong
+	 */
+	static long run(int size, Delegates.Action1<Delegates.Action3<Integer, CancellationTokenSource, Integer>> loop) {
+		long best = Long.MAX_VALUE;
+		long expected = (long) size * (size - 1) / 2;
+		for (int round = 0; round < ROUNDS; ++round) {
+			// thread ids of the work stealing pool may exceed Concurrency
+			// when it adds spare workers, leave room for them
+			slots = new long[(Parallelx.Concurrency * 2 + 1) * PAD];
+			long begin = System.nanoTime();
+			loop.Invoke((i, cts, threadid) -> {
+				slots[threadid * PAD] += i;
+			});
+			long elapsed = System.nanoTime() - begin;
+			if (sum() != expected) {
+				return -1;
+			}
+			best = Math.min(best, elapsed);
+		}
+		return best;
+	}
+
+	static void primitives(int max) {
+		System.out.printf("%n%10s %-18s %14s %14s %14s%n", "size", "scheduler", "Action3", "IntAction",
+				"LongRangeAction");
+		for (int size = 100; size <= max; size *= 10) {
+			final int _size = size;
+			for (Parallelx.ParallelForScheduler scheduler : Parallelx.ParallelForScheduler.values()) {
+				System.out.printf("%10d %-18s", size, scheduler);
+				print(run(size, (body) -> Parallelx.For(0, _size, body, true, scheduler)));
+				print(run(size, (body) -> Parallelx.For(0, _size, (int i, int worker) -> {
+					slots[worker * PAD] += i;
+				}, true, scheduler)));
+				print(run(size, (body) -> Parallelx.For(0, _size, 0, (long from, long to, int worker) -> {
+					long sum = 0;
+					for (long i = from; i < to; ++i) {
+						sum += i;
+					}
+					slots[worker * PAD] += sum;
+				}, true, scheduler)));
+				System.out.println();
+			}
+		}
+	}
+
+	static void print(long nanos) {
+		if (nanos < 0) {
+			System.out.printf(" %18s", "WRONG SUM");
+		} else {
+			System.out.printf(" %12.3f ms   ", nanos / 1e6);
+		}
+	}
+
+	static void flagCancel() {
+		final int size = 2000000;
+		System.out.printf("%n%-18s %14s%n", "scheduler", "ran of " + size);
+		for (Parallelx.ParallelForScheduler scheduler : Parallelx.ParallelForScheduler.values()) {
+			CancellationTokenSource cts = new CancellationTokenSource();
+			AtomicLong ran = new AtomicLong();
+			Parallelx.For(0, size, (int i, int worker) -> {
+				if (ran.incrementAndGet() == 1000) {
+					cts.IsCancellationRequested = true;
+				}
+			}, cts, true, scheduler);
+			System.out.printf("%-18s %14d %s%n", scheduler, ran.get(), ran.get() < size ? "stopped" : "NOT STOPPED");
+		}
+	}
+
+	public static void main(String[] argv) {
+		int max = argv.length > 0 ? (int) Math.min(Double.parseDouble(argv[0]), 1e8) : 10 * 1000 * 1000;
+		Parallelx.ParallelForScheduler[] schedulers = Parallelx.ParallelForScheduler.values();
+		System.out.printf("%d threads%n%10s", Parallelx.Concurrency, "size");
+		for (Parallelx.ParallelForScheduler scheduler : schedulers) {
+			System.out.printf(" %18s", scheduler);
+		}
+		System.out.printf(" %18s", "Dynamic64");
+		System.out.println();
+		for (int size = 100; size <= max; size *= 10) {
+			System.out.printf("%10d", size);
+			final int _size = size;
+			for (Parallelx.ParallelForScheduler scheduler : schedulers) {
+				print(run(size, (body) -> Parallelx.For(0, _size, body, true, scheduler)));
+			}
+			print(run(size, (body) -> Parallelx.For(0, _size, body, null, true, Parallelx.ChunkPolicy.Dynamic, 64)));
+			System.out.println();
+		}
+		primitives(max);
+		flagCancel();
+	}
+}
@@ -0,0 +1,110 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.ArrayList;
+import java.util.Vector;
+
+import com.example.sharp.Delegates;
+import com.example.sharp.Dictionary;
+import com.example.sharp.coroutine.Coroutine;
+import com.example.sharp.coroutine.Parallelx;
+
+/**
+ * runs the same filter/translate pipeline over a million records
+ * sequentially and with parallel(), from an ArrayList, an array and a
+ * coroutine generator, and compares the toArrayList(), group() and reduce()
+ * results.
+ */
+public class ParallelPipelineExample {
+	static final int COUNT = 1000 * 1000;
+
+	static class Record {
+		final int id;
+		final String name;
+
+		Record(int id) {
+			this.id = id;
+			this.name = "record-" + id;
+		}
+	}
+
+	/**
+	 * some work per record, so the pipeline is not bound by memory only
+	 */
+	static long score(Record record) {
+		long hash = record.name.hashCode();
+		for (int i = 0; i < 50; ++i) {
+			hash = hash * 6364136223846793005L + 1442695040888963407L;
+		}
+		return (hash >>> 1) % 1000;
+	}
+
+	static Coroutine generator() {
+		Coroutine cor = new Coroutine();
+		cor.For("i", 0, COUNT, 1).run((ctx, i) -> ctx.yield(new Record(i)));
+		cor.start();
+		return cor;
+	}
+
+	static boolean same(ArrayList<Long> expected, ArrayList<Long> actual) {
+		return expected.equals(actual);
+	}
+
+	static boolean same(Dictionary<Long, Vector<Long>> expected, Dictionary<Long, Vector<Long>> actual) {
+		if (expected.size() != actual.size()) {
+			return false;
+		}
+		for (Long key : expected.keySet()) {
+			if (!expected.get(key).equals(actual.get(key))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static void main(String[] argv) {
+		ArrayList<Record> records = new ArrayList<Record>(COUNT);
+		for (int i = 0; i < COUNT; ++i) {
+			records.add(new Record(i));
+		}
+		Record[] array = records.toArray(new Record[0]);
+
+		for (int round = 0; round < 3; ++round) {
+			long begin = System.nanoTime();
+			ArrayList<Long> expected = Delegates.forall(records).filter((r) -> r.id % 3 != 0)
+					.translate(ParallelPipelineExample::score).toArrayList();
+			long sequential = System.nanoTime() - begin;
+
+			begin = System.nanoTime();
+			ArrayList<Long> fromList = Delegates.forall(records).parallel().filter((r) -> r.id % 3 != 0)
+					.translate(ParallelPipelineExample::score).toArrayList();
+			long list = System.nanoTime() - begin;
+
+			begin = System.nanoTime();
+			ArrayList<Long> fromArray = Delegates.forall(array).parallel().filter((r) -> r.id % 3 != 0)
+					.translate(ParallelPipelineExample::score).toArrayList();
+			long arr = System.nanoTime() - begin;
+
+			Coroutine cor = generator();
+			begin = System.nanoTime();
+			ArrayList<Long> fromGenerator = cor.<Record>iterable().parallel().filter((r) -> r.id % 3 != 0)
+					.translate(ParallelPipelineExample::score).toArrayList();
+			long gen = System.nanoTime() - begin;
+
+			System.out.printf("toArrayList: sequential %.1f ms, list %.1f ms %s, array %.1f ms %s, generator %.1f ms %s%n",
+					sequential / 1e6, list / 1e6, same(expected, fromList) ? "ok" : "WRONG", arr / 1e6,
+					same(expected, fromArray) ? "ok" : "WRONG", gen / 1e6, same(expected, fromGenerator) ? "ok" : "WRONG");
+		}
+
+		Dictionary<Long, Vector<Long>> groups = Delegates.forall(records).translate(ParallelPipelineExample::score)
+				.group((s) -> s % 10);
+		for (Parallelx.ParallelForScheduler scheduler : Parallelx.ParallelForScheduler.values()) {
+			Dictionary<Long, Vector<Long>> parallelGroups = Delegates.forall(records).parallel().withScheduler(scheduler)
+					.translate(ParallelPipelineExample::score).group((s) -> s % 10);
+			Long max = Delegates.forall(records).translate(ParallelPipelineExample::score).reduce(Math::max);
+			Long parallelMax = Delegates.forall(records).parallel().withScheduler(scheduler)
+					.translate(ParallelPipelineExample::score).reduce(Math::max);
+			System.out.printf("%-18s group %s, reduce %s%n", scheduler, same(groups, parallelGroups) ? "ok" : "WRONG",
+					max.equals(parallelMax) ? "ok" : "WRONG");
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.example.sharp.coroutine.Parallelx;
+
+/**
+ * parallel sums, a min/max, a histogram and a map merge with
+ * Parallelx.Aggregate, checked against sequential loops for every scheduler.
+ * the double sum is run twice per scheduler to show which schedulers give
+ * reproducible floating point results.
+ */
+public class ParallelReduceExample {
+	static final int COUNT = 2 * 1000 * 1000;
+
+	static double value(int i) {
+		return Math.sin(i) * 1e6 + 1.0 / (i + 1);
+	}
+
+	public static void main(String[] argv) {
+		long longSum = 0;
+		double doubleSum = 0;
+		int[] histogram = new int[16];
+		for (int i = 0; i < COUNT; ++i) {
+			longSum += (long) i * i;
+			doubleSum += value(i);
+			histogram[(i * 31) & 15]++;
+		}
+		ArrayList<String> words = new ArrayList<String>();
+		for (int i = 0; i < 10000; ++i) {
+			words.add("w" + (i % 37));
+		}
+
+		for (Parallelx.ParallelForScheduler scheduler : Parallelx.ParallelForScheduler.values()) {
+			long begin = System.nanoTime();
+			long parallelLong = Parallelx.SumLong(0, COUNT, (i) -> (long) i * i, scheduler);
+			double first = Parallelx.SumDouble(0, COUNT, ParallelReduceExample::value, scheduler);
+			double second = Parallelx.SumDouble(0, COUNT, ParallelReduceExample::value, scheduler);
+			int intSum = Parallelx.SumInt(0, COUNT, (i) -> i & 7, scheduler);
+			long elapsed = System.nanoTime() - begin;
+
+			int[] parallelHistogram = Parallelx.Aggregate(0, COUNT, 0, () -> new int[16],
+					(int[] bins, long from, long to) -> {
+						for (long i = from; i < to; ++i) {
+							bins[(int) (i * 31) & 15]++;
+						}
+						return bins;
+					}, (int[] a, int[] b) -> {
+						for (int k = 0; k < a.length; ++k) {
+							a[k] += b[k];
+						}
+						return a;
+					}, scheduler);
+			boolean histogramOk = true;
+			for (int k = 0; k < 16; ++k) {
+				histogramOk &= parallelHistogram[k] == histogram[k];
+			}
+
+			Integer max = Parallelx.Reduce(0, COUNT, Integer.MIN_VALUE, (i) -> (i * 7919) % 100003, Math::max, scheduler);
+
+			Map<String, Integer> counts = Parallelx.Aggregate(words, () -> new HashMap<String, Integer>(),
+					(Map<String, Integer> map, String word) -> {
+						map.merge(word, 1, Integer::sum);
+						return map;
+					}, (Map<String, Integer> a, Map<String, Integer> b) -> {
+						b.forEach((word, count) -> a.merge(word, count, Integer::sum));
+						return a;
+					}, scheduler);
+
+			System.out.printf("%-18s long %s, int %s, double %s (%s), histogram %s, max %d, words %s, %.1f ms%n",
+					scheduler, parallelLong == longSum ? "ok" : "WRONG", intSum == 28 * (COUNT / 8) ? "ok" : "WRONG",
+					Math.abs(first - doubleSum) < 1e-3 * Math.abs(doubleSum) ? "ok" : "WRONG",
+					first == second ? "reproducible" : "differs by " + (first - second), histogramOk ? "ok" : "WRONG",
+					max, counts.size() == 37 && counts.get("w0") == 271 ? "ok" : "WRONG", elapsed / 1e6);
+		}
+	}
+}
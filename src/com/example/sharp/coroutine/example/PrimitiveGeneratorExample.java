@@ -0,0 +1,101 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.NoSuchElementException;
+
+import com.example.sharp.coroutine.Coroutine;
+import com.example.sharp.coroutine.DoubleGenerator;
+import com.example.sharp.coroutine.IntGenerator;
+import com.example.sharp.coroutine.LongGenerator;
+import com.example.sharp.coroutine.YieldHelper;
+
+/**
+ * numeric generators yielding primitives, the long/int counterparts of
+ * FibbonaciCoroutine and PrimeCoroutine. state lives in coroutine slots and
+ * values are never boxed, so stepping them does not allocate per element.
+ */
+public class PrimitiveGeneratorExample {
+
+	/**
+	 * fibonacci numbers which fit into a long (the first 92)
+	 */
+	public static LongGenerator fibonacci() {
+		Coroutine cor = new Coroutine();
+		int a = cor.declareSlot("a");
+		int b = cor.declareSlot("b");
+		cor.setLongSlot(b, 1);
+		cor.addInstruction("_label1", (me) -> {
+			long next = me.getLongSlot(a) + me.getLongSlot(b);
+			me.setLongSlot(a, me.getLongSlot(b));
+			me.setLongSlot(b, next);
+			me.yieldLong(me.getLongSlot(a));
+		});
+		cor.addInstruction((me) -> {
+			if (me.getLongSlot(b) > 0) {
+				me.jmp("_label1");
+			}
+		});
+		cor.start();
+		return new LongGenerator(cor);
+	}
+
+	/**
+	 * primes below max by trial division
+	 */
+	public static IntGenerator primes(int max) {
+		Coroutine cor = new Coroutine();
+		cor.For("n", 2, max, 1).run((ctx, n) -> {
+			for (int d = 2; d * d <= n; ++d) {
+				if (n % d == 0) {
+					return;
+				}
+			}
+			ctx.yieldInt(n);
+		});
+		cor.start();
+		return new IntGenerator(cor);
+	}
+
+	/**
+	 * halves of 1..count, written with the primitive yield collector
+	 */
+	public static DoubleGenerator halves(int count) {
+		return YieldHelper.generateDouble((yield) -> {
+			for (int i = 1; i <= count; ++i) {
+				yield.accept(i / 2.0);
+			}
+		});
+	}
+
+	public static void main(String[] argv) {
+		System.out.println("=== Fibonacci (long) ===");
+		LongGenerator fib = fibonacci();
+		int count = 0;
+		while (fib.hasNext()) {
+			long value = fib.nextLong();
+			if (count++ < 20) {
+				System.out.print(value + " ");
+			}
+		}
+		System.out.println("... " + count + " values");
+
+		System.out.println("=== Primes below 100 (int) ===");
+		IntGenerator primes = primes(100);
+		while (primes.hasNext()) {
+			System.out.print(primes.nextInt() + " ");
+		}
+		System.out.println();
+
+		System.out.println("=== Halves (double) ===");
+		DoubleGenerator halves = halves(6);
+		while (halves.hasNext()) {
+			System.out.print(halves.nextDouble() + " ");
+		}
+		System.out.println();
+		try {
+			halves.nextDouble();
+			System.out.println("nextDouble() past the end: WRONG");
+		} catch (NoSuchElementException e) {
+			System.out.println("nextDouble() past the end: ok");
+		}
+	}
+}
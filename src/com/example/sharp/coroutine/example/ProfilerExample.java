@@ -0,0 +1,46 @@
+package com.example.sharp.coroutine.example;
+
+import com.example.sharp.coroutine.Coroutine;
+import com.example.sharp.coroutine.CoroutineProfiler;
+
+/**
+ * profiles a pipeline with a labeled setup step, a cheap outer loop and an
+ * expensive inner loop, then prints the per-instruction report.
+ */
+public class ProfilerExample {
+
+	static Coroutine pipeline() {
+		Coroutine cor = new Coroutine();
+		cor.setName("pipeline");
+		cor.addInstruction("setup", (ctx) -> ctx.setValue("scale", 3));
+		cor.For("row", 0, 20, 1).run((ctx, row) -> {
+			Coroutine rowFrame = ctx.push("row");
+			rowFrame.For("col", 0, 50, 1).run((inner, col) -> {
+				double sum = 0;
+				for (int k = 0; k < 2000; ++k) {
+					sum += Math.sqrt(row * col + k);
+				}
+				inner.yield(sum);
+			});
+		});
+		cor.addInstruction("done", (ctx) -> ctx.yield(-1.0));
+		cor.start();
+		return cor;
+	}
+
+	public static void main(String[] argv) {
+		CoroutineProfiler profiler = new CoroutineProfiler();
+		Coroutine cor = pipeline();
+		cor.setProfiler(profiler);
+		int count = 0;
+		for (Object value : cor.iterable()) {
+			++count;
+		}
+		System.out.println(count + " values");
+		System.out.print(profiler.report());
+
+		CoroutineProfiler.Node root = profiler.getRoot();
+		System.out.printf("total %.3f ms, %d instructions, %d yields%n", root.getTotalNanos() / 1e6,
+				root.getTotalCount(), root.getTotalYields());
+	}
+}
@@ -0,0 +1,103 @@
+package com.example.sharp.coroutine.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.events.EventDelegate;
+import com.example.events.INotificationEventArgs;
+import com.example.sharp.LRUDictionary;
+
+/**
+ * publishes through chains of 1 to 8 route1() hops to a Callback1 and a
+ * Handler1 at the end, then disposes a hop in the middle and checks the
+ * subscribers below it are detached while the others still get events. also
+ * writes to an LRUDictionary with an ItemAdded subscriber. prints nanoseconds
+ * and allocated bytes per publish.
+ */
+public class RouteBenchmark {
+	static final int COUNT = 5000000;
+
+	static long allocated() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread
+				.currentThread().getId());
+	}
+
+	static void report(String title, long begin, long bytes, int count, boolean ok) {
+		long elapsed = System.nanoTime() - begin;
+		System.out.printf("%-26s %6.1f ns %7.1f bytes per publish %s%n", title, (double) elapsed / count,
+				(double) (allocated() - bytes) / count, ok ? "ok" : "WRONG");
+	}
+
+	static void run(int hops) {
+		EventDelegate.Event1<Integer> root = new EventDelegate.Event1<Integer>();
+		ArrayList<EventDelegate.Event1<Integer>> chain = new ArrayList<EventDelegate.Event1<Integer>>();
+		chain.add(root);
+		LongAdder top = new LongAdder();
+		root.subscribe((from, value) -> top.increment());
+		for (int i = 1; i <= hops; ++i) {
+			chain.add(chain.get(i - 1).<Integer> route1());
+		}
+		LongAdder typed = new LongAdder();
+		chain.get(hops).subscribe((from, value) -> typed.add(value));
+		Integer value = 3;
+		long bytes = allocated();
+		long begin = System.nanoTime();
+		for (int i = 0; i < COUNT; ++i) {
+			root.invoke(root, value);
+		}
+		report(hops + " hops, Callback1", begin, bytes, COUNT, typed.sum() == 3L * COUNT && top.sum() == COUNT);
+
+		LongAdder legacy = new LongAdder();
+		chain.get(hops).addDelegate((EventDelegate.Handler1<Integer>) (from, args) -> legacy.add(args.get_1()));
+		bytes = allocated();
+		begin = System.nanoTime();
+		for (int i = 0; i < COUNT; ++i) {
+			root.invoke(root, value);
+		}
+		// one args object for the whole chain
+		report(hops + " hops, +Handler1", begin, bytes, COUNT, legacy.sum() == 3L * COUNT);
+
+		// detach the middle hop, the end of the chain goes quiet
+		typed.reset();
+		legacy.reset();
+		top.reset();
+		chain.get((hops + 1) / 2).dispose();
+		root.invoke(root, value);
+		boolean detached = typed.sum() == 0 && legacy.sum() == 0 && top.sum() == 1;
+		// subscribing below a detached hop does not reach the root anymore
+		chain.get(hops).subscribe((from, v) -> typed.increment());
+		root.invoke(root, value);
+		detached &= typed.sum() == 0 && root.getInvocationList().size() == ((hops + 1) / 2 > 1 ? 1 : 0);
+		System.out.printf("%-26s %s%n", hops + " hops, dispose", detached ? "ok" : "WRONG");
+	}
+
+	public static void main(String[] argv) {
+		for (int round = 0; round < 2; ++round) {
+			run(1);
+			run(4);
+			run(8);
+
+			// a route added to the end of a chain later shows up at once
+			EventDelegate.Event1<String> root = new EventDelegate.Event1<String>();
+			EventDelegate.Event1<String> middle = root.route1();
+			LongAdder late = new LongAdder();
+			root.invoke(root, "a");
+			middle.route1().subscribe((from, s) -> late.increment());
+			root.invoke(root, (INotificationEventArgs) EventDelegate.args("b"));
+			System.out.printf("%-26s %s%n", "late route", late.sum() == 1 ? "ok" : "WRONG");
+
+			LRUDictionary<Integer, Integer> lru = new LRUDictionary<Integer, Integer>(1 << 20);
+			LongAdder added = new LongAdder();
+			lru.ItemAdded.subscribe((from, key) -> added.increment());
+			int count = 1 << 20;
+			long bytes = allocated();
+			long begin = System.nanoTime();
+			for (int i = 0; i < count; ++i) {
+				lru.set(i, i);
+			}
+			report("LRUDictionary.set", begin, bytes, count, added.sum() == count);
+			lru.dispose();
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.sharp.coroutine.Coroutine;
+import com.example.sharp.coroutine.CoroutineScheduler;
+
+/**
+ * runs 10000 small state machines on 4 carrier threads, each one counts to 100
+ * and yields every value.
+ */
+public class SchedulerExample {
+
+	static Coroutine counter() {
+		Coroutine cor = new Coroutine();
+		cor.For("i", 0, 100, 1).run((ctx, i) -> ctx.yield(i));
+		cor.start();
+		return cor;
+	}
+
+	public static void main(String[] argv) throws InterruptedException {
+		CoroutineScheduler scheduler = new CoroutineScheduler(4, 64, CoroutineScheduler.Fairness.RoundRobin);
+		AtomicLong sum = new AtomicLong();
+		ArrayList<CoroutineScheduler.Task<Integer>> tasks = new ArrayList<>();
+		long begin = System.nanoTime();
+		for (int i = 0; i < 10000; ++i) {
+			CoroutineScheduler.Task<Integer> task = scheduler.schedule(counter(), (Integer value) -> sum.addAndGet(value));
+			tasks.add(task);
+		}
+		for (CoroutineScheduler.Task<Integer> task : tasks) {
+			task.join();
+		}
+		long elapsed = System.nanoTime() - begin;
+		System.out.printf("sum %d (expected %d) in %.2f ms%n", sum.get(), 10000L * 4950, elapsed / 1e6);
+		System.out.println(scheduler);
+		System.out.printf("%.0f instructions/s%n", scheduler.getThroughput());
+		scheduler.shutdown();
+
+		// tasks left over at shutdown are done with an error, join() returns
+		CoroutineScheduler stopped = new CoroutineScheduler(1, 64, CoroutineScheduler.Fairness.RoundRobin);
+		CoroutineScheduler.Task<Integer> parked = stopped.schedule(counter());
+		parked.park();
+		CoroutineScheduler.Task<Integer> endless = stopped.schedule(endless());
+		stopped.shutdown();
+		boolean joined = parked.join(1000) && endless.join(1000);
+		System.out.printf("shutdown: %s, %s%n", parked.getError(), joined && stopped.getLiveCount() == 0 ? "ok" : "WRONG");
+	}
+
+	static Coroutine endless() {
+		Coroutine cor = new Coroutine();
+		cor.While(() -> true).run(ctx -> ctx.yield(1));
+		cor.start();
+		return cor;
+	}
+}
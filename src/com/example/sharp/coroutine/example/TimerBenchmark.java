@@ -0,0 +1,86 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.events.EventDelegate;
+import com.example.events.INotification;
+import com.example.events.INotificationEventArgs;
+import com.example.sharp.Timer;
+import com.example.sharp.TimerWheel;
+
+/**
+ * starts 100000 Timers with intervals of 100 to 1000ms on the shared wheel,
+ * counts their ticks for a few seconds and changes intervals while they run,
+ * then measures raw schedule and cancel throughput of a TimerWheel. a
+ * java.util.Timer per instance, as Timer used before, needs one thread per
+ * timer; here the thread count stays constant.
+ */
+public class TimerBenchmark {
+	static final int TIMERS = 100000;
+	static final int SECONDS = 3;
+	static final int OPS = 1000000;
+
+	public static void main(String[] argv) throws Exception {
+		int threadsBefore = Thread.activeCount();
+		Random random = new Random(42);
+		AtomicLong ticks = new AtomicLong();
+		INotification<INotificationEventArgs> handler = (from, args) -> ticks.incrementAndGet();
+		ArrayList<Timer> timers = new ArrayList<Timer>();
+		double expected = 0;
+		long begin = System.nanoTime();
+		for (int i = 0; i < TIMERS; ++i) {
+			Timer timer = new Timer(null);
+			long interval = 100 + random.nextInt(901);
+			timer.setInterval(interval);
+			// Tick is a raw EventDelegate
+			@SuppressWarnings("unchecked")
+			EventDelegate<INotification<INotificationEventArgs>> tick = timer.Tick;
+			tick.addDelegate(handler);
+			timer.start();
+			timers.add(timer);
+			expected += SECONDS * 1000.0 / interval;
+		}
+		double startMs = (System.nanoTime() - begin) / 1e6;
+		System.out.printf("%d timers started in %.1f ms, %d threads before, %d now%n", TIMERS, startMs, threadsBefore,
+				Thread.activeCount());
+
+		// count the ticks of SECONDS from here, change the intervals of a tenth
+		// of the timers half way
+		ticks.set(0);
+		Thread.sleep(SECONDS * 500);
+		begin = System.nanoTime();
+		for (int i = 0; i < TIMERS; i += 10) {
+			timers.get(i).setInterval(100 + random.nextInt(901));
+		}
+		System.out.printf("%d intervals changed in %.1f ms, %d threads%n", TIMERS / 10,
+				(System.nanoTime() - begin) / 1e6, Thread.activeCount());
+		Thread.sleep(SECONDS * 500);
+		long counted = ticks.get();
+		for (Timer timer : timers) {
+			timer.stop();
+		}
+		System.out.printf("%d ticks in %d s, about %.0f expected, %d pending after stop %s%n", counted, SECONDS,
+				expected, TimerWheel.shared().getPendingCount(),
+				Math.abs(counted - expected) < expected * 0.2 && TimerWheel.shared().getPendingCount() == 0 ? "ok" : "WRONG");
+
+		TimerWheel wheel = new TimerWheel(1, 256);
+		TimerWheel.Timeout[] scheduled = new TimerWheel.Timeout[OPS];
+		for (int round = 0; round < 3; ++round) {
+			begin = System.nanoTime();
+			for (int i = 0; i < OPS; ++i) {
+				scheduled[i] = wheel.schedule(1000 + (i & 0xffff), () -> {
+				});
+			}
+			long scheduleNanos = System.nanoTime() - begin;
+			begin = System.nanoTime();
+			for (int i = 0; i < OPS; ++i) {
+				scheduled[i].cancel();
+			}
+			long cancelNanos = System.nanoTime() - begin;
+			System.out.printf("schedule %.0f ns/op, cancel %.0f ns/op, %d pending%n", (double) scheduleNanos / OPS,
+					(double) cancelNanos / OPS, wheel.getPendingCount());
+		}
+	}
+}
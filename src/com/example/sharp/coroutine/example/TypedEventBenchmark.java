@@ -0,0 +1,88 @@
+package com.example.sharp.coroutine.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.events.EventDelegate;
+import com.example.events.INotificationEventArgs;
+import com.example.sharp.Dictionary;
+
+/**
+ * publishes on an Event2 without subscribers, to a typed Callback2 and to a
+ * Handler2 receiving an args object, and writes to a Dictionary with and
+ * without an ItemUpdated subscriber. prints nanoseconds and allocated bytes
+ * per publish; what Dictionary.set allocates is its map entry and boxed key.
+ */
+public class TypedEventBenchmark {
+	static final int COUNT = 5000000;
+
+	static long allocated() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread
+				.currentThread().getId());
+	}
+
+	static void report(String title, long begin, long bytes, LongAdder calls, long expected) {
+		long elapsed = System.nanoTime() - begin;
+		System.out.printf("%-24s %6.1f ns %7.1f bytes per publish %s%n", title, (double) elapsed / COUNT,
+				(double) (allocated() - bytes) / COUNT, calls.sum() == expected ? "ok" : "WRONG");
+	}
+
+	public static void main(String[] argv) {
+		for (int round = 0; round < 2; ++round) {
+			LongAdder calls = new LongAdder();
+			EventDelegate.Event2<String, Integer> event = new EventDelegate.Event2<String, Integer>();
+			Integer value = 42;
+
+			long bytes = allocated();
+			long begin = System.nanoTime();
+			for (int i = 0; i < COUNT; ++i) {
+				event.invoke(event, "key", value);
+			}
+			report("no subscriber", begin, bytes, calls, 0);
+
+			EventDelegate.Callback2<String, Integer> callback = event.subscribe((from, key, v) -> calls.add(v));
+			bytes = allocated();
+			begin = System.nanoTime();
+			for (int i = 0; i < COUNT; ++i) {
+				event.invoke(event, "key", value);
+			}
+			report("Callback2", begin, bytes, calls, 42L * COUNT);
+			event.unsubscribe(callback);
+
+			calls.reset();
+			event.addDelegate((EventDelegate.Handler2<String, Integer>) (from, args) -> calls.add(args.get_2()));
+			bytes = allocated();
+			begin = System.nanoTime();
+			for (int i = 0; i < COUNT; ++i) {
+				event.invoke(event, "key", value);
+			}
+			report("Handler2", begin, bytes, calls, 42L * COUNT);
+
+			// typed callbacks also work with the args object of old publishers
+			calls.reset();
+			event.clear();
+			event.subscribe((from, key, v) -> calls.add(v));
+			event.invoke(event, (INotificationEventArgs) EventDelegate.args("key", value));
+			System.out.printf("Callback2 from args %s%n", calls.sum() == 42 ? "ok" : "WRONG");
+
+			Dictionary<Integer, Integer> dict = new Dictionary<Integer, Integer>();
+			for (int i = 0; i < 1024; ++i) {
+				dict.set(i, i);
+			}
+			calls.reset();
+			bytes = allocated();
+			begin = System.nanoTime();
+			for (int i = 0; i < COUNT; ++i) {
+				dict.set(i & 1023, value);
+			}
+			report("Dictionary.set", begin, bytes, calls, 0);
+			dict.ItemUpdated.subscribe((from, key) -> calls.increment());
+			bytes = allocated();
+			begin = System.nanoTime();
+			for (int i = 0; i < COUNT; ++i) {
+				dict.set(i & 1023, value);
+			}
+			report("Dictionary.set+Callback1", begin, bytes, calls, COUNT);
+		}
+	}
+}
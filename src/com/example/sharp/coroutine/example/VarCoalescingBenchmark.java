@@ -0,0 +1,114 @@
+package com.example.sharp.coroutine.example;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.example.events.BaseVar;
+import com.example.events.Var;
+
+/**
+ * sets a telemetry gauge Var in a loop for a second with each coalescing mode
+ * and counts the notifications, none may run on the TimerWheel thread, updates 10000 TICK vars sharing one clock,
+ * then changes one var of chains of 100 and 10000 vars and prints
+ * nanoseconds per set, which should not grow with the chain.
+ */
+public class VarCoalescingBenchmark {
+	static final long MILLIS = 1000;
+
+	static void gauge(Var.Coalescing mode, long period, long expectedMin, long expectedMax) throws Exception {
+		Var<Long> gauge = new Var.Builder<Long>().value(0L).coalescing(mode, period).build();
+		AtomicLong notifications = new AtomicLong();
+		AtomicReference<Long> last = new AtomicReference<Long>();
+		AtomicLong onWheel = new AtomicLong();
+		gauge.onValueChanged.addDelegate((from, args) -> {
+			notifications.incrementAndGet();
+			last.set(args.newValue);
+			if (Thread.currentThread().getName().equals("TimerWheel")) {
+				onWheel.incrementAndGet();
+			}
+		});
+		long sets = 0;
+		long begin = System.nanoTime();
+		long end = begin + MILLIS * 1000000L;
+		while (System.nanoTime() < end) {
+			gauge.set(++sets);
+		}
+		long elapsed = System.nanoTime() - begin;
+		Thread.sleep(period * 2 + 20);
+		boolean ok = notifications.get() >= expectedMin && notifications.get() <= expectedMax
+				&& last.get() == sets && !gauge.isPending() && onWheel.get() == 0;
+		System.out.printf("%-9s %4d ms: %9d sets %6.1f ns/set, %5d notifications %s%n", mode, period, sets,
+				(double) elapsed / sets, notifications.get(), ok ? "ok" : "WRONG");
+		gauge.dispose();
+	}
+
+	static void tick() throws Exception {
+		int count = 10000;
+		AtomicLong notifications = new AtomicLong();
+		ArrayList<Var<Integer>> vars = new ArrayList<Var<Integer>>();
+		for (int i = 0; i < count; ++i) {
+			Var<Integer> var = new Var<Integer>(0).setCoalescing(Var.Coalescing.TICK, 50);
+			var.onChanged.addDelegate((from, args) -> notifications.incrementAndGet());
+			vars.add(var);
+		}
+		long sets = 0;
+		long end = System.nanoTime() + MILLIS * 1000000L;
+		while (System.nanoTime() < end) {
+			for (int i = 0; i < count; i += 7) {
+				vars.get(i).set((int) ++sets);
+			}
+		}
+		Thread.sleep(120);
+		boolean flushed = true;
+		for (Var<Integer> var : vars) {
+			flushed &= !var.isPending();
+		}
+		// each var at most once per 50ms tick
+		long ticks = MILLIS / 50 + 2;
+		System.out.printf("TICK        50 ms: %9d sets on %d vars, %6d notifications, at most %d %s%n", sets,
+				(count + 6) / 7, notifications.get(), ticks * ((count + 6) / 7),
+				flushed && notifications.get() <= ticks * ((count + 6) / 7) ? "ok" : "WRONG");
+	}
+
+	@SuppressWarnings("rawtypes")
+	static void chain(int size) {
+		Var[] vars = new Var[size];
+		for (int i = 0; i < size; ++i) {
+			vars[i] = new Var<Integer>();
+		}
+		Var<Integer> target = new Var<Integer>();
+		AtomicLong runs = new AtomicLong();
+		BaseVar.chain(target, (args) -> runs.incrementAndGet(), vars);
+		boolean ok = true;
+		for (int i = 0; i < size; ++i) {
+			ok &= runs.get() == 0;
+			@SuppressWarnings("unchecked")
+			Var<Integer> var = vars[i];
+			var.set(i);
+		}
+		ok &= runs.get() == 1;
+		int count = 1000000;
+		@SuppressWarnings("unchecked")
+		Var<Integer> hot = vars[size / 2];
+		long begin = System.nanoTime();
+		for (int i = 0; i < count; ++i) {
+			hot.set(i);
+		}
+		long elapsed = System.nanoTime() - begin;
+		ok &= runs.get() == 1 + count;
+		System.out.printf("chain of %5d vars: %6.1f ns per set %s%n", size, (double) elapsed / count, ok ? "ok" : "WRONG");
+	}
+
+	public static void main(String[] argv) throws Exception {
+		gauge(Var.Coalescing.NONE, 1, 1, Long.MAX_VALUE);
+		gauge(Var.Coalescing.WINDOW, 50, MILLIS / 50 / 2, MILLIS / 50 + 2);
+		gauge(Var.Coalescing.THROTTLE, 10, MILLIS / 10 / 2, MILLIS / 10 + 2);
+		gauge(Var.Coalescing.TICK, 100, MILLIS / 100 / 2, MILLIS / 100 + 2);
+		tick();
+		for (int round = 0; round < 2; ++round) {
+			chain(100);
+			chain(10000);
+		}
+	}
+}